@@ -0,0 +1,394 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.PriorityQueue;
+
+/*
+ * This class computes the k fastest loopless routes between two vertices/stations of a
+ * CompactGraph with Yen's algorithm: every route after the first one leaves one of the routes
+ * already found at some vertex/station (the spur), after following it from the origin (the
+ * root), and takes the fastest way to the destination that doesn't go back through the root
+ * and doesn't leave the spur like a route already found with the same root does.
+ *
+ * A spur search doesn't copy or change the graph, the root and the forbidden edges are marked
+ * like a ClosureMask with the generation numbers of the search. It doesn't start from scratch
+ * either: one Dijkstra search from the destination over the incoming edges gives the reverse
+ * shortest path tree, the fastest way from every vertex/station to the destination. A spur
+ * search is an A* search guided by those travel times, and it stops at the first
+ * vertex/station taken out of the heap whose way to the destination in the tree doesn't go
+ * through the root, since no route can be faster than the one it gives. Most spur searches
+ * only take a few vertices/stations out of the heap.
+ *
+ * The tree is kept for the next query with the same destination and the same closures (a copy
+ * of the mask is kept, so closing more of the mask gives a new tree). Like RouteEngine,
+ * the buffers are reused between queries and an instance is not thread safe.
+ */
+public class AlternativeRoutes{
+
+    private final CompactGraph g;
+
+    /*
+     * reverse shortest path tree: travel time to the destination and next vertex/station on
+     * the way, valid only where treeStamp == treeGeneration
+     */
+    private final int[] toTarget;
+    private final int[] next;
+    private final int[] treeStamp;
+    private int treeGeneration;
+    private int treeTarget = -1;
+
+    /*
+     * copy of the mask the tree was computed with
+     */
+    private ClosureMask treeMask;
+
+    /*
+     * "distance" from the spur and predecessor of the current spur search, valid only where
+     * stamp == generation
+     */
+    private final int[] dist;
+    private final int[] pred;
+    private final int[] stamp;
+
+    /*
+     * vertices/stations of the root and vertices/stations the spur can't go to directly, for
+     * the current spur search, marked with its generation
+     */
+    private final int[] rootStamp;
+    private final int[] bannedStamp;
+
+    /*
+     * whether the way in the tree from a vertex/station to the destination avoids the root,
+     * known where openStamp == generation
+     */
+    private final int[] openStamp;
+    private final boolean[] open;
+    private final int[] walk;
+
+    private int generation;
+
+    private final IndexedHeap heap;
+
+    private int settled;
+    private int spurs;
+
+    /*
+     * a route found or waiting to be picked, with the arrival time at every vertex/station and
+     * the position of the spur it leaves its parent route at
+     */
+    private static class Candidate{
+        final int[] path;
+        final int[] times;
+        final int deviation;
+
+        Candidate(int[] path, int[] times, int deviation){
+            this.path = path;
+            this.times = times;
+            this.deviation = deviation;
+        }
+
+        int time(){
+            return times[times.length - 1];
+        }
+    }
+
+    /*
+     * Constructs the buffers for the given snapshot
+     */
+    public AlternativeRoutes(CompactGraph g){
+        this.g = g;
+        int n = g.numVertices();
+        toTarget = new int[n];
+        next = new int[n];
+        treeStamp = new int[n];
+        dist = new int[n];
+        pred = new int[n];
+        stamp = new int[n];
+        rootStamp = new int[n];
+        bannedStamp = new int[n];
+        openStamp = new int[n];
+        open = new boolean[n];
+        walk = new int[n];
+        heap = new IndexedHeap(n);
+    }
+
+    /*
+     * returns the snapshot the routes are computed on
+     */
+    public CompactGraph graph(){
+        return g;
+    }
+
+    /*
+     * Computes at most k loopless routes from source to target, fastest first
+     */
+    public Route[] routes(int source, int target, int k){
+        return routes(source, target, k, null);
+    }
+
+    /*
+     * Computes at most k loopless routes from source to target that avoid the closed part of
+     * the network (mask can be null), fastest first. There are less than k if the network
+     * doesn't have that many.
+     */
+    public Route[] routes(int source, int target, int k, ClosureMask mask){
+        if(mask != null && mask.graph() != g){
+            throw new IllegalArgumentException("The closure is for another snapshot");
+        }
+        settled = 0;
+        spurs = 0;
+        if(k <= 0 || (mask != null && (!mask.isOpen(source) || !mask.isOpen(target)))){
+            return new Route[0];
+        }
+        if(source == target){ // the only loopless route doesn't move
+            return new Route[]{new Route(new int[]{source}, 0)};
+        }
+        if(target != treeTarget || !Objects.equals(mask, treeMask) || treeGeneration == 0){
+            reverseTree(target, mask);
+        }
+
+        ArrayList<Candidate> found = new ArrayList<>();
+        PriorityQueue<Candidate> candidates = new PriorityQueue<>((a, b) -> a.time() != b.time() ? Integer.compare(a.time(), b.time()) : Integer.compare(a.path.length, b.path.length));
+        // the first route is a spur search from the origin with an empty root, it ends at once
+        Candidate first = spur(new Candidate(new int[]{source}, new int[]{0}, 0), 0, found, target, mask);
+        if(first == null){
+            return new Route[0];
+        }
+        found.add(first);
+        while(found.size() < k){
+            Candidate last = found.get(found.size() - 1);
+            // the spurs before the deviation were already searched with the parent route
+            for(int i = last.deviation; i < last.path.length - 1; i++){
+                Candidate candidate = spur(last, i, found, target, mask);
+                if(candidate != null && !isWaiting(candidates, candidate)){
+                    candidates.add(candidate);
+                }
+            }
+            if(candidates.isEmpty()){
+                break;
+            }
+            found.add(candidates.poll());
+        }
+
+        Route[] routes = new Route[found.size()];
+        for(int i = 0; i < routes.length; i++){
+            Candidate route = found.get(i);
+            routes[i] = new Route(route.path, route.time());
+        }
+        return routes;
+    }
+
+    /*
+     * returns the number of vertices/stations settled by the last query, the reverse tree
+     * included if it had to be computed
+     */
+    public int settledCount(){
+        return settled;
+    }
+
+    /*
+     * returns the number of spur searches of the last query
+     */
+    public int spurCount(){
+        return spurs;
+    }
+
+    private static boolean isWaiting(PriorityQueue<Candidate> candidates, Candidate candidate){
+        for(Candidate other : candidates){
+            if(other.time() == candidate.time() && Arrays.equals(other.path, candidate.path)){
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void nextGeneration(){
+        generation++;
+        if(generation == 0){ // the generation number wrapped around, old stamps could look current
+            Arrays.fill(stamp, 0);
+            Arrays.fill(rootStamp, 0);
+            Arrays.fill(bannedStamp, 0);
+            Arrays.fill(openStamp, 0);
+            generation = 1;
+        }
+    }
+
+    /*
+     * Dijkstra's Algorithm from the target over the incoming edges, run to the end so every
+     * vertex/station that can reach the target has its exact travel time to it
+     */
+    private void reverseTree(int target, ClosureMask mask){
+        treeGeneration++;
+        if(treeGeneration == 0){ // the generation number wrapped around, old stamps could look current
+            Arrays.fill(treeStamp, 0);
+            treeGeneration = 1;
+        }
+        treeTarget = target;
+        treeMask = mask == null ? null : mask.copy();
+        heap.clear();
+        treeStamp[target] = treeGeneration;
+        toTarget[target] = 0;
+        next[target] = -1;
+        heap.insert(target, 0);
+        while(!heap.isEmpty()){
+            int v = heap.poll();
+            settled++;
+            for(int j = g.firstInEdge(v), end = g.endInEdge(v); j < end; j++){
+                int e = g.inEdge(j);
+                int w = g.source(e);
+                if(mask != null && (!mask.isEdgeOpen(e) || !mask.isOpen(w))){
+                    continue;
+                }
+                int nd = toTarget[v] + g.weight(e);
+                if(treeStamp[w] != treeGeneration){ // first time w is reached
+                    treeStamp[w] = treeGeneration;
+                    toTarget[w] = nd;
+                    next[w] = v;
+                    heap.insert(w, nd);
+                }
+                else if(nd < toTarget[w] && heap.contains(w)){
+                    toTarget[w] = nd;
+                    next[w] = v;
+                    heap.decreaseKey(w, nd);
+                }
+            }
+        }
+    }
+
+    /*
+     * Searches the fastest route that follows route up to its i-th vertex/station (the spur),
+     * then leaves it without going back through the root and without taking the next
+     * vertex/station of a route found with the same root. Returns null if there is none.
+     */
+    private Candidate spur(Candidate route, int i, ArrayList<Candidate> found, int target, ClosureMask mask){
+        nextGeneration();
+        spurs++;
+        int[] path = route.path;
+        int s = path[i];
+        for(int j = 0; j <= i; j++){
+            rootStamp[path[j]] = generation;
+        }
+        for(Candidate other : found){
+            if(other.path.length > i + 1 && sameRoot(other.path, path, i)){
+                bannedStamp[other.path[i + 1]] = generation;
+            }
+        }
+        if(treeStamp[s] != treeGeneration){ // the target can't be reached from s at all
+            return null;
+        }
+
+        heap.clear();
+        stamp[s] = generation;
+        dist[s] = 0;
+        pred[s] = -1;
+        heap.insert(s, toTarget[s]);
+        while(!heap.isEmpty()){
+            int v = heap.poll();
+            settled++;
+            if(treeWayOpen(v, s, target)){
+                return join(route, i, v, target);
+            }
+            for(int e = g.firstEdge(v), end = g.endEdge(v); e < end; e++){
+                int op = g.target(e);
+                if(rootStamp[op] == generation || (v == s && bannedStamp[op] == generation) || treeStamp[op] != treeGeneration){
+                    continue; // back through the root, like a route already found, or a dead end
+                }
+                if(mask != null && (!mask.isEdgeOpen(e) || !mask.isOpen(op))){
+                    continue;
+                }
+                int nd = dist[v] + g.weight(e);
+                if(stamp[op] != generation){ // first time op is reached
+                    stamp[op] = generation;
+                    dist[op] = nd;
+                    pred[op] = v;
+                    heap.insert(op, nd + toTarget[op]);
+                }
+                else if(nd < dist[op] && heap.contains(op)){
+                    dist[op] = nd;
+                    pred[op] = v;
+                    heap.decreaseKey(op, nd + toTarget[op]);
+                }
+            }
+        }
+        return null;
+    }
+
+    private static boolean sameRoot(int[] a, int[] b, int i){
+        for(int j = i; j >= 0; j--){ // the routes share the origin, they differ near the spur if anywhere
+            if(a[j] != b[j]){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /*
+     * returns true if the way in the tree from v to the target avoids the root, and doesn't
+     * start like a route already found if v is the spur. The answer is kept for every
+     * vertex/station on the way, so the tree is walked once per spur search at most.
+     */
+    private boolean treeWayOpen(int v, int s, int target){
+        int u = v;
+        if(v == s){
+            if(bannedStamp[next[s]] == generation){
+                return false;
+            }
+            u = next[s];
+        }
+        int top = 0;
+        boolean isOpen;
+        while(true){
+            if(u == target){
+                isOpen = true;
+                break;
+            }
+            if(rootStamp[u] == generation){
+                isOpen = false;
+                break;
+            }
+            if(openStamp[u] == generation){
+                isOpen = open[u];
+                break;
+            }
+            walk[top++] = u;
+            u = next[u];
+        }
+        while(top > 0){
+            int w = walk[--top];
+            openStamp[w] = generation;
+            open[w] = isOpen;
+        }
+        return isOpen;
+    }
+
+    /*
+     * builds the route made of the root of route up to its i-th vertex/station, the spur search
+     * path to v and the tree from v to the target
+     */
+    private Candidate join(Candidate route, int i, int v, int target){
+        int spurLength = 0;
+        for(int current = v; current != -1; current = pred[current]){
+            spurLength++;
+        }
+        int treeLength = 0;
+        for(int current = next[v]; current != -1; current = next[current]){
+            treeLength++;
+        }
+        int length = i + spurLength + treeLength;
+        int[] path = Arrays.copyOf(route.path, length);
+        int[] times = Arrays.copyOf(route.times, length);
+        int start = route.times[i];
+        int at = i + spurLength - 1;
+        for(int current = v; current != -1; current = pred[current]){ // filling the spur path backwards from v
+            path[at] = current;
+            times[at--] = start + dist[current];
+        }
+        int total = start + dist[v] + toTarget[v];
+        at = i + spurLength;
+        for(int current = next[v]; current != -1; current = next[current]){
+            path[at] = current;
+            times[at++] = total - toTarget[current];
+        }
+        return new Candidate(path, times, i);
+    }
+}
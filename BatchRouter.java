@@ -0,0 +1,196 @@
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.StringTokenizer;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/*
+ * This class answers large batches of route queries (like the origin-destination matrices
+ * computed every night) on all the cores. The queries share one CompactGraph, which is never
+ * modified, and are split between the threads of a fork-join pool. Every thread keeps its own
+ * RouteEngine for the lifetime of the router, so the distance, predecessor and heap buffers are
+ * allocated once per thread and a query that only needs the travel time allocates nothing.
+ * A router can be used by several threads at the same time.
+ */
+public class BatchRouter{
+
+    /*
+     * number of queries handled by one fork-join task before it stops splitting
+     */
+    private static final int QUERIES_PER_TASK = 64;
+
+    private final CompactGraph g;
+    private final ForkJoinPool pool;
+
+    /*
+     * engine of every thread that ran a query of this router
+     */
+    private final ThreadLocal<RouteEngine> engines;
+
+    /*
+     * Constructs a router for the given snapshot that runs on the common fork-join pool
+     */
+    public BatchRouter(CompactGraph g){
+        this(g, ForkJoinPool.commonPool());
+    }
+
+    /*
+     * Constructs a router for the given snapshot that runs the queries on pool
+     */
+    public BatchRouter(CompactGraph g, ForkJoinPool pool){
+        this.g = g;
+        this.pool = pool;
+        engines = ThreadLocal.withInitial(() -> new RouteEngine(g));
+    }
+
+    /*
+     * returns the snapshot the queries are answered on
+     */
+    public CompactGraph graph(){
+        return g;
+    }
+
+    /*
+     * Computes the shortest path of every query, the result at index i answers queries.get(i)
+     */
+    public Route[] route(List<RouteQuery> queries){
+        check(queries);
+        Route[] routes = new Route[queries.size()];
+        pool.invoke(new QueryTask(queries, 0, queries.size(), routes, null));
+        return routes;
+    }
+
+    /*
+     * Computes the travel time of every query, Integer.MAX_VALUE if the destination can't be
+     * reached. Only the times are kept, so no path is built.
+     */
+    public int[] times(List<RouteQuery> queries){
+        check(queries);
+        int[] times = new int[queries.size()];
+        pool.invoke(new QueryTask(queries, 0, queries.size(), null, times));
+        return times;
+    }
+
+    /*
+     * makes sure every query is on this router's snapshot before anything runs
+     */
+    private void check(List<RouteQuery> queries){
+        int n = g.numVertices();
+        for(RouteQuery query : queries){
+            if(query.getOrigin() < 0 || query.getOrigin() >= n || query.getDestination() < 0 || query.getDestination() >= n){
+                throw new IllegalArgumentException("Unknown origin or destination");
+            }
+            if(query.getMask() != null && query.getMask().graph() != g){
+                throw new IllegalArgumentException("The closure is for another snapshot");
+            }
+        }
+    }
+
+    /*
+     * Fork-join task that answers the queries from (inclusive) to to (exclusive), filling
+     * either routes or times
+     */
+    private class QueryTask extends RecursiveAction{
+        private static final long serialVersionUID = 1L;
+
+        private final List<RouteQuery> queries;
+        private final int from, to;
+        private final Route[] routes;
+        private final int[] times;
+
+        QueryTask(List<RouteQuery> queries, int from, int to, Route[] routes, int[] times){
+            this.queries = queries;
+            this.from = from;
+            this.to = to;
+            this.routes = routes;
+            this.times = times;
+        }
+
+        @Override
+        protected void compute(){
+            if(to - from > QUERIES_PER_TASK){
+                int mid = (from + to) >>> 1;
+                invokeAll(new QueryTask(queries, from, mid, routes, times), new QueryTask(queries, mid, to, routes, times));
+                return;
+            }
+            RouteEngine engine = engines.get();
+            for(int i = from; i < to; i++){
+                RouteQuery query = queries.get(i);
+                if(routes != null){
+                    routes[i] = engine.route(query.getOrigin(), query.getDestination(), query.getMask());
+                }
+                else{
+                    engine.search(query.getOrigin(), query.getDestination(), query.getMask());
+                    times[i] = engine.distance(query.getDestination());
+                }
+            }
+        }
+    }
+
+    /*
+     * Reads the queries of a file, one per line: the station numbers of the origin and of the
+     * destination, and optionally a station whose line is closed
+     */
+    private static List<RouteQuery> readQueries(CompactGraph g, String fileName) throws IOException{
+        List<RouteQuery> queries = new ArrayList<>();
+        HashMap<Integer, ClosureMask> masks = new HashMap<>(); // queries closing the same line share a mask
+        try(BufferedReader file = new BufferedReader(new FileReader(fileName, StandardCharsets.UTF_8))){
+            String line;
+            while((line = file.readLine()) != null){
+                StringTokenizer st = new StringTokenizer(line);
+                if(!st.hasMoreTokens()){
+                    continue;
+                }
+                int origin = station(g, st.nextToken());
+                int destination = station(g, st.nextToken());
+                ClosureMask mask = null;
+                if(st.hasMoreTokens()){
+                    int closedLine = g.line(station(g, st.nextToken()));
+                    mask = masks.computeIfAbsent(closedLine, l -> new ClosureMask(g).closeLine(l));
+                }
+                queries.add(new RouteQuery(origin, destination, mask));
+            }
+        }
+        return queries;
+    }
+
+    private static int station(CompactGraph g, String token){
+        int u = g.id(Integer.parseInt(token));
+        if(u == -1){
+            throw new IllegalArgumentException("Unknown station " + token);
+        }
+        return u;
+    }
+
+    /*
+     * Prints "origin destination time" for every query of the file, -1 when the destination
+     * can't be reached
+     */
+    public static void main(String[] args){
+        if(args.length != 2){
+            System.err.print("Usage: java BatchRouter <network file> <queries file>");
+            return;
+        }
+        try{
+            new ParisMetro(args[0]);
+            CompactGraph g = CompactGraph.of(ParisMetro.getGraph());
+            List<RouteQuery> queries = readQueries(g, args[1]);
+            int[] times = new BatchRouter(g).times(queries);
+            StringBuilder out = new StringBuilder();
+            for(int i = 0; i < times.length; i++){
+                RouteQuery query = queries.get(i);
+                out.append(g.station(query.getOrigin())).append(' ').append(g.station(query.getDestination())).append(' ');
+                out.append(times[i] == Integer.MAX_VALUE ? -1 : times[i]).append('\n');
+            }
+            System.out.print(out);
+        }
+        catch(Exception except){
+            System.err.print(except);
+        }
+    }
+}
@@ -0,0 +1,176 @@
+import java.util.Arrays;
+
+/*
+ * This class runs a bidirectional version of Dijkstra's Algorithm on a CompactGraph: one search
+ * grows forward from the origin over the outgoing edges, the other grows backward from the
+ * destination over the incoming edges, and the search stops as soon as the two frontiers
+ * can't produce a shorter path than the best one found where they met. For a point to point
+ * query this settles far fewer vertices/stations than a one-sided search.
+ * Like RouteEngine, the buffers are reused between queries and an instance is not thread safe.
+ */
+public class BidirectionalSearch{
+
+    private final CompactGraph g;
+
+    /*
+     * "distance" from the origin (forward) and to the destination (backward)
+     */
+    private final int[] distF, distB;
+
+    /*
+     * predecessor towards the origin (forward) and successor towards the destination (backward)
+     */
+    private final int[] predF, succB;
+
+    /*
+     * generation in which each vertex/station was last reached by each side
+     */
+    private final int[] stampF, stampB;
+
+    private int generation;
+
+    private final IndexedHeap heapF, heapB;
+
+    private ClosureMask mask;
+
+    private int settled;
+
+    /*
+     * best path found so far: its length and the vertex/station where the two sides meet
+     */
+    private int best;
+    private int meeting;
+
+    public BidirectionalSearch(CompactGraph g){
+        this.g = g;
+        int n = g.numVertices();
+        distF = new int[n];
+        distB = new int[n];
+        predF = new int[n];
+        succB = new int[n];
+        stampF = new int[n];
+        stampB = new int[n];
+        heapF = new IndexedHeap(n);
+        heapB = new IndexedHeap(n);
+    }
+
+    /*
+     * Computes the shortest path from source to target
+     */
+    public Route route(int source, int target){
+        return route(source, target, null);
+    }
+
+    /*
+     * Computes the shortest path from source to target that avoids the closed part of the network
+     */
+    public Route route(int source, int target, ClosureMask mask){
+        heapF.clear();
+        heapB.clear();
+        generation++;
+        if(generation == 0){ // the generation number wrapped around, old stamps could look current
+            Arrays.fill(stampF, 0);
+            Arrays.fill(stampB, 0);
+            generation = 1;
+        }
+        this.mask = mask;
+        settled = 0;
+        best = Integer.MAX_VALUE;
+        meeting = -1;
+        if(mask != null && (!mask.isOpen(source) || !mask.isOpen(target))){
+            return new Route(new int[0], Integer.MAX_VALUE);
+        }
+        reach(source, 0, -1, distF, predF, stampF, heapF);
+        reach(target, 0, -1, distB, succB, stampB, heapB);
+        if(source == target){
+            best = 0;
+            meeting = source;
+        }
+
+        // alternating between the sides, the one with the smaller frontier goes next
+        while(!heapF.isEmpty() && !heapB.isEmpty()){
+            if((long) heapF.minKey() + heapB.minKey() >= best){ // no path through the frontiers can be shorter
+                break;
+            }
+            if(heapF.size() <= heapB.size()){
+                int vert = heapF.poll();
+                settled++;
+                for(int e = g.firstEdge(vert); e < g.endEdge(vert); e++){
+                    relax(vert, g.target(e), e, distF, predF, stampF, heapF, distB, stampB);
+                }
+            }
+            else{
+                int vert = heapB.poll();
+                settled++;
+                for(int i = g.firstInEdge(vert); i < g.endInEdge(vert); i++){
+                    int e = g.inEdge(i);
+                    relax(vert, g.source(e), e, distB, succB, stampB, heapB, distF, stampF);
+                }
+            }
+        }
+        return new Route(path(), best);
+    }
+
+    /*
+     * returns the number of vertices/stations settled by both sides of the last search
+     */
+    public int settledCount(){
+        return settled;
+    }
+
+    private void relax(int vert, int op, int e, int[] dist, int[] link, int[] stamp, IndexedHeap heap, int[] otherDist, int[] otherStamp){
+        if(mask != null && (!mask.isEdgeOpen(e) || !mask.isOpen(op))){
+            return;
+        }
+        int nd = dist[vert] + g.weight(e);
+        if(stamp[op] != generation){ // first time op is reached from this side
+            reach(op, nd, vert, dist, link, stamp, heap);
+        }
+        else if(nd < dist[op] && heap.contains(op)){ // edge relaxation to update the "distance"
+            dist[op] = nd;
+            link[op] = vert;
+            heap.decreaseKey(op, nd);
+        }
+        else{
+            return;
+        }
+        if(otherStamp[op] == generation && nd + otherDist[op] < best){ // the two sides meet at op
+            best = nd + otherDist[op];
+            meeting = op;
+        }
+    }
+
+    private void reach(int v, int d, int link, int[] dist, int[] links, int[] stamp, IndexedHeap heap){
+        stamp[v] = generation;
+        dist[v] = d;
+        links[v] = link;
+        heap.insert(v, d);
+    }
+
+    /*
+     * joins the forward path to the meeting vertex/station with the backward path from it
+     */
+    private int[] path(){
+        if(meeting == -1){
+            return new int[0];
+        }
+        int forward = 0;
+        for(int current = meeting; current != -1; current = predF[current]){
+            forward++;
+        }
+        int length = forward;
+        for(int current = succB[meeting]; current != -1; current = succB[current]){
+            length++;
+        }
+        int[] path = new int[length];
+        int i = forward;
+        for(int current = meeting; current != -1; current = predF[current]){ // filling the forward part backwards from the meeting point
+            path[--i] = current;
+        }
+        i = forward;
+        for(int current = succB[meeting]; current != -1; current = succB[current]){
+            path[i++] = current;
+        }
+        return path;
+    }
+}
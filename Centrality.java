@@ -0,0 +1,351 @@
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/*
+ * This class represents the betweenness and closeness centrality of every vertex/station of a
+ * CompactGraph, and the betweenness of every edge, with travel times weighted like shortestPath
+ * (a walking transfer costs 90 seconds).
+ * - the betweenness of a vertex/station (or edge) adds up, over every ordered pair of other
+ *   vertices/stations, the share of the shortest paths between them that go through it
+ * - the closeness of a vertex/station is the number of vertices/stations it reaches divided by
+ *   the travel times to them added up, scaled by the share of the network it reaches so that
+ *   stations cut off from most of the network don't look central
+ * They are computed with Brandes' algorithm: one Dijkstra search per source that also counts
+ * the shortest paths, followed by a pass over the vertices/stations from the farthest to the
+ * source that adds the dependencies of the source to the scores. The sources are split between
+ * the threads of a fork-join pool, every thread reusing its own buffers, and the scores of a
+ * task are added to the shared ones with compare-and-set, so the threads never lock.
+ */
+public class Centrality{
+
+    /*
+     * number of sources handled by one fork-join task before it stops splitting
+     */
+    private static final int SOURCES_PER_TASK = 16;
+
+    private final CompactGraph g;
+    private final double[] betweenness;
+    private final double[] closeness;
+    private final double[] edgeBetweenness;
+
+    private Centrality(CompactGraph g, double[] betweenness, double[] closeness, double[] edgeBetweenness){
+        this.g = g;
+        this.betweenness = betweenness;
+        this.closeness = closeness;
+        this.edgeBetweenness = edgeBetweenness;
+    }
+
+    /*
+     * Computes the centrality of the given snapshot on the common fork-join pool
+     */
+    public static Centrality compute(CompactGraph g){
+        return compute(g, ForkJoinPool.commonPool());
+    }
+
+    /*
+     * Computes the centrality of the given snapshot, running the sources on pool
+     */
+    public static Centrality compute(CompactGraph g, ForkJoinPool pool){
+        int n = g.numVertices();
+        int m = g.numEdges();
+        // the doubles are stored as their bits so they can be added with compare-and-set
+        AtomicLongArray vertexScores = new AtomicLongArray(n);
+        AtomicLongArray edgeScores = new AtomicLongArray(m);
+        double[] closeness = new double[n];
+        ThreadLocal<Brandes> buffers = ThreadLocal.withInitial(() -> new Brandes(g));
+        pool.invoke(new SourceTask(g, 0, n, buffers, vertexScores, edgeScores, closeness));
+
+        double[] betweenness = new double[n];
+        for(int v = 0; v < n; v++){
+            betweenness[v] = Double.longBitsToDouble(vertexScores.get(v));
+        }
+        double[] edgeBetweenness = new double[m];
+        for(int e = 0; e < m; e++){
+            edgeBetweenness[e] = Double.longBitsToDouble(edgeScores.get(e));
+        }
+        return new Centrality(g, betweenness, closeness, edgeBetweenness);
+    }
+
+    /*
+     * Fork-join task that runs the sources from (inclusive) to to (exclusive)
+     */
+    private static class SourceTask extends RecursiveAction{
+        private static final long serialVersionUID = 1L;
+
+        private final CompactGraph g;
+        private final int from, to;
+        private final ThreadLocal<Brandes> buffers;
+        private final AtomicLongArray vertexScores, edgeScores;
+        private final double[] closeness;
+
+        SourceTask(CompactGraph g, int from, int to, ThreadLocal<Brandes> buffers, AtomicLongArray vertexScores, AtomicLongArray edgeScores, double[] closeness){
+            this.g = g;
+            this.from = from;
+            this.to = to;
+            this.buffers = buffers;
+            this.vertexScores = vertexScores;
+            this.edgeScores = edgeScores;
+            this.closeness = closeness;
+        }
+
+        @Override
+        protected void compute(){
+            if(to - from > SOURCES_PER_TASK){
+                int mid = (from + to) >>> 1;
+                invokeAll(new SourceTask(g, from, mid, buffers, vertexScores, edgeScores, closeness),
+                        new SourceTask(g, mid, to, buffers, vertexScores, edgeScores, closeness));
+                return;
+            }
+            Brandes brandes = buffers.get();
+            for(int s = from; s < to; s++){
+                closeness[s] = brandes.run(s);
+            }
+            brandes.flush(vertexScores, edgeScores);
+        }
+    }
+
+    /*
+     * This nested class holds the buffers one thread needs to run Brandes' algorithm from a
+     * source, and the scores it added up since they were last flushed to the shared ones.
+     */
+    private static class Brandes{
+        private final CompactGraph g;
+        private final IndexedHeap heap;
+
+        /*
+         * stamp[v] == generation once v was reached from the current source
+         */
+        private final int[] stamp;
+        private int generation;
+
+        private final int[] dist;
+
+        /*
+         * number of shortest paths from the source
+         */
+        private final double[] sigma;
+
+        /*
+         * dependency of the source on every vertex/station
+         */
+        private final double[] delta;
+
+        /*
+         * vertices/stations in the order they were settled, and the position of each in it
+         */
+        private final int[] order;
+        private final int[] rank;
+
+        private final double[] vertexScores;
+        private final double[] edgeScores;
+
+        Brandes(CompactGraph g){
+            this.g = g;
+            int n = g.numVertices();
+            heap = new IndexedHeap(n);
+            stamp = new int[n];
+            dist = new int[n];
+            sigma = new double[n];
+            delta = new double[n];
+            order = new int[n];
+            rank = new int[n];
+            vertexScores = new double[n];
+            edgeScores = new double[g.numEdges()];
+        }
+
+        /*
+         * adds the dependencies of source s to the scores, returns the closeness of s
+         */
+        double run(int s){
+            generation++;
+            if(generation == 0){ // the generation number wrapped around, old stamps could look current
+                Arrays.fill(stamp, 0);
+                generation = 1;
+            }
+            stamp[s] = generation;
+            dist[s] = 0;
+            sigma[s] = 1;
+            heap.insert(s, 0);
+            int settled = 0;
+            long total = 0;
+            while(!heap.isEmpty()){
+                int v = heap.poll();
+                rank[v] = settled;
+                order[settled++] = v;
+                delta[v] = 0;
+                total += dist[v];
+                for(int e = g.firstEdge(v), end = g.endEdge(v); e < end; e++){
+                    int op = g.target(e);
+                    int nd = dist[v] + g.weight(e);
+                    if(stamp[op] != generation){ // first time op is reached
+                        stamp[op] = generation;
+                        dist[op] = nd;
+                        sigma[op] = sigma[v];
+                        heap.insert(op, nd);
+                    }
+                    else if(heap.contains(op)){
+                        if(nd < dist[op]){
+                            dist[op] = nd;
+                            sigma[op] = sigma[v];
+                            heap.decreaseKey(op, nd);
+                        }
+                        else if(nd == dist[op]){ // one more way to reach op as fast
+                            sigma[op] += sigma[v];
+                        }
+                    }
+                }
+            }
+
+            // the predecessors of v on the shortest paths are the vertices/stations settled
+            // before it whose edge to v is tight
+            for(int i = settled - 1; i > 0; i--){
+                int v = order[i];
+                double share = (1 + delta[v]) / sigma[v];
+                for(int j = g.firstInEdge(v), end = g.endInEdge(v); j < end; j++){
+                    int e = g.inEdge(j);
+                    int w = g.source(e);
+                    if(stamp[w] == generation && rank[w] < i && dist[w] + g.weight(e) == dist[v]){
+                        double c = sigma[w] * share;
+                        delta[w] += c;
+                        edgeScores[e] += c;
+                    }
+                }
+                vertexScores[v] += delta[v];
+            }
+
+            int n = g.numVertices();
+            if(total == 0 || n < 2){
+                return 0;
+            }
+            double reached = settled - 1;
+            return reached / total * (reached / (n - 1));
+        }
+
+        /*
+         * adds the scores to the shared ones and starts again from zero
+         */
+        void flush(AtomicLongArray sharedVertexScores, AtomicLongArray sharedEdgeScores){
+            add(vertexScores, sharedVertexScores);
+            add(edgeScores, sharedEdgeScores);
+        }
+
+        private static void add(double[] scores, AtomicLongArray shared){
+            for(int i = 0; i < scores.length; i++){
+                double score = scores[i];
+                if(score == 0){
+                    continue;
+                }
+                scores[i] = 0;
+                long old;
+                do{
+                    old = shared.get(i);
+                }
+                while(!shared.compareAndSet(i, old, Double.doubleToRawLongBits(Double.longBitsToDouble(old) + score)));
+            }
+        }
+    }
+
+    /*
+     * returns the snapshot the scores are for
+     */
+    public CompactGraph graph(){
+        return g;
+    }
+
+    /*
+     * returns the betweenness of the vertex/station u (dense id)
+     */
+    public double betweenness(int u){
+        return betweenness[u];
+    }
+
+    /*
+     * returns the betweenness of u divided by the number of ordered pairs of other
+     * vertices/stations, that is the share of the trips that go through u
+     */
+    public double normalizedBetweenness(int u){
+        long n = g.numVertices();
+        return n < 3 ? 0 : betweenness[u] / ((n - 1) * (n - 2));
+    }
+
+    /*
+     * returns the closeness of the vertex/station u (dense id), in 1/seconds
+     */
+    public double closeness(int u){
+        return closeness[u];
+    }
+
+    /*
+     * returns the betweenness of edge e (index in the snapshot)
+     */
+    public double edgeBetweenness(int e){
+        return edgeBetweenness[e];
+    }
+
+    /*
+     * returns the vertices/stations (dense ids) from the highest to the lowest betweenness
+     */
+    public int[] rankedStations(){
+        return ranked(betweenness, false);
+    }
+
+    /*
+     * returns the walking transfers (edge indexes) from the highest to the lowest betweenness
+     */
+    public int[] rankedTransfers(){
+        return ranked(edgeBetweenness, true);
+    }
+
+    private int[] ranked(double[] scores, boolean transfers){
+        Integer[] items = new Integer[scores.length];
+        int count = 0;
+        for(int i = 0; i < scores.length; i++){
+            if(!transfers || g.isTransfer(i)){
+                items[count++] = i;
+            }
+        }
+        Arrays.sort(items, 0, count, (a, b) -> Double.compare(scores[b], scores[a]));
+        int[] ranked = new int[count];
+        for(int i = 0; i < count; i++){
+            ranked[i] = items[i];
+        }
+        return ranked;
+    }
+
+    /*
+     * Prints the most central vertices/stations and walking transfers of a network
+     */
+    public static void main(String[] args){
+        if(args.length != 1 && args.length != 2){
+            System.err.print("Usage: java Centrality <network file> [number of stations]");
+            return;
+        }
+        try{
+            new ParisMetro(args[0]);
+            CompactGraph g = CompactGraph.of(ParisMetro.getGraph());
+            int top = args.length == 2 ? Integer.parseInt(args[1]) : 20;
+            Centrality centrality = compute(g);
+
+            StringBuilder out = new StringBuilder("station\tname\tbetweenness\tshare\tcloseness\n");
+            int[] stations = centrality.rankedStations();
+            for(int i = 0; i < Math.min(top, stations.length); i++){
+                int u = stations[i];
+                out.append(g.station(u)).append('\t').append(g.name(u)).append('\t');
+                out.append(String.format("%.1f\t%.4f\t%.6f", centrality.betweenness(u), centrality.normalizedBetweenness(u), centrality.closeness(u))).append('\n');
+            }
+            out.append("\ntransfer\tname\tbetweenness\n");
+            int[] transfers = centrality.rankedTransfers();
+            for(int i = 0; i < Math.min(top, transfers.length); i++){
+                int e = transfers[i];
+                out.append(g.station(g.source(e))).append(" -> ").append(g.station(g.target(e))).append('\t');
+                out.append(g.name(g.source(e))).append('\t').append(String.format("%.1f", centrality.edgeBetweenness(e))).append('\n');
+            }
+            System.out.print(out);
+        }
+        catch(Exception except){
+            System.err.print(except);
+        }
+    }
+}
@@ -0,0 +1,113 @@
+import java.util.Arrays;
+
+/*
+ * This class represents an outage scenario on a CompactGraph: a set of closed vertices/stations,
+ * closed lines and closed edges, each kept as a bitset. The routing engine skips the closed
+ * parts of the network while it relaxes edges, so the graph itself is never modified and many
+ * scenarios can be evaluated at the same time on one shared snapshot.
+ *
+ * A mask is built by one thread and should not be changed once it is handed to a search.
+ */
+public class ClosureMask{
+
+    private final CompactGraph g;
+
+    private final long[] stations;
+    private final long[] lines;
+    private final long[] edges;
+
+    /*
+     * Constructs a mask for the given snapshot with nothing closed
+     */
+    public ClosureMask(CompactGraph g){
+        this.g = g;
+        stations = new long[(g.numVertices() + 63) >>> 6];
+        lines = new long[(g.numLines() + 63) >>> 6];
+        edges = new long[(g.numEdges() + 63) >>> 6];
+    }
+
+    private ClosureMask(ClosureMask other){
+        g = other.g;
+        stations = other.stations.clone();
+        lines = other.lines.clone();
+        edges = other.edges.clone();
+    }
+
+    /*
+     * returns a mask with the same closures, that doesn't change when this one does
+     */
+    public ClosureMask copy(){
+        return new ClosureMask(this);
+    }
+
+    /*
+     * closes the vertex/station u (dense id)
+     */
+    public ClosureMask closeStation(int u){
+        stations[u >>> 6] |= 1L << u;
+        return this;
+    }
+
+    /*
+     * closes every vertex/station on line l
+     */
+    public ClosureMask closeLine(int l){
+        lines[l >>> 6] |= 1L << l;
+        return this;
+    }
+
+    /*
+     * closes edge e (index in the snapshot)
+     */
+    public ClosureMask closeEdge(int e){
+        edges[e >>> 6] |= 1L << e;
+        return this;
+    }
+
+    /*
+     * closes the edge from u to v (dense ids), throws an exception if there is no such edge
+     */
+    public ClosureMask closeEdge(int u, int v){
+        int e = g.edge(u, v);
+        if(e == -1){
+            throw new IllegalArgumentException("No edge from u to v");
+        }
+        return closeEdge(e);
+    }
+
+    /*
+     * returns true if the vertex/station u is open, that is neither it nor its line is closed
+     */
+    public boolean isOpen(int u){
+        int l = g.line(u);
+        return (stations[u >>> 6] & (1L << u)) == 0 && (lines[l >>> 6] & (1L << l)) == 0;
+    }
+
+    /*
+     * returns true if edge e isn't closed (its endpoints can still be closed)
+     */
+    public boolean isEdgeOpen(int e){
+        return (edges[e >>> 6] & (1L << e)) == 0;
+    }
+
+    /*
+     * returns the snapshot this mask applies to
+     */
+    public CompactGraph graph(){
+        return g;
+    }
+
+    @Override
+    public boolean equals(Object o){
+        if(!(o instanceof ClosureMask)){
+            return false;
+        }
+        ClosureMask other = (ClosureMask) o;
+        return g == other.g && Arrays.equals(stations, other.stations) && Arrays.equals(lines, other.lines) && Arrays.equals(edges, other.edges);
+    }
+
+    @Override
+    public int hashCode(){
+        return 31 * (31 * Arrays.hashCode(stations) + Arrays.hashCode(lines)) + Arrays.hashCode(edges);
+    }
+}
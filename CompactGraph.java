@@ -0,0 +1,339 @@
+import java.util.Arrays;
+
+/*
+ * This class represents an immutable, compressed sparse row (CSR) snapshot of
+ * the Paris metro graph. Every vertex/station is given a dense id from 0 to n-1
+ * (in the order the graph returns its vertices) and all the outgoing edges of a station
+ * are stored next to each other in primitive arrays, so the routing algorithms
+ * can walk the network without touching the per vertex hash maps or unboxing weights.
+ */
+public class CompactGraph{
+
+    /*
+     * station number of each dense id
+     */
+    private final int[] stations;
+
+    /*
+     * station name of each dense id
+     */
+    private final String[] names;
+
+    /*
+     * dense id of each station number, or -1 if the station number is not in the snapshot
+     */
+    private final int[] idByStation;
+
+    /*
+     * the outgoing edges of the vertex/station with dense id u are the edges
+     * offsets[u] (inclusive) to offsets[u+1] (exclusive)
+     */
+    private final int[] offsets;
+
+    /*
+     * dense id of the destination of each edge
+     */
+    private final int[] targets;
+
+    /*
+     * travel time of each edge, walking transfers (weight -1 in the graph) are
+     * already replaced by ParisMetro.TRANSFER_TIME
+     */
+    private final int[] weights;
+
+    /*
+     * one bit per edge, set when the edge is a walking transfer (weight -1 in the graph)
+     */
+    private final long[] transfers;
+
+    /*
+     * dense id of the origin of each edge
+     */
+    private final int[] sources;
+
+    /*
+     * the incoming edges of the vertex/station with dense id v are inEdges[inOffsets[v]] to
+     * inEdges[inOffsets[v+1]-1], stored as indexes of the outgoing edge arrays
+     */
+    private final int[] inOffsets;
+    private final int[] inEdges;
+
+    /*
+     * line id of each dense id. Lines are the groups of vertices/stations connected by edges
+     * that aren't walking transfers, like the ones ParisMetro.DFS discovers.
+     */
+    private final int[] lineOf;
+
+    /*
+     * the vertices/stations on line l are lineStations[lineOffsets[l]] to lineStations[lineOffsets[l+1]-1]
+     */
+    private final int[] lineOffsets;
+    private final int[] lineStations;
+
+    private CompactGraph(int[] stations, String[] names, int[] idByStation, int[] offsets, int[] targets, int[] weights, long[] transfers){
+        this.stations = stations;
+        this.names = names;
+        this.idByStation = idByStation;
+        this.offsets = offsets;
+        this.targets = targets;
+        this.weights = weights;
+        this.transfers = transfers;
+
+        // reverse adjacency, so searches can also walk the edges backwards
+        int n = stations.length;
+        int m = targets.length;
+        sources = new int[m];
+        inOffsets = new int[n + 1];
+        for(int u = 0; u < n; u++){
+            for(int e = offsets[u]; e < offsets[u + 1]; e++){
+                sources[e] = u;
+                inOffsets[targets[e] + 1]++;
+            }
+        }
+        for(int v = 0; v < n; v++){
+            inOffsets[v + 1] += inOffsets[v];
+        }
+        inEdges = new int[m];
+        int[] next = Arrays.copyOf(inOffsets, n);
+        for(int e = 0; e < m; e++){
+            inEdges[next[targets[e]]++] = e;
+        }
+
+        // union-find over the edges that aren't walking transfers, in both directions
+        int[] parent = new int[n];
+        for(int u = 0; u < n; u++){
+            parent[u] = u;
+        }
+        for(int u = 0; u < n; u++){
+            for(int e = offsets[u]; e < offsets[u + 1]; e++){
+                if(!isTransfer(e)){
+                    int a = find(parent, u);
+                    int b = find(parent, targets[e]);
+                    if(a != b){
+                        parent[Math.max(a, b)] = Math.min(a, b);
+                    }
+                }
+            }
+        }
+        // numbering the lines in the order of their first vertex/station and grouping their stations
+        lineOf = new int[n];
+        int numLines = 0;
+        for(int u = 0; u < n; u++){
+            int root = find(parent, u);
+            lineOf[u] = root == u ? numLines++ : lineOf[root];
+        }
+        lineOffsets = new int[numLines + 1];
+        for(int u = 0; u < n; u++){
+            lineOffsets[lineOf[u] + 1]++;
+        }
+        for(int l = 0; l < numLines; l++){
+            lineOffsets[l + 1] += lineOffsets[l];
+        }
+        lineStations = new int[n];
+        int[] fill = Arrays.copyOf(lineOffsets, numLines);
+        for(int u = 0; u < n; u++){
+            lineStations[fill[lineOf[u]]++] = u;
+        }
+    }
+
+    private static int find(int[] parent, int u){
+        while(parent[u] != u){
+            parent[u] = parent[parent[u]];
+            u = parent[u];
+        }
+        return u;
+    }
+
+    /*
+     * Compiles the given graph into a compact snapshot. Later changes to the graph
+     * are not reflected in the snapshot, a new one has to be compiled.
+     */
+    public static CompactGraph of(Graph<Integer,Integer> g){
+        int n = g.numVertices();
+        int[] stations = new int[n];
+        String[] names = new String[n];
+        int maxStation = -1;
+
+        int id = 0;
+        for(Graph<Integer,Integer>.Vertex<Integer> vert : g.vertices()){
+            int station = vert.getElement();
+            if(station < 0){
+                throw new IllegalArgumentException("Station numbers must not be negative");
+            }
+            stations[id] = station;
+            names[id] = vert.getStation();
+            maxStation = Math.max(maxStation, station);
+            id++;
+        }
+
+        int[] idByStation = new int[maxStation + 1];
+        Arrays.fill(idByStation, -1);
+        for(int u = 0; u < n; u++){
+            idByStation[stations[u]] = u;
+        }
+
+        // counting the outgoing edges of every vertex/station to lay out the rows
+        int[] offsets = new int[n + 1];
+        id = 0;
+        for(Graph<Integer,Integer>.Vertex<Integer> vert : g.vertices()){
+            offsets[id + 1] = offsets[id] + g.outDegree(vert);
+            id++;
+        }
+
+        int m = offsets[n];
+        int[] targets = new int[m];
+        int[] weights = new int[m];
+        long[] transfers = new long[(m + 63) >>> 6];
+
+        id = 0;
+        for(Graph<Integer,Integer>.Vertex<Integer> vert : g.vertices()){
+            int e = offsets[id];
+            for(Graph<Integer,Integer>.Edge<Integer> edge : g.outgoingEdges(vert)){
+                targets[e] = idByStation[g.opposite(vert, edge).getElement()];
+                int wgt = edge.getElement();
+                if(wgt == -1){
+                    wgt = ParisMetro.TRANSFER_TIME;
+                    transfers[e >>> 6] |= 1L << e;
+                }
+                weights[e] = wgt;
+                e++;
+            }
+            id++;
+        }
+        return new CompactGraph(stations, names, idByStation, offsets, targets, weights, transfers);
+    }
+
+    /*
+     * returns the number of vertices/stations in the snapshot
+     */
+    public int numVertices(){
+        return stations.length;
+    }
+
+    /*
+     * returns the number of edges in the snapshot
+     */
+    public int numEdges(){
+        return targets.length;
+    }
+
+    /*
+     * returns the dense id of a station number, or -1 if the station is not in the snapshot
+     */
+    public int id(int station){
+        if(station < 0 || station >= idByStation.length){
+            return -1;
+        }
+        return idByStation[station];
+    }
+
+    /*
+     * returns the station number of a dense id
+     */
+    public int station(int u){
+        return stations[u];
+    }
+
+    /*
+     * returns the station name of a dense id
+     */
+    public String name(int u){
+        return names[u];
+    }
+
+    /*
+     * returns the index of the first outgoing edge of u
+     */
+    public int firstEdge(int u){
+        return offsets[u];
+    }
+
+    /*
+     * returns the index one past the last outgoing edge of u
+     */
+    public int endEdge(int u){
+        return offsets[u + 1];
+    }
+
+    /*
+     * returns the dense id of the destination of edge e
+     */
+    public int target(int e){
+        return targets[e];
+    }
+
+    /*
+     * returns the travel time of edge e, with walking transfers already costed
+     */
+    public int weight(int e){
+        return weights[e];
+    }
+
+    /*
+     * returns the dense id of the origin of edge e
+     */
+    public int source(int e){
+        return sources[e];
+    }
+
+    /*
+     * returns the position of the first incoming edge of v, to be used with inEdge
+     */
+    public int firstInEdge(int v){
+        return inOffsets[v];
+    }
+
+    /*
+     * returns the position one past the last incoming edge of v
+     */
+    public int endInEdge(int v){
+        return inOffsets[v + 1];
+    }
+
+    /*
+     * returns the edge index of the incoming edge at position i
+     */
+    public int inEdge(int i){
+        return inEdges[i];
+    }
+
+    /*
+     * returns the index of the edge from u to v (dense ids), or -1 if they aren't adjacent
+     */
+    public int edge(int u, int v){
+        for(int e = offsets[u]; e < offsets[u + 1]; e++){
+            if(targets[e] == v){
+                return e;
+            }
+        }
+        return -1;
+    }
+
+    /*
+     * returns true if edge e is a walking transfer between two lines
+     */
+    public boolean isTransfer(int e){
+        return (transfers[e >>> 6] & (1L << e)) != 0;
+    }
+
+    /*
+     * returns the number of lines in the snapshot
+     */
+    public int numLines(){
+        return lineOffsets.length - 1;
+    }
+
+    /*
+     * returns the line id of the vertex/station u
+     */
+    public int line(int u){
+        return lineOf[u];
+    }
+
+    /*
+     * returns the dense ids of the vertices/stations on line l
+     */
+    public int[] lineStations(int l){
+        return Arrays.copyOfRange(lineStations, lineOffsets[l], lineOffsets[l + 1]);
+    }
+}
@@ -0,0 +1,727 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/*
+ * This class represents a contraction hierarchy (CH) of the Paris metro network. During the
+ * preprocessing, the vertices/stations are contracted one at a time, from the least to the most
+ * important: when a station is taken out, a shortcut edge is added between each pair of its
+ * remaining neighbours whose shortest path went through it. Queries then run a bidirectional
+ * search that only ever goes up the hierarchy (towards more important stations), which settles
+ * a handful of stations, and the shortcuts on the result are unpacked into the original path.
+ *
+ * The hierarchy is built from a CompactGraph, so walking transfers cost ParisMetro.TRANSFER_TIME
+ * like everywhere else. Once built it doesn't need the snapshot anymore and can be written to a
+ * file and read back in another process. The file keeps the number of edges and the fingerprint
+ * (TravelTimeMatrix.fingerprint) of the network, so a hierarchy read back can be checked against
+ * the network it is used with.
+ */
+public class ContractionHierarchy{
+
+    private static final int MAGIC = 0x504D4332; // "PMC2"
+
+    private static final int HEADER_INTS = 7;
+
+    private static final int UNREACHABLE = Integer.MAX_VALUE;
+
+    /*
+     * limit on the number of vertices/stations settled by a witness search during the
+     * preprocessing, a search that hits it adds the shortcut to be safe
+     */
+    private static final int WITNESS_LIMIT = 500;
+
+    private final int[] stations;
+    private final int[] idByStation;
+
+    /*
+     * number of edges and fingerprint of the network the hierarchy was built for
+     */
+    private final int numNetworkEdges;
+    private final long fingerprint;
+
+    /*
+     * position of each vertex/station in the contraction order
+     */
+    private final int[] rank;
+
+    /*
+     * upward edges used by the forward search: the edges from u to more important stations are
+     * upTargets[upOffsets[u]] to upTargets[upOffsets[u+1]-1]. middle is the station a shortcut
+     * skips, or -1 for an edge of the network.
+     */
+    private final int[] upOffsets, upTargets, upWeights, upMiddles;
+
+    /*
+     * upward edges used by the backward search: the edges from more important stations to v
+     */
+    private final int[] downOffsets, downSources, downWeights, downMiddles;
+
+    private ContractionHierarchy(int numNetworkEdges, long fingerprint, int[] stations, int[] rank, int[] upOffsets, int[] upTargets, int[] upWeights, int[] upMiddles, int[] downOffsets, int[] downSources, int[] downWeights, int[] downMiddles){
+        this.numNetworkEdges = numNetworkEdges;
+        this.fingerprint = fingerprint;
+        this.stations = stations;
+        this.rank = rank;
+        this.upOffsets = upOffsets;
+        this.upTargets = upTargets;
+        this.upWeights = upWeights;
+        this.upMiddles = upMiddles;
+        this.downOffsets = downOffsets;
+        this.downSources = downSources;
+        this.downWeights = downWeights;
+        this.downMiddles = downMiddles;
+        int maxStation = -1;
+        for(int station : stations){
+            maxStation = Math.max(maxStation, station);
+        }
+        idByStation = new int[maxStation + 1];
+        Arrays.fill(idByStation, -1);
+        for(int u = 0; u < stations.length; u++){
+            idByStation[stations[u]] = u;
+        }
+    }
+
+    // -------- preprocessing --------
+
+    /*
+     * Builds the hierarchy of the given snapshot. Dense ids of the hierarchy are the same as
+     * the ones of the snapshot.
+     */
+    public static ContractionHierarchy build(CompactGraph g){
+        return new Builder(g).build();
+    }
+
+    /*
+     * Nested class that holds the graph while it is being contracted. Every vertex/station has
+     * growable lists of outgoing and incoming edges; edges to contracted stations are skipped.
+     */
+    private static class Builder{
+        private final CompactGraph g;
+        private final int n;
+
+        private final int[][] outTo, outW, outMid, inFrom, inW, inMid;
+        private final int[] outCount, inCount;
+
+        private final boolean[] contracted;
+        private final int[] contractedNeighbours;
+
+        // witness search buffers
+        private final int[] witnessDist, witnessStamp;
+        private int witnessGeneration;
+        private final IndexedHeap witnessHeap;
+
+        Builder(CompactGraph g){
+            this.g = g;
+            n = g.numVertices();
+            outTo = new int[n][];
+            outW = new int[n][];
+            outMid = new int[n][];
+            inFrom = new int[n][];
+            inW = new int[n][];
+            inMid = new int[n][];
+            outCount = new int[n];
+            inCount = new int[n];
+            for(int u = 0; u < n; u++){
+                int out = g.endEdge(u) - g.firstEdge(u);
+                int in = g.endInEdge(u) - g.firstInEdge(u);
+                outTo[u] = new int[Math.max(out, 2)];
+                outW[u] = new int[Math.max(out, 2)];
+                outMid[u] = new int[Math.max(out, 2)];
+                inFrom[u] = new int[Math.max(in, 2)];
+                inW[u] = new int[Math.max(in, 2)];
+                inMid[u] = new int[Math.max(in, 2)];
+            }
+            for(int e = 0; e < g.numEdges(); e++){
+                addEdge(g.source(e), g.target(e), g.weight(e), -1);
+            }
+            contracted = new boolean[n];
+            contractedNeighbours = new int[n];
+            witnessDist = new int[n];
+            witnessStamp = new int[n];
+            witnessHeap = new IndexedHeap(n);
+        }
+
+        ContractionHierarchy build(){
+            int[] rank = new int[n];
+            // the edges each station keeps towards the more important ones when it is contracted
+            int[][] upTo = new int[n][], upW = new int[n][], upMid = new int[n][];
+            int[][] downFrom = new int[n][], downW = new int[n][], downMid = new int[n][];
+
+            IndexedHeap order = new IndexedHeap(n);
+            for(int v = 0; v < n; v++){
+                order.insert(v, priority(v));
+            }
+            int next = 0;
+            while(!order.isEmpty()){
+                int v = order.poll();
+                // lazy update: the priority may have gone up since v was queued
+                int p = priority(v);
+                if(!order.isEmpty() && p > order.minKey()){
+                    order.insert(v, p);
+                    continue;
+                }
+                rank[v] = next++;
+                contract(v, true);
+
+                int out = 0, in = 0;
+                upTo[v] = new int[outCount[v]];
+                upW[v] = new int[outCount[v]];
+                upMid[v] = new int[outCount[v]];
+                for(int i = 0; i < outCount[v]; i++){
+                    if(!contracted[outTo[v][i]]){
+                        upTo[v][out] = outTo[v][i];
+                        upW[v][out] = outW[v][i];
+                        upMid[v][out] = outMid[v][i];
+                        out++;
+                    }
+                }
+                downFrom[v] = new int[inCount[v]];
+                downW[v] = new int[inCount[v]];
+                downMid[v] = new int[inCount[v]];
+                for(int i = 0; i < inCount[v]; i++){
+                    if(!contracted[inFrom[v][i]]){
+                        downFrom[v][in] = inFrom[v][i];
+                        downW[v][in] = inW[v][i];
+                        downMid[v][in] = inMid[v][i];
+                        in++;
+                    }
+                }
+                upTo[v] = Arrays.copyOf(upTo[v], out);
+                downFrom[v] = Arrays.copyOf(downFrom[v], in);
+                contracted[v] = true;
+                for(int x : upTo[v]){
+                    contractedNeighbours[x]++;
+                }
+                for(int u : downFrom[v]){
+                    contractedNeighbours[u]++;
+                }
+            }
+
+            int[] stations = new int[n];
+            int[] upOffsets = new int[n + 1], downOffsets = new int[n + 1];
+            for(int u = 0; u < n; u++){
+                stations[u] = g.station(u);
+                upOffsets[u + 1] = upOffsets[u] + upTo[u].length;
+                downOffsets[u + 1] = downOffsets[u] + downFrom[u].length;
+            }
+            int[] upTargets = new int[upOffsets[n]], upWeights = new int[upOffsets[n]], upMiddles = new int[upOffsets[n]];
+            int[] downSources = new int[downOffsets[n]], downWeights = new int[downOffsets[n]], downMiddles = new int[downOffsets[n]];
+            for(int u = 0; u < n; u++){
+                System.arraycopy(upTo[u], 0, upTargets, upOffsets[u], upTo[u].length);
+                System.arraycopy(upW[u], 0, upWeights, upOffsets[u], upTo[u].length);
+                System.arraycopy(upMid[u], 0, upMiddles, upOffsets[u], upTo[u].length);
+                System.arraycopy(downFrom[u], 0, downSources, downOffsets[u], downFrom[u].length);
+                System.arraycopy(downW[u], 0, downWeights, downOffsets[u], downFrom[u].length);
+                System.arraycopy(downMid[u], 0, downMiddles, downOffsets[u], downFrom[u].length);
+            }
+            return new ContractionHierarchy(g.numEdges(), TravelTimeMatrix.fingerprint(g), stations, rank, upOffsets, upTargets, upWeights, upMiddles, downOffsets, downSources, downWeights, downMiddles);
+        }
+
+        /*
+         * importance of v: the number of shortcuts its contraction would add minus the number
+         * of edges it would remove, plus the number of its neighbours already contracted so
+         * the contraction spreads evenly over the network
+         */
+        private int priority(int v){
+            int shortcuts = contract(v, false);
+            int removed = 0;
+            for(int i = 0; i < outCount[v]; i++){
+                if(!contracted[outTo[v][i]]){
+                    removed++;
+                }
+            }
+            for(int i = 0; i < inCount[v]; i++){
+                if(!contracted[inFrom[v][i]]){
+                    removed++;
+                }
+            }
+            return shortcuts - removed + contractedNeighbours[v];
+        }
+
+        /*
+         * Finds the shortcuts needed to contract v, adds them if add is true, and returns
+         * how many there are
+         */
+        private int contract(int v, boolean add){
+            int shortcuts = 0;
+            for(int i = 0; i < inCount[v]; i++){
+                int u = inFrom[v][i];
+                if(contracted[u]){
+                    continue;
+                }
+                // the longest path through v that starts at u bounds the witness search
+                int limit = 0;
+                for(int j = 0; j < outCount[v]; j++){
+                    int x = outTo[v][j];
+                    if(!contracted[x] && x != u){
+                        limit = Math.max(limit, inW[v][i] + outW[v][j]);
+                    }
+                }
+                if(limit == 0){
+                    continue;
+                }
+                witnessSearch(u, v, limit);
+                for(int j = 0; j < outCount[v]; j++){
+                    int x = outTo[v][j];
+                    if(contracted[x] || x == u){
+                        continue;
+                    }
+                    int through = inW[v][i] + outW[v][j];
+                    int witness = witnessStamp[x] == witnessGeneration ? witnessDist[x] : UNREACHABLE;
+                    if(witness > through){ // the shortest path from u to x goes through v
+                        shortcuts++;
+                        if(add){
+                            addEdge(u, x, through, v);
+                        }
+                    }
+                }
+            }
+            return shortcuts;
+        }
+
+        /*
+         * Dijkstra's Algorithm from u over the stations that aren't contracted, without going
+         * through v and without going past limit
+         */
+        private void witnessSearch(int u, int v, int limit){
+            witnessHeap.clear();
+            witnessGeneration++;
+            witnessStamp[u] = witnessGeneration;
+            witnessDist[u] = 0;
+            witnessHeap.insert(u, 0);
+            int settled = 0;
+            while(!witnessHeap.isEmpty() && settled < WITNESS_LIMIT){
+                int vert = witnessHeap.poll();
+                settled++;
+                int dv = witnessDist[vert];
+                if(dv > limit){
+                    break;
+                }
+                for(int i = 0; i < outCount[vert]; i++){
+                    int op = outTo[vert][i];
+                    if(op == v || contracted[op]){
+                        continue;
+                    }
+                    int nd = dv + outW[vert][i];
+                    if(witnessStamp[op] != witnessGeneration){
+                        witnessStamp[op] = witnessGeneration;
+                        witnessDist[op] = nd;
+                        witnessHeap.insert(op, nd);
+                    }
+                    else if(nd < witnessDist[op] && witnessHeap.contains(op)){
+                        witnessDist[op] = nd;
+                        witnessHeap.decreaseKey(op, nd);
+                    }
+                }
+            }
+        }
+
+        /*
+         * adds the edge from u to x, or lowers the weight of the existing one
+         */
+        private void addEdge(int u, int x, int weight, int middle){
+            for(int i = 0; i < outCount[u]; i++){
+                if(outTo[u][i] == x){
+                    if(weight < outW[u][i]){
+                        outW[u][i] = weight;
+                        outMid[u][i] = middle;
+                        for(int j = 0; j < inCount[x]; j++){
+                            if(inFrom[x][j] == u){
+                                inW[x][j] = weight;
+                                inMid[x][j] = middle;
+                            }
+                        }
+                    }
+                    return;
+                }
+            }
+            if(outCount[u] == outTo[u].length){
+                outTo[u] = Arrays.copyOf(outTo[u], 2 * outCount[u]);
+                outW[u] = Arrays.copyOf(outW[u], 2 * outCount[u]);
+                outMid[u] = Arrays.copyOf(outMid[u], 2 * outCount[u]);
+            }
+            outTo[u][outCount[u]] = x;
+            outW[u][outCount[u]] = weight;
+            outMid[u][outCount[u]] = middle;
+            outCount[u]++;
+            if(inCount[x] == inFrom[x].length){
+                inFrom[x] = Arrays.copyOf(inFrom[x], 2 * inCount[x]);
+                inW[x] = Arrays.copyOf(inW[x], 2 * inCount[x]);
+                inMid[x] = Arrays.copyOf(inMid[x], 2 * inCount[x]);
+            }
+            inFrom[x][inCount[x]] = u;
+            inW[x][inCount[x]] = weight;
+            inMid[x][inCount[x]] = middle;
+            inCount[x]++;
+        }
+    }
+
+    // -------- queries --------
+
+    /*
+     * returns a new query object, each thread answering queries needs its own
+     */
+    public Query newQuery(){
+        return new Query();
+    }
+
+    /*
+     * This nested class answers point to point queries on the hierarchy with a bidirectional
+     * search that only follows edges towards more important stations. The buffers are reused
+     * between queries.
+     */
+    public class Query{
+        private final int[] distF, distB, linkF, linkB, stampF, stampB;
+        private int generation;
+        private final IndexedHeap heapF, heapB;
+        private int settled;
+
+        private Query(){
+            int n = stations.length;
+            distF = new int[n];
+            distB = new int[n];
+            linkF = new int[n];
+            linkB = new int[n];
+            stampF = new int[n];
+            stampB = new int[n];
+            heapF = new IndexedHeap(n);
+            heapB = new IndexedHeap(n);
+        }
+
+        /*
+         * Computes the shortest path from source to target (dense ids) with the shortcuts unpacked
+         */
+        public Route route(int source, int target){
+            heapF.clear();
+            heapB.clear();
+            generation++;
+            if(generation == 0){ // the generation number wrapped around, old stamps could look current
+                Arrays.fill(stampF, 0);
+                Arrays.fill(stampB, 0);
+                generation = 1;
+            }
+            settled = 0;
+            stampF[source] = generation;
+            distF[source] = 0;
+            linkF[source] = -1;
+            heapF.insert(source, 0);
+            stampB[target] = generation;
+            distB[target] = 0;
+            linkB[target] = -1;
+            heapB.insert(target, 0);
+
+            int best = UNREACHABLE;
+            int meeting = -1;
+            while(!heapF.isEmpty() || !heapB.isEmpty()){
+                boolean forward = heapB.isEmpty() || (!heapF.isEmpty() && heapF.minKey() <= heapB.minKey());
+                IndexedHeap heap = forward ? heapF : heapB;
+                if(heap.minKey() >= best){ // nothing left on this side can improve the path
+                    heap.clear();
+                    continue;
+                }
+                int vert = heap.poll();
+                settled++;
+                int[] dist = forward ? distF : distB;
+                int[] otherStamp = forward ? stampB : stampF;
+                int[] otherDist = forward ? distB : distF;
+                if(otherStamp[vert] == generation && dist[vert] + otherDist[vert] < best){
+                    best = dist[vert] + otherDist[vert];
+                    meeting = vert;
+                }
+                int first = forward ? upOffsets[vert] : downOffsets[vert];
+                int end = forward ? upOffsets[vert + 1] : downOffsets[vert + 1];
+                for(int i = first; i < end; i++){
+                    int op = forward ? upTargets[i] : downSources[i];
+                    int nd = dist[vert] + (forward ? upWeights[i] : downWeights[i]);
+                    int[] stamp = forward ? stampF : stampB;
+                    int[] link = forward ? linkF : linkB;
+                    if(stamp[op] != generation){
+                        stamp[op] = generation;
+                        dist[op] = nd;
+                        link[op] = i;
+                        heap.insert(op, nd);
+                    }
+                    else if(nd < dist[op] && heap.contains(op)){
+                        dist[op] = nd;
+                        link[op] = i;
+                        heap.decreaseKey(op, nd);
+                    }
+                }
+            }
+            if(meeting == -1){
+                return new Route(new int[0], UNREACHABLE);
+            }
+            return new Route(unpack(source, meeting), best);
+        }
+
+        /*
+         * returns the number of vertices/stations settled by the last query
+         */
+        public int settledCount(){
+            return settled;
+        }
+
+        /*
+         * rebuilds the path through the meeting vertex/station, replacing every shortcut by the
+         * edges it stands for
+         */
+        private int[] unpack(int source, int meeting){
+            IntList path = new IntList();
+            // forward half, collected backwards from the meeting point
+            IntList edges = new IntList();
+            for(int v = meeting; linkF[v] != -1; v = upSource(linkF[v])){
+                edges.add(linkF[v]);
+            }
+            path.add(source);
+            for(int i = edges.size() - 1; i >= 0; i--){
+                int e = edges.get(i);
+                expand(upSource(e), upTargets[e], upMiddles[e], path);
+            }
+            // backward half, from the meeting point to the target
+            for(int v = meeting; linkB[v] != -1; ){
+                int e = linkB[v];
+                int next = downTarget(e);
+                expand(downSources[e], next, downMiddles[e], path);
+                v = next;
+            }
+            return path.toArray();
+        }
+    }
+
+    /*
+     * returns the origin of the upward edge at position e
+     */
+    private int upSource(int e){
+        return owner(upOffsets, e);
+    }
+
+    /*
+     * returns the destination of the downward edge at position e
+     */
+    private int downTarget(int e){
+        return owner(downOffsets, e);
+    }
+
+    /*
+     * returns the vertex/station whose range of offsets contains position e
+     */
+    private static int owner(int[] offsets, int e){
+        int low = 0, high = offsets.length - 2;
+        while(low < high){
+            int mid = (low + high + 1) >>> 1;
+            if(offsets[mid] <= e){
+                low = mid;
+            }
+            else{
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    /*
+     * Appends the original path of the edge from u to x (without u) to path. A shortcut over m is
+     * the edge from u to m, stored with m's downward edges, followed by the edge from m to x,
+     * stored with m's upward edges. An explicit stack is used so long shortcuts can't overflow
+     * the call stack.
+     */
+    private void expand(int u, int x, int middle, IntList path){
+        IntList stack = new IntList();
+        stack.add(u);
+        stack.add(x);
+        stack.add(middle);
+        while(stack.size() > 0){
+            int m = stack.pop();
+            int to = stack.pop();
+            int from = stack.pop();
+            if(m == -1){
+                path.add(to);
+                continue;
+            }
+            int second = find(upOffsets, upTargets, m, to);
+            int first = find(downOffsets, downSources, m, from);
+            // pushed in reverse so the first half is expanded first
+            stack.add(m);
+            stack.add(to);
+            stack.add(upMiddles[second]);
+            stack.add(from);
+            stack.add(m);
+            stack.add(downMiddles[first]);
+        }
+    }
+
+    /*
+     * returns the position of the edge of v whose other end is w
+     */
+    private static int find(int[] offsets, int[] ends, int v, int w){
+        for(int i = offsets[v]; i < offsets[v + 1]; i++){
+            if(ends[i] == w){
+                return i;
+            }
+        }
+        throw new IllegalStateException("Missing edge in the hierarchy");
+    }
+
+    /*
+     * Small growable list of ints used to unpack paths without boxing
+     */
+    private static class IntList{
+        private int[] values = new int[16];
+        private int size;
+
+        void add(int value){
+            if(size == values.length){
+                values = Arrays.copyOf(values, 2 * size);
+            }
+            values[size++] = value;
+        }
+
+        int get(int i){
+            return values[i];
+        }
+
+        int pop(){
+            return values[--size];
+        }
+
+        int size(){
+            return size;
+        }
+
+        int[] toArray(){
+            return Arrays.copyOf(values, size);
+        }
+    }
+
+    // -------- lookups --------
+
+    /*
+     * returns the number of vertices/stations in the hierarchy
+     */
+    public int numVertices(){
+        return stations.length;
+    }
+
+    /*
+     * returns the number of edges and shortcuts in the hierarchy
+     */
+    public int numEdges(){
+        return upTargets.length + downSources.length;
+    }
+
+    /*
+     * returns the dense id of a station number, or -1 if the station is not in the hierarchy
+     */
+    public int id(int station){
+        if(station < 0 || station >= idByStation.length){
+            return -1;
+        }
+        return idByStation[station];
+    }
+
+    /*
+     * returns the station number of a dense id
+     */
+    public int station(int u){
+        return stations[u];
+    }
+
+    /*
+     * returns true if the hierarchy was built for a network with the same stations and edges as g
+     */
+    public boolean matches(CompactGraph g){
+        return stations.length == g.numVertices() && numNetworkEdges == g.numEdges() && fingerprint == TravelTimeMatrix.fingerprint(g);
+    }
+
+    /*
+     * returns the position of u in the contraction order
+     */
+    public int rank(int u){
+        return rank[u];
+    }
+
+    // -------- serialization --------
+
+    /*
+     * Writes the hierarchy to a file that can be read back with read()
+     */
+    public void write(String fileName) throws IOException{
+        try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(fileName)))){
+            out.writeInt(MAGIC);
+            out.writeInt(numNetworkEdges);
+            out.writeLong(fingerprint);
+            out.writeInt(stations.length);
+            out.writeInt(upTargets.length);
+            out.writeInt(downSources.length);
+            for(int[] array : new int[][]{stations, rank, upOffsets, upTargets, upWeights, upMiddles, downOffsets, downSources, downWeights, downMiddles}){
+                for(int value : array){
+                    out.writeInt(value);
+                }
+            }
+        }
+    }
+
+    /*
+     * Reads a hierarchy written by write(). The counts of the header are checked against the
+     * size of the file before anything is allocated.
+     */
+    public static ContractionHierarchy read(String fileName) throws IOException{
+        long size = new File(fileName).length();
+        try(DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(fileName)))){
+            if(size < 4L * HEADER_INTS || in.readInt() != MAGIC){ // files of the first layout have another magic too
+                throw new IOException("Not a contraction hierarchy file: " + fileName);
+            }
+            int numNetworkEdges = in.readInt();
+            long fingerprint = in.readLong();
+            int n = in.readInt();
+            int up = in.readInt();
+            int down = in.readInt();
+            // stations, ranks and the two offset arrays, then targets/sources, weights and middles of both directions
+            if(n < 0 || up < 0 || down < 0 || 4L * (HEADER_INTS + 4L * n + 2 + 3L * up + 3L * down) != size){
+                throw new IOException("Corrupt contraction hierarchy file: " + fileName);
+            }
+            int[] stations = readInts(in, n);
+            int[] rank = readInts(in, n);
+            int[] upOffsets = readInts(in, n + 1);
+            int[] upTargets = readInts(in, up);
+            int[] upWeights = readInts(in, up);
+            int[] upMiddles = readInts(in, up);
+            int[] downOffsets = readInts(in, n + 1);
+            int[] downSources = readInts(in, down);
+            int[] downWeights = readInts(in, down);
+            int[] downMiddles = readInts(in, down);
+            return new ContractionHierarchy(numNetworkEdges, fingerprint, stations, rank, upOffsets, upTargets, upWeights, upMiddles, downOffsets, downSources, downWeights, downMiddles);
+        }
+    }
+
+    private static int[] readInts(DataInputStream in, int count) throws IOException{
+        int[] values = new int[count];
+        for(int i = 0; i < count; i++){
+            values[i] = in.readInt();
+        }
+        return values;
+    }
+
+    /*
+     * Builds the hierarchy of a metro network file and writes it to a file:
+     * java ContractionHierarchy metro.txt metro.ch
+     */
+    public static void main(String[] args){
+        if(args.length != 2){
+            System.err.print("Usage: java ContractionHierarchy <network file> <hierarchy file>");
+            return;
+        }
+        try{
+            new ParisMetro(args[0]);
+            build(CompactGraph.of(ParisMetro.getGraph())).write(args[1]);
+        }
+        catch(Exception except){
+            System.err.print(except);
+        }
+    }
+}
@@ -0,0 +1,278 @@
+import java.util.Arrays;
+
+/*
+ * This class keeps the shortest path tree from one hub vertex/station of a CompactGraph up to
+ * date while edges are taken out of service or change travel time. Instead of running
+ * Dijkstra's Algorithm again from scratch, only the part of the tree that depends on the
+ * changed edges is repaired, following the dynamic algorithm of Ramalingam and Reps:
+ * - when edges get slower or are removed, the subtrees below them lose their distances and
+ *   are re-attached through their best incoming edge from the unaffected part of the tree,
+ *   then a Dijkstra search limited to those subtrees settles them again
+ * - when an edge gets faster, a Dijkstra search starts at its destination and only goes as
+ *   far as the distances keep improving
+ * The tree keeps its own copy of the edge weights, the snapshot itself is never modified.
+ */
+public class DynamicRouteTree{
+
+    /*
+     * weight of an edge that is out of service
+     */
+    public static final int REMOVED = Integer.MAX_VALUE;
+
+    private final CompactGraph g;
+    private final int hub;
+
+    /*
+     * current travel time of every edge of the snapshot, REMOVED if it is out of service
+     */
+    private final int[] weights;
+
+    /*
+     * "distance" from the hub, Integer.MAX_VALUE if the vertex/station can't be reached
+     */
+    private final int[] dist;
+
+    /*
+     * edge used to reach each vertex/station in the tree, -1 for the hub and unreachable stations
+     */
+    private final int[] predEdge;
+
+    private final IndexedHeap heap;
+
+    /*
+     * marks the vertices/stations of the subtrees being repaired, and the list of them
+     */
+    private final boolean[] affected;
+    private final int[] affectedList;
+
+    /*
+     * number of vertices/stations whose distance was recomputed by the last repair
+     */
+    private int repaired;
+
+    /*
+     * Builds the shortest path tree from hub (dense id) on the given snapshot
+     */
+    public DynamicRouteTree(CompactGraph g, int hub){
+        this.g = g;
+        this.hub = hub;
+        int n = g.numVertices();
+        int m = g.numEdges();
+        weights = new int[m];
+        for(int e = 0; e < m; e++){
+            weights[e] = g.weight(e);
+        }
+        dist = new int[n];
+        predEdge = new int[n];
+        heap = new IndexedHeap(n);
+        affected = new boolean[n];
+        affectedList = new int[n];
+
+        Arrays.fill(dist, Integer.MAX_VALUE);
+        Arrays.fill(predEdge, -1);
+        dist[hub] = 0;
+        heap.insert(hub, 0);
+        propagate();
+    }
+
+    /*
+     * returns the hub the tree starts from
+     */
+    public int hub(){
+        return hub;
+    }
+
+    /*
+     * returns the "distance" of v from the hub, or Integer.MAX_VALUE if v can't be reached
+     */
+    public int distance(int v){
+        return dist[v];
+    }
+
+    /*
+     * returns the predecessor of v in the tree, or -1 for the hub and unreachable stations
+     */
+    public int predecessor(int v){
+        return predEdge[v] == -1 ? -1 : g.source(predEdge[v]);
+    }
+
+    /*
+     * returns the shortest path from the hub to v, or an empty array if v can't be reached
+     */
+    public int[] path(int v){
+        if(dist[v] == Integer.MAX_VALUE){
+            return new int[0];
+        }
+        int length = 0;
+        for(int current = v; current != -1; current = predecessor(current)){
+            length++;
+        }
+        int[] path = new int[length];
+        for(int current = v; current != -1; current = predecessor(current)){ // filling the path backwards from v
+            path[--length] = current;
+        }
+        return path;
+    }
+
+    /*
+     * returns the current travel time of edge e, or REMOVED if it is out of service
+     */
+    public int weight(int e){
+        return weights[e];
+    }
+
+    /*
+     * returns the number of vertices/stations whose distance was recomputed by the last update
+     */
+    public int repairedCount(){
+        return repaired;
+    }
+
+    /*
+     * takes edge e out of service
+     */
+    public void removeEdge(int e){
+        setWeights(new int[]{e}, new int[]{REMOVED});
+    }
+
+    /*
+     * takes the vertex/station u out of service, along with all its edges
+     */
+    public void removeStation(int u){
+        int count = (g.endEdge(u) - g.firstEdge(u)) + (g.endInEdge(u) - g.firstInEdge(u));
+        int[] changed = new int[count];
+        int i = 0;
+        for(int e = g.firstEdge(u); e < g.endEdge(u); e++){
+            changed[i++] = e;
+        }
+        for(int j = g.firstInEdge(u); j < g.endInEdge(u); j++){
+            changed[i++] = g.inEdge(j);
+        }
+        int[] removed = new int[count];
+        Arrays.fill(removed, REMOVED);
+        setWeights(changed, removed);
+    }
+
+    /*
+     * changes the travel time of edge e, REMOVED takes it out of service
+     */
+    public void setWeight(int e, int weight){
+        setWeights(new int[]{e}, new int[]{weight});
+    }
+
+    /*
+     * Changes the travel time of several edges at once and repairs the tree a single time.
+     * The edges that got slower are handled first, then the ones that got faster.
+     */
+    public void setWeights(int[] edges, int[] newWeights){
+        repaired = 0;
+        int count = 0;
+        // weight increases: the destinations of the tree edges that got slower are the roots of the subtrees to repair
+        for(int i = 0; i < edges.length; i++){
+            int e = edges[i];
+            int old = weights[e];
+            if(newWeights[i] > old){
+                weights[e] = newWeights[i];
+                int v = g.target(e);
+                if(predEdge[v] == e && !affected[v]){
+                    affected[v] = true;
+                    affectedList[count++] = v;
+                }
+            }
+        }
+        if(count > 0){
+            repairIncrease(count);
+        }
+        // weight decreases: a faster edge can only shorten the paths through its destination
+        for(int i = 0; i < edges.length; i++){
+            int e = edges[i];
+            if(newWeights[i] < weights[e]){
+                weights[e] = newWeights[i];
+                int u = g.source(e);
+                int v = g.target(e);
+                if(dist[u] != Integer.MAX_VALUE && newWeights[i] != REMOVED && dist[u] + newWeights[i] < dist[v]){
+                    dist[v] = dist[u] + newWeights[i];
+                    predEdge[v] = e;
+                    offer(v);
+                }
+            }
+        }
+        propagate();
+    }
+
+    /*
+     * repairs the subtrees rooted at the first count vertices/stations of affectedList
+     */
+    private void repairIncrease(int count){
+        // collecting every vertex/station below the roots in the tree
+        for(int i = 0; i < count; i++){
+            int x = affectedList[i];
+            for(int e = g.firstEdge(x); e < g.endEdge(x); e++){
+                int z = g.target(e);
+                if(predEdge[z] == e && !affected[z]){
+                    affected[z] = true;
+                    affectedList[count++] = z;
+                }
+            }
+        }
+        for(int i = 0; i < count; i++){
+            int x = affectedList[i];
+            dist[x] = Integer.MAX_VALUE;
+            predEdge[x] = -1;
+        }
+        // re-attaching each affected vertex/station through its best edge from the unaffected part of the tree
+        for(int i = 0; i < count; i++){
+            int x = affectedList[i];
+            for(int j = g.firstInEdge(x); j < g.endInEdge(x); j++){
+                int e = g.inEdge(j);
+                int y = g.source(e);
+                if(!affected[y] && dist[y] != Integer.MAX_VALUE && weights[e] != REMOVED && dist[y] + weights[e] < dist[x]){
+                    dist[x] = dist[y] + weights[e];
+                    predEdge[x] = e;
+                }
+            }
+            if(dist[x] != Integer.MAX_VALUE){
+                offer(x);
+            }
+        }
+        for(int i = 0; i < count; i++){
+            affected[affectedList[i]] = false;
+        }
+    }
+
+    /*
+     * puts v in the heap with its current distance, or lowers its key if it is already there
+     */
+    private void offer(int v){
+        if(heap.contains(v)){
+            heap.decreaseKey(v, dist[v]);
+        }
+        else{
+            heap.insert(v, dist[v]);
+        }
+    }
+
+    /*
+     * Dijkstra's Algorithm from the vertices/stations in the heap, relaxing edges as long as
+     * distances improve
+     */
+    private void propagate(){
+        while(!heap.isEmpty()){
+            int x = heap.poll();
+            repaired++;
+            int dx = dist[x];
+            for(int e = g.firstEdge(x); e < g.endEdge(x); e++){
+                int w = weights[e];
+                if(w == REMOVED){
+                    continue;
+                }
+                int z = g.target(e);
+                if(dx + w < dist[z]){
+                    dist[z] = dx + w;
+                    predEdge[z] = e;
+                    offer(z);
+                }
+            }
+        }
+    }
+}
@@ -1,5 +1,11 @@
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /*
  * Implementation by: Michael Massaad
@@ -13,14 +19,51 @@ import java.util.concurrent.ConcurrentHashMap;
 public class Graph<V, E>{
 
     /*
-     * The vertices in the graph, contains the stations of the paris metro system
+     * The vertices in the graph, contains the stations of the paris metro system.
+     * A vertex/station is stored at the slot given by its id, the slot is null once it is
+     * removed and its id is given to the next vertex/station inserted.
      */
-    private LinkedList<Vertex<V>> vertices = new LinkedList<>();
+    private ArrayList<Vertex<V>> vertices = new ArrayList<>();
 
     /*
-     * The edges of the graph, contains the connections between stations of the paris metro system
+     * ids of the empty slots of vertices, used as a stack
      */
-    private LinkedList<Edge<E>> edges = new LinkedList<>();
+    private int[] freeIds = new int[0];
+    private int numFreeIds;
+
+    /*
+     * the vertex/station of every station number, so getVertex doesn't scan the vertices
+     */
+    private HashMap<V, Vertex<V>> index = new HashMap<>();
+
+    /*
+     * The edges of the graph, contains the connections between stations of the paris metro system.
+     * Each edge knows its slot in the list, a removed edge is replaced by the last one so
+     * removing doesn't shift the list.
+     */
+    private ArrayList<Edge<E>> edges = new ArrayList<>();
+
+    /*
+     * number of changes made to the graph so far, anything computed from the graph (like a
+     * cached route) is out of date once the version moves on
+     */
+    private volatile long version;
+
+    /*
+     * Objects that are told about every change to the vertices/stations and edges of the graph
+     */
+    private CopyOnWriteArrayList<Listener<V, E>> listeners = new CopyOnWriteArrayList<>();
+
+    /*
+     * Interface for the objects that keep information derived from the graph (like the lines
+     * of the network) up to date when the graph changes. The methods are called after the change.
+     */
+    public interface Listener<V, E>{
+        default void vertexInserted(Graph<V, E>.Vertex<V> v){}
+        default void vertexRemoved(Graph<V, E>.Vertex<V> v){}
+        default void edgeInserted(Graph<V, E>.Edge<E> e){}
+        default void edgeRemoved(Graph<V, E>.Edge<E> e){}
+    }
 
     // -------- nested vertex class --------
 
@@ -38,6 +81,12 @@ public class Graph<V, E>{
          */
         private String station;
 
+        /*
+         * slot of the vertex/station in the graph, it doesn't change while the vertex is in the
+         * graph and is -1 once it is removed
+         */
+        private int id = -1;
+
         /*
          * represents the connections the station/vertex has with other stations/vertex.
          * Since we are representing a directed graph, we split the edges based on the type
@@ -70,6 +119,14 @@ public class Graph<V, E>{
             return station;
         }
 
+        /*
+         * returns the id of the vertex/station in the graph, between 0 and maxVertexId() - 1,
+         * or -1 if it was removed from the graph
+         */
+        public int getId(){
+            return id;
+        }
+
         /*
          * makes sure that the vertex/station instance belongs to the given graph
          */
@@ -108,6 +165,11 @@ public class Graph<V, E>{
          */
         private Vertex<V>[] endpoints;
 
+        /*
+         * position of the edge in the edge list of the graph, -1 once it is removed
+         */
+        private int slot = -1;
+
         /*
          * Constructs an edge/connection instance from u to v, storing the weight of 
          * the edge 
@@ -146,18 +208,79 @@ public class Graph<V, E>{
 
     }
 
+    /*
+     * registers a listener that is told about every later change to the graph
+     */
+    public void addListener(Listener<V, E> listener){
+        listeners.add(listener);
+    }
+
+    /*
+     * stops telling the listener about changes to the graph
+     */
+    public void removeListener(Listener<V, E> listener){
+        listeners.remove(listener);
+    }
+
+    /*
+     * returns the version of the graph, it changes every time a vertex/station or an edge is
+     * inserted or removed
+     */
+    public long version(){
+        return version;
+    }
+
     /*
      * returns the number of vertices/stations in the graph
      */
     public int numVertices(){
-        return vertices.size();
+        return index.size();
     }
 
     /*
-     * returns the vertices/stationsof the graph as an iterable collection
+     * returns the vertices/stationsof the graph as an iterable collection, in the order of their ids
      */
     public Iterable<Vertex<V>> vertices(){
-        return vertices;
+        return () -> new Iterator<Vertex<V>>(){
+            private int next = advance(0);
+
+            private int advance(int id){
+                while(id < vertices.size() && vertices.get(id) == null){ // skipping the slots of removed vertices/stations
+                    id++;
+                }
+                return id;
+            }
+
+            @Override
+            public boolean hasNext(){
+                return next < vertices.size();
+            }
+
+            @Override
+            public Vertex<V> next(){
+                if(!hasNext()){
+                    throw new NoSuchElementException();
+                }
+                Vertex<V> v = vertices.get(next);
+                next = advance(next + 1);
+                return v;
+            }
+        };
+    }
+
+    /*
+     * returns one more than the largest id of a vertex/station, arrays indexed by getId()
+     * need this length
+     */
+    public int maxVertexId(){
+        return vertices.size();
+    }
+
+    /*
+     * returns the vertex/station with the given id, or null if there is none
+     */
+    public Vertex<V> vertex(int id){
+        return id >= 0 && id < vertices.size() ? vertices.get(id) : null;
     }
 
     /*
@@ -171,7 +294,7 @@ public class Graph<V, E>{
      * returns the edges of the graph as an iterable collection
      */
     public Iterable<Edge<E>> edges(){
-        return edges;
+        return Collections.unmodifiableList(edges);
     }
 
     /*
@@ -187,13 +310,7 @@ public class Graph<V, E>{
      * if the station number corresponds to a vertex/station that is not in the graph
      */
     public Vertex<V> getVertex(V stationNumber){
-        for(Vertex<V> v:vertices){
-            if(v.getElement().equals(stationNumber)){
-                return v;
-            }
-            
-        }
-        return null;
+        return index.get(stationNumber);
     }
 
     /*
@@ -256,11 +373,27 @@ public class Graph<V, E>{
     }
 
     /*
-     * Inserts and returns a new vertex/station with the given element.
+     * Inserts and returns a new vertex/station with the given element. Station numbers are
+     * unique, inserting one that is already in the graph throws an exception.
      */
-    public Vertex<V> insertVertex(V element, String stationName){
+    public Vertex<V> insertVertex(V element, String stationName) throws IllegalArgumentException{
+        if(index.containsKey(element)){
+            throw new IllegalArgumentException("Station " + element + " exists");
+        }
         Vertex<V> v = new Vertex<>(element, stationName);
-        vertices.addLast(v);
+        if(numFreeIds > 0){ // reusing the slot of a removed vertex/station
+            v.id = freeIds[--numFreeIds];
+            vertices.set(v.id, v);
+        }
+        else{
+            v.id = vertices.size();
+            vertices.add(v);
+        }
+        index.put(element, v);
+        version++;
+        for(Listener<V, E> listener : listeners){
+            listener.vertexInserted(v);
+        }
         return v;
     }
 
@@ -271,11 +404,16 @@ public class Graph<V, E>{
     public Edge<E> insertEdge(Vertex<V> u, Vertex<V> v, E element) throws IllegalArgumentException{
         if (getEdge(u, v) == null){
             Edge<E> e = new Edge<>(u, v, element);
+            e.slot = edges.size();
             edges.add(e);
             Vertex<V> origin = validate(u);
             Vertex<V> dest = validate(v);
             origin.getOutgoing().put(v, e);
             dest.getIncoming().put(u, e);
+            version++;
+            for(Listener<V, E> listener : listeners){
+                listener.edgeInserted(e);
+            }
             return e;
         }else{
             throw new IllegalArgumentException("Edge from u to v exists");
@@ -288,14 +426,28 @@ public class Graph<V, E>{
     public void removeVertex(Vertex<V> v) throws IllegalArgumentException{
         Vertex<V> vert = validate(v);
 
-        for(Edge<E> e : vert.getOutgoing().values()){
-            removeEdge(e);
-        }
+        // copying the incident edges first, since removeEdge changes the maps being iterated
+        ArrayList<Edge<E>> incident = new ArrayList<>(vert.getOutgoing().values());
         for(Edge<E> e : vert.getIncoming().values()){
+            if(e.getEndpoints()[0] != vert){ // a self loop is already in the outgoing edges
+                incident.add(e);
+            }
+        }
+        for(Edge<E> e : incident){
             removeEdge(e);
         }
 
-        vertices.remove(vert);
+        vertices.set(vert.id, null);
+        if(numFreeIds == freeIds.length){
+            freeIds = Arrays.copyOf(freeIds, Math.max(8, 2 * numFreeIds));
+        }
+        freeIds[numFreeIds++] = vert.id;
+        vert.id = -1;
+        index.remove(vert.getElement());
+        version++;
+        for(Listener<V, E> listener : listeners){
+            listener.vertexRemoved(vert);
+        }
     }
 
     /*
@@ -308,7 +460,17 @@ public class Graph<V, E>{
         verts[0].getOutgoing().remove(verts[1]);
         verts[1].getIncoming().remove(verts[0]);
 
-        edges.remove(edge);
+        // moving the last edge into the slot of the removed one
+        Edge<E> last = edges.remove(edges.size() - 1);
+        if(last != edge){
+            last.slot = edge.slot;
+            edges.set(edge.slot, last);
+        }
+        edge.slot = -1;
+        version++;
+        for(Listener<V, E> listener : listeners){
+            listener.edgeRemoved(edge);
+        }
 
     }
 
@@ -319,7 +481,7 @@ public class Graph<V, E>{
             throw new IllegalArgumentException("Invalid vertex");
         }
         Vertex<V> vert = (Vertex<V>) v;
-        if(!(vert.validate(this))){
+        if(!(vert.validate(this)) || vert.id == -1){ // a removed vertex/station isn't valid anymore
             throw new IllegalArgumentException("Invalid vertex");
         }
         return vert;
@@ -330,7 +492,7 @@ public class Graph<V, E>{
 		if (!(e instanceof Edge<E>))
 			throw new IllegalArgumentException("Invalid edge");
 		Edge<E> edge = (Edge<E>) e;
-		if (!(edge.validate(this)))
+		if (!(edge.validate(this)) || edge.slot == -1) // a removed edge isn't valid anymore
 			throw new IllegalArgumentException("Invalid edge");
 		return edge;
 	}
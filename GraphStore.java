@@ -0,0 +1,315 @@
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/*
+ * This class keeps a metro network that changes while queries run on it, as a sequence of
+ * immutable versions (copy-on-write). The Graph given to the store is only modified by the
+ * writers: a writer collects changes in a Batch, applies all of them to the graph, compiles the
+ * result into a new CompactGraph and publishes it as the next version with a single atomic swap.
+ * A reader pins the current version for the whole query, without taking any lock, so it never
+ * sees a half applied batch (like a line half removed), and closes it once done. A version is
+ * reclaimed (its snapshot is dropped) once it isn't current anymore and no reader has it pinned.
+ *
+ *   try(GraphStore.Version version = store.pin()){
+ *       Route route = version.engine().route(u, v);
+ *   }
+ *
+ * Writers are applied one batch at a time, readers never wait for them. Version numbers
+ * increase with every batch, so they can be given to a RouteCache. Every thread has one search
+ * engine for the whole store, made again when the thread moves to another version, so a thread
+ * keeps at most the snapshot of the last version it searched.
+ */
+public class GraphStore{
+
+    /*
+     * the network the writers change, never read by the readers
+     */
+    private final Graph<Integer,Integer> master;
+
+    private final AtomicReference<Version> current = new AtomicReference<>();
+
+    private final Object writeLock = new Object();
+
+    private final AtomicLong reclaimed = new AtomicLong();
+
+    /*
+     * engine of every thread that searched the store, for the version it searched last
+     */
+    private final ThreadLocal<RouteEngine> engines = new ThreadLocal<>();
+
+    /*
+     * Constructs a store whose first version is the given graph, which is then owned by the
+     * store: it must not be changed or read other than through the store
+     */
+    public GraphStore(Graph<Integer,Integer> g){
+        master = g;
+        current.set(new Version(1, CompactGraph.of(g)));
+    }
+
+    /*
+     * This nested class represents one published version of the network. A version handed out
+     * by pin() has to be closed exactly once.
+     */
+    public final class Version implements AutoCloseable{
+        private final long number;
+        private volatile CompactGraph graph;
+
+        /*
+         * readers holding the version, plus one while it is the current version
+         */
+        private final AtomicInteger references = new AtomicInteger(1);
+
+        private Version(long number, CompactGraph graph){
+            this.number = number;
+            this.graph = graph;
+        }
+
+        /*
+         * returns the number of the version, every batch adds one
+         */
+        public long number(){
+            return number;
+        }
+
+        /*
+         * returns the snapshot of the version
+         */
+        public CompactGraph graph(){
+            CompactGraph g = graph;
+            if(g == null){
+                throw new IllegalStateException("Version " + number + " was reclaimed");
+            }
+            return g;
+        }
+
+        /*
+         * returns the search engine of the calling thread for this version, its buffers are
+         * reused from one query to the next as long as the thread searches the same version
+         */
+        public RouteEngine engine(){
+            CompactGraph g = graph();
+            RouteEngine engine = engines.get();
+            if(engine == null || engine.graph() != g){
+                engine = new RouteEngine(g);
+                engines.set(engine);
+            }
+            return engine;
+        }
+
+        /*
+         * takes a reference unless the version was already reclaimed
+         */
+        private boolean acquire(){
+            while(true){
+                int count = references.get();
+                if(count == 0){
+                    return false;
+                }
+                if(references.compareAndSet(count, count + 1)){
+                    return true;
+                }
+            }
+        }
+
+        private void release(){
+            if(references.decrementAndGet() == 0){ // nobody can pin it anymore
+                graph = null;
+                reclaimed.incrementAndGet();
+            }
+        }
+
+        /*
+         * unpins the version
+         */
+        @Override
+        public void close(){
+            release();
+        }
+    }
+
+    /*
+     * Pins the current version, it stays usable until it is closed
+     */
+    public Version pin(){
+        while(true){
+            Version version = current.get();
+            if(version.acquire()){
+                return version;
+            }
+            // the version was replaced and reclaimed in between, the next one is current
+        }
+    }
+
+    /*
+     * returns the number of the current version
+     */
+    public long version(){
+        return current.get().number;
+    }
+
+    /*
+     * returns the number of versions reclaimed so far
+     */
+    public long reclaimedCount(){
+        return reclaimed.get();
+    }
+
+    /*
+     * returns the number of versions not reclaimed yet, the current one included
+     */
+    public long liveCount(){
+        return current.get().number - reclaimed.get();
+    }
+
+    /*
+     * returns an empty batch of changes for this store
+     */
+    public Batch batch(){
+        return new Batch();
+    }
+
+    /*
+     * one change of a batch, applied to the master graph, which pushes how to undo it
+     */
+    private interface Change{
+        void apply(Graph<Integer,Integer> g, ArrayDeque<Runnable> undo);
+    }
+
+    /*
+     * This nested class collects changes that are published together as one version. Stations
+     * are given by station number, and the changes are applied in the order they were added.
+     */
+    public class Batch{
+        private final ArrayList<Change> changes = new ArrayList<>();
+
+        private Batch(){
+        }
+
+        /*
+         * adds a station that has no connection yet
+         */
+        public Batch insertStation(int station, String name){
+            changes.add((g, undo) -> {
+                g.insertVertex(station, name);
+                undo.push(() -> g.removeVertex(g.getVertex(station)));
+            });
+            return this;
+        }
+
+        /*
+         * removes a station and all its connections
+         */
+        public Batch removeStation(int station){
+            changes.add((g, undo) -> {
+                Graph<Integer,Integer>.Vertex<Integer> vert = vertex(g, station);
+                ArrayList<int[]> incident = new ArrayList<>();
+                for(Graph<Integer,Integer>.Edge<Integer> e : g.outgoingEdges(vert)){
+                    incident.add(new int[]{station, g.opposite(vert, e).getElement(), e.getElement()});
+                }
+                for(Graph<Integer,Integer>.Edge<Integer> e : g.incomingEdges(vert)){
+                    if(e.getEndpoints()[0] != vert){ // a self loop is already in the outgoing edges
+                        incident.add(new int[]{e.getEndpoints()[0].getElement(), station, e.getElement()});
+                    }
+                }
+                String name = vert.getStation();
+                g.removeVertex(vert);
+                undo.push(() -> {
+                    g.insertVertex(station, name);
+                    for(int[] edge : incident){
+                        g.insertEdge(g.getVertex(edge[0]), g.getVertex(edge[1]), edge[2]);
+                    }
+                });
+            });
+            return this;
+        }
+
+        /*
+         * adds a connection from one station to another, weight -1 for a walking transfer
+         */
+        public Batch insertEdge(int from, int to, int weight){
+            changes.add((g, undo) -> {
+                g.insertEdge(vertex(g, from), vertex(g, to), weight);
+                undo.push(() -> g.removeEdge(g.getEdge(g.getVertex(from), g.getVertex(to))));
+            });
+            return this;
+        }
+
+        /*
+         * removes the connection from one station to another
+         */
+        public Batch removeEdge(int from, int to){
+            changes.add((g, undo) -> {
+                Graph<Integer,Integer>.Edge<Integer> e = edge(g, from, to);
+                int weight = e.getElement();
+                g.removeEdge(e);
+                undo.push(() -> g.insertEdge(g.getVertex(from), g.getVertex(to), weight));
+            });
+            return this;
+        }
+
+        /*
+         * changes the travel time of the connection from one station to another
+         */
+        public Batch setWeight(int from, int to, int weight){
+            return removeEdge(from, to).insertEdge(from, to, weight);
+        }
+
+        /*
+         * returns the number of changes in the batch
+         */
+        public int size(){
+            return changes.size();
+        }
+
+        /*
+         * Applies every change and publishes the result as the next version, whose number is
+         * returned. If a change can't be applied (an unknown station, an edge that already
+         * exists, ...) the changes already applied are undone, nothing is published and the
+         * exception is thrown again. An empty batch doesn't publish anything.
+         */
+        public long commit(){
+            synchronized(writeLock){
+                Version previous = current.get();
+                if(changes.isEmpty()){
+                    return previous.number;
+                }
+                ArrayDeque<Runnable> undo = new ArrayDeque<>();
+                try{
+                    for(Change change : changes){
+                        change.apply(master, undo);
+                    }
+                }
+                catch(RuntimeException except){
+                    while(!undo.isEmpty()){
+                        undo.pop().run();
+                    }
+                    throw except;
+                }
+                changes.clear();
+                Version next = new Version(previous.number + 1, CompactGraph.of(master));
+                current.set(next); // the single swap readers see
+                previous.release(); // the store's reference, readers may still hold it
+                return next.number;
+            }
+        }
+    }
+
+    private static Graph<Integer,Integer>.Vertex<Integer> vertex(Graph<Integer,Integer> g, int station){
+        Graph<Integer,Integer>.Vertex<Integer> vert = g.getVertex(station);
+        if(vert == null){
+            throw new IllegalArgumentException("Unknown station " + station);
+        }
+        return vert;
+    }
+
+    private static Graph<Integer,Integer>.Edge<Integer> edge(Graph<Integer,Integer> g, int from, int to){
+        Graph<Integer,Integer>.Edge<Integer> e = g.getEdge(vertex(g, from), vertex(g, to));
+        if(e == null){
+            throw new IllegalArgumentException("No edge from " + from + " to " + to);
+        }
+        return e;
+    }
+}
@@ -0,0 +1,138 @@
+import java.util.HashMap;
+
+/*
+ * This class keeps the shortest path trees of a few hub vertices/stations of the Paris metro
+ * graph up to date while the graph changes. It listens to the graph: when an edge or a
+ * station is removed, or when an edge is inserted again with a new travel time, only the
+ * affected part of each tree is repaired (see DynamicRouteTree). Changes that add new
+ * stations or connections that weren't in the network before need a new snapshot, so
+ * the trees are rebuilt from scratch in that case.
+ */
+public class HubTrees implements Graph.Listener<Integer, Integer>{
+
+    private final Graph<Integer, Integer> g;
+
+    /*
+     * station numbers of the hubs
+     */
+    private final int[] hubs;
+
+    private CompactGraph compact;
+
+    /*
+     * tree of every hub, by station number
+     */
+    private final HashMap<Integer, DynamicRouteTree> trees = new HashMap<>();
+
+    /*
+     * Builds the trees of the given hub stations and registers to follow the changes to g
+     */
+    public HubTrees(Graph<Integer, Integer> g, int[] hubs){
+        this.g = g;
+        this.hubs = hubs.clone();
+        rebuild();
+        g.addListener(this);
+    }
+
+    /*
+     * returns the tree of the hub with the given station number, or null if it isn't a hub
+     */
+    public synchronized DynamicRouteTree tree(int hub){
+        return trees.get(hub);
+    }
+
+    /*
+     * returns the snapshot the trees' dense ids refer to
+     */
+    public synchronized CompactGraph graph(){
+        return compact;
+    }
+
+    /*
+     * returns the travel time from the hub to the given station, or Integer.MAX_VALUE if it
+     * can't be reached
+     */
+    public synchronized int time(int hub, int station){
+        DynamicRouteTree tree = trees.get(hub);
+        int v = compact.id(station);
+        if(tree == null || v == -1){
+            throw new IllegalArgumentException("Unknown hub or station");
+        }
+        return tree.distance(v);
+    }
+
+    @Override
+    public synchronized void edgeRemoved(Graph<Integer,Integer>.Edge<Integer> e){
+        int edge = find(e);
+        if(edge == -1){
+            return;
+        }
+        for(DynamicRouteTree tree : trees.values()){
+            tree.removeEdge(edge);
+        }
+    }
+
+    /*
+     * an edge inserted again after a removal is a travel time change, any other edge changes
+     * the structure of the network
+     */
+    @Override
+    public synchronized void edgeInserted(Graph<Integer,Integer>.Edge<Integer> e){
+        int edge = find(e);
+        if(edge == -1 || compact.isTransfer(edge) != (e.getElement() == -1)){
+            rebuild();
+            return;
+        }
+        int weight = e.getElement() == -1 ? ParisMetro.TRANSFER_TIME : e.getElement();
+        for(DynamicRouteTree tree : trees.values()){
+            tree.setWeight(edge, weight);
+        }
+    }
+
+    /*
+     * the edges of a removed station were already reported one by one, the station itself
+     * just becomes unreachable
+     */
+    @Override
+    public synchronized void vertexRemoved(Graph<Integer,Integer>.Vertex<Integer> v){
+        int u = compact.id(v.getElement());
+        if(u == -1){
+            return;
+        }
+        for(DynamicRouteTree tree : trees.values()){
+            tree.removeStation(u);
+        }
+    }
+
+    @Override
+    public synchronized void vertexInserted(Graph<Integer,Integer>.Vertex<Integer> v){
+        rebuild();
+    }
+
+    /*
+     * returns the index in the snapshot of the given edge of the graph, or -1 if it isn't there
+     */
+    private int find(Graph<Integer,Integer>.Edge<Integer> e){
+        Graph<Integer,Integer>.Vertex<Integer>[] ends = e.getEndpoints();
+        int u = compact.id(ends[0].getElement());
+        int v = compact.id(ends[1].getElement());
+        if(u == -1 || v == -1){
+            return -1;
+        }
+        return compact.edge(u, v);
+    }
+
+    /*
+     * compiles a new snapshot and computes every tree from scratch
+     */
+    private void rebuild(){
+        compact = CompactGraph.of(g);
+        trees.clear();
+        for(int hub : hubs){
+            int u = compact.id(hub);
+            if(u != -1){
+                trees.put(hub, new DynamicRouteTree(compact, u));
+            }
+        }
+    }
+}
@@ -0,0 +1,167 @@
+import java.util.Arrays;
+
+/*
+ * This class represents an indexed 4-ary min heap of vertices/stations keyed by their
+ * "distance". Since the position of every vertex/station in the heap is stored, the key of a
+ * vertex/station can be decreased in O(log n) instead of removing and re-adding it.
+ * Vertices/stations are dense ids from a CompactGraph.
+ */
+public class IndexedHeap{
+
+    private static final int ARITY = 4;
+
+    /*
+     * vertex/station stored at each position of the heap
+     */
+    private final int[] heap;
+
+    /*
+     * key of each vertex/station, only meaningful while it is in the heap
+     */
+    private final int[] keys;
+
+    /*
+     * position of each vertex/station in the heap, or -1 if it is not in the heap
+     */
+    private final int[] position;
+
+    private int size;
+
+    /*
+     * Constructs an empty heap that can hold the vertices/stations 0 to capacity-1
+     */
+    public IndexedHeap(int capacity){
+        heap = new int[capacity];
+        keys = new int[capacity];
+        position = new int[capacity];
+        Arrays.fill(position, -1);
+    }
+
+    /*
+     * returns the number of vertices/stations in the heap
+     */
+    public int size(){
+        return size;
+    }
+
+    public boolean isEmpty(){
+        return size == 0;
+    }
+
+    /*
+     * returns true if the vertex/station v is currently in the heap
+     */
+    public boolean contains(int v){
+        return position[v] != -1;
+    }
+
+    /*
+     * returns the key of the vertex/station v, which must be in the heap
+     */
+    public int key(int v){
+        return keys[v];
+    }
+
+    /*
+     * returns the smallest key in the heap, which must not be empty
+     */
+    public int minKey(){
+        return keys[heap[0]];
+    }
+
+    /*
+     * Adds the vertex/station v with the given key, v must not be in the heap already
+     */
+    public void insert(int v, int key){
+        if(position[v] != -1){
+            throw new IllegalArgumentException("Vertex is already in the heap");
+        }
+        keys[v] = key;
+        heap[size] = v;
+        position[v] = size;
+        size++;
+        siftUp(size - 1);
+    }
+
+    /*
+     * Lowers the key of the vertex/station v, which must be in the heap
+     */
+    public void decreaseKey(int v, int key){
+        if(key > keys[v]){
+            throw new IllegalArgumentException("Key can only be decreased");
+        }
+        keys[v] = key;
+        siftUp(position[v]);
+    }
+
+    /*
+     * Removes and returns the vertex/station with the smallest key
+     */
+    public int poll(){
+        int min = heap[0];
+        position[min] = -1;
+        size--;
+        if(size > 0){
+            int last = heap[size];
+            heap[0] = last;
+            position[last] = 0;
+            siftDown(0);
+        }
+        return min;
+    }
+
+    /*
+     * Removes every vertex/station from the heap, in time proportional to the number of
+     * vertices/stations left in it
+     */
+    public void clear(){
+        for(int i = 0; i < size; i++){
+            position[heap[i]] = -1;
+        }
+        size = 0;
+    }
+
+    private void siftUp(int i){
+        int v = heap[i];
+        int key = keys[v];
+        while(i > 0){
+            int parent = (i - 1) / ARITY;
+            int p = heap[parent];
+            if(keys[p] <= key){
+                break;
+            }
+            heap[i] = p;
+            position[p] = i;
+            i = parent;
+        }
+        heap[i] = v;
+        position[v] = i;
+    }
+
+    private void siftDown(int i){
+        int v = heap[i];
+        int key = keys[v];
+        while(true){
+            int first = i * ARITY + 1;
+            if(first >= size){
+                break;
+            }
+            // finding the child with the smallest key
+            int best = first;
+            int last = Math.min(first + ARITY, size);
+            for(int c = first + 1; c < last; c++){
+                if(keys[heap[c]] < keys[heap[best]]){
+                    best = c;
+                }
+            }
+            if(keys[heap[best]] >= key){
+                break;
+            }
+            heap[i] = heap[best];
+            position[heap[i]] = i;
+            i = best;
+        }
+        heap[i] = v;
+        position[v] = i;
+    }
+}
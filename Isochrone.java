@@ -0,0 +1,36 @@
+/*
+ * This class represents the result of an isochrone query: the vertices/stations (dense ids
+ * of a CompactGraph) that can be reached from an origin within a time budget, in increasing
+ * order of arrival time.
+ */
+public class Isochrone{
+
+    private final int[] stations;
+    private final int[] times;
+
+    public Isochrone(int[] stations, int[] times){
+        this.stations = stations;
+        this.times = times;
+    }
+
+    /*
+     * returns the number of vertices/stations reached
+     */
+    public int size(){
+        return stations.length;
+    }
+
+    /*
+     * returns the dense id of the i-th vertex/station reached
+     */
+    public int station(int i){
+        return stations[i];
+    }
+
+    /*
+     * returns the arrival time at the i-th vertex/station reached
+     */
+    public int time(int i){
+        return times[i];
+    }
+}
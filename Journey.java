@@ -0,0 +1,21 @@
+/*
+ * This class represents a route along with the number of times the traveller changes lines
+ * on it (walking transfers between two rides). A walk at the very start or end of the
+ * journey isn't a change of lines.
+ */
+public class Journey extends Route{
+
+    private final int transfers;
+
+    public Journey(int[] path, int time, int transfers){
+        super(path, time);
+        this.transfers = transfers;
+    }
+
+    /*
+     * returns the number of changes of lines
+     */
+    public int getTransfers(){
+        return transfers;
+    }
+}
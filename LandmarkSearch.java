@@ -0,0 +1,115 @@
+import java.util.Arrays;
+
+/*
+ * This class runs the A* version of Dijkstra's Algorithm on a CompactGraph, guided by the lower
+ * bounds of Landmarks: a vertex/station is taken out of the heap by its "distance" from the
+ * origin plus a lower bound of its travel time to the destination, so the search heads
+ * towards the destination instead of growing in every direction. The bounds are still valid
+ * when parts of the network are closed, since closures can only make journeys longer.
+ * Like RouteEngine, the buffers are reused between queries and an instance is not thread safe.
+ */
+public class LandmarkSearch{
+
+    private final CompactGraph g;
+    private final Landmarks landmarks;
+
+    private final int[] dist;
+    private final int[] pred;
+
+    /*
+     * lower bound of the travel time to the destination, computed once per vertex/station reached
+     */
+    private final int[] bound;
+
+    private final int[] stamp;
+    private int generation;
+
+    private final IndexedHeap heap;
+
+    private int settled;
+
+    public LandmarkSearch(Landmarks landmarks){
+        this.g = landmarks.graph();
+        this.landmarks = landmarks;
+        int n = g.numVertices();
+        dist = new int[n];
+        pred = new int[n];
+        bound = new int[n];
+        stamp = new int[n];
+        heap = new IndexedHeap(n);
+    }
+
+    /*
+     * Computes the shortest path from source to target
+     */
+    public Route route(int source, int target){
+        return route(source, target, null);
+    }
+
+    /*
+     * Computes the shortest path from source to target that avoids the closed part of the network
+     */
+    public Route route(int source, int target, ClosureMask mask){
+        heap.clear();
+        generation++;
+        if(generation == 0){ // the generation number wrapped around, old stamps could look current
+            Arrays.fill(stamp, 0);
+            generation = 1;
+        }
+        settled = 0;
+        if(mask != null && !mask.isOpen(source)){
+            return new Route(new int[0], Integer.MAX_VALUE);
+        }
+        reach(source, 0, -1, target);
+
+        while(!heap.isEmpty()){
+            int vert = heap.poll();
+            settled++;
+            if(vert == target){
+                break;
+            }
+            for(int e = g.firstEdge(vert); e < g.endEdge(vert); e++){
+                int op = g.target(e);
+                if(mask != null && (!mask.isEdgeOpen(e) || !mask.isOpen(op))){
+                    continue;
+                }
+                int nd = dist[vert] + g.weight(e);
+                if(stamp[op] != generation){ // first time op is reached
+                    reach(op, nd, vert, target);
+                }
+                else if(nd < dist[op] && heap.contains(op)){ // edge relaxation to update the "distance"
+                    dist[op] = nd;
+                    pred[op] = vert;
+                    heap.decreaseKey(op, nd + bound[op]);
+                }
+            }
+        }
+        if(stamp[target] != generation || heap.contains(target)){
+            return new Route(new int[0], Integer.MAX_VALUE);
+        }
+        int length = 0;
+        for(int current = target; current != -1; current = pred[current]){
+            length++;
+        }
+        int[] path = new int[length];
+        for(int current = target; current != -1; current = pred[current]){ // filling the path backwards from the target
+            path[--length] = current;
+        }
+        return new Route(path, dist[target]);
+    }
+
+    /*
+     * returns the number of vertices/stations settled by the last search
+     */
+    public int settledCount(){
+        return settled;
+    }
+
+    private void reach(int v, int d, int link, int target){
+        stamp[v] = generation;
+        dist[v] = d;
+        pred[v] = link;
+        bound[v] = landmarks.lowerBound(v, target);
+        heap.insert(v, d + bound[v]);
+    }
+}
@@ -0,0 +1,148 @@
+import java.util.Arrays;
+
+/*
+ * This class holds the preprocessing of the ALT (A*, landmarks, triangle inequality) search:
+ * a few landmark vertices/stations, and the travel times from every landmark to every
+ * vertex/station and back. By the triangle inequality, for any landmark L the travel time from
+ * v to t is at least d(L, t) - d(L, v) and at least d(v, L) - d(t, L), which gives LandmarkSearch
+ * a lower bound to guide its search towards the destination.
+ * Landmarks are picked one after the other as the vertex/station farthest from the ones
+ * already picked, so they end up on the edges of the network.
+ */
+public class Landmarks{
+
+    private static final int UNREACHABLE = Integer.MAX_VALUE;
+
+    private final CompactGraph g;
+
+    /*
+     * dense ids of the landmarks
+     */
+    private final int[] landmarks;
+
+    /*
+     * from[l * n + v] is the travel time from landmark l to v, to[l * n + v] from v to landmark l
+     */
+    private final int[] from;
+    private final int[] to;
+
+    private Landmarks(CompactGraph g, int[] landmarks, int[] from, int[] to){
+        this.g = g;
+        this.landmarks = landmarks;
+        this.from = from;
+        this.to = to;
+    }
+
+    /*
+     * Picks count landmarks on the snapshot and computes their travel times
+     */
+    public static Landmarks select(CompactGraph g, int count){
+        int n = g.numVertices();
+        count = Math.min(count, n);
+        int[] landmarks = new int[count];
+        int[] from = new int[count * n];
+        int[] to = new int[count * n];
+        IndexedHeap heap = new IndexedHeap(n);
+
+        // the first landmark is the farthest vertex/station from an arbitrary start
+        int[] scratch = new int[n];
+        distances(g, 0, false, heap, scratch, 0);
+        int[] closest = new int[n]; // travel time from the nearest landmark picked so far
+        Arrays.fill(closest, UNREACHABLE);
+        int next = farthest(scratch);
+
+        for(int l = 0; l < count; l++){
+            landmarks[l] = next;
+            distances(g, next, false, heap, from, l * n);
+            distances(g, next, true, heap, to, l * n);
+            for(int v = 0; v < n; v++){
+                closest[v] = Math.min(closest[v], from[l * n + v]);
+            }
+            next = farthest(closest);
+        }
+        return new Landmarks(g, landmarks, from, to);
+    }
+
+    /*
+     * returns the vertex/station with the largest finite value, or 0 if there is none
+     */
+    private static int farthest(int[] values){
+        int best = 0;
+        for(int v = 0; v < values.length; v++){
+            if(values[v] != UNREACHABLE && (values[best] == UNREACHABLE || values[v] > values[best])){
+                best = v;
+            }
+        }
+        return best;
+    }
+
+    /*
+     * Dijkstra's Algorithm from source, over the outgoing edges or over the incoming edges if
+     * reverse is true, writing the travel times to out starting at offset
+     */
+    private static void distances(CompactGraph g, int source, boolean reverse, IndexedHeap heap, int[] out, int offset){
+        int n = g.numVertices();
+        Arrays.fill(out, offset, offset + n, UNREACHABLE);
+        out[offset + source] = 0;
+        heap.insert(source, 0);
+        while(!heap.isEmpty()){
+            int vert = heap.poll();
+            int dv = out[offset + vert];
+            int first = reverse ? g.firstInEdge(vert) : g.firstEdge(vert);
+            int end = reverse ? g.endInEdge(vert) : g.endEdge(vert);
+            for(int i = first; i < end; i++){
+                int e = reverse ? g.inEdge(i) : i;
+                int op = reverse ? g.source(e) : g.target(e);
+                int nd = dv + g.weight(e);
+                if(out[offset + op] == UNREACHABLE){
+                    out[offset + op] = nd;
+                    heap.insert(op, nd);
+                }
+                else if(nd < out[offset + op] && heap.contains(op)){
+                    out[offset + op] = nd;
+                    heap.decreaseKey(op, nd);
+                }
+            }
+        }
+    }
+
+    /*
+     * returns a lower bound of the travel time from v to t (dense ids)
+     */
+    public int lowerBound(int v, int t){
+        int n = g.numVertices();
+        int bound = 0;
+        for(int l = 0, row = 0; l < landmarks.length; l++, row += n){
+            int fromV = from[row + v], fromT = from[row + t];
+            if(fromV != UNREACHABLE && fromT != UNREACHABLE){
+                bound = Math.max(bound, fromT - fromV);
+            }
+            int toV = to[row + v], toT = to[row + t];
+            if(toV != UNREACHABLE && toT != UNREACHABLE){
+                bound = Math.max(bound, toV - toT);
+            }
+        }
+        return bound;
+    }
+
+    /*
+     * returns the snapshot the landmarks were computed on
+     */
+    public CompactGraph graph(){
+        return g;
+    }
+
+    /*
+     * returns the number of landmarks
+     */
+    public int count(){
+        return landmarks.length;
+    }
+
+    /*
+     * returns the dense id of the i-th landmark
+     */
+    public int landmark(int i){
+        return landmarks[i];
+    }
+}
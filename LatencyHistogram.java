@@ -0,0 +1,112 @@
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * This class counts latencies (in nanoseconds) in buckets whose width grows with the value,
+ * like an HDR histogram: values below 64 have a bucket each, and above that every power of two
+ * is split into 32 buckets, so a percentile is off by at most about 3% whatever the scale, and
+ * the histogram has a fixed size (1920 counters) from nanoseconds to centuries.
+ * Recording is a couple of arithmetic operations and an atomic increment, so it can be done
+ * from many threads on the hot path.
+ */
+public class LatencyHistogram{
+
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    private final AtomicLongArray counts = new AtomicLongArray((64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS);
+
+    private final LongAdder total = new LongAdder();
+
+    /*
+     * records one latency, negative values count as 0
+     */
+    public void record(long nanos){
+        long value = Math.max(0, nanos);
+        counts.incrementAndGet(index(value));
+        total.add(value);
+    }
+
+    /*
+     * returns the number of latencies recorded
+     */
+    public long count(){
+        long count = 0;
+        for(int i = 0; i < counts.length(); i++){
+            count += counts.get(i);
+        }
+        return count;
+    }
+
+    /*
+     * returns the average latency, or 0 if nothing was recorded
+     */
+    public long mean(){
+        long count = count();
+        return count == 0 ? 0 : total.sum() / count;
+    }
+
+    /*
+     * returns the latency below which the given percentage of the recorded latencies are
+     * (rounded up to the end of its bucket), or 0 if nothing was recorded
+     */
+    public long percentile(double percent){
+        if(percent < 0 || percent > 100){
+            throw new IllegalArgumentException("A percentile is between 0 and 100");
+        }
+        long[] snapshot = new long[counts.length()];
+        long count = 0;
+        for(int i = 0; i < snapshot.length; i++){
+            snapshot[i] = counts.get(i);
+            count += snapshot[i];
+        }
+        if(count == 0){
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percent / 100 * count));
+        long seen = 0;
+        for(int i = 0; i < snapshot.length; i++){
+            seen += snapshot[i];
+            if(seen >= rank){
+                return highestValue(i);
+            }
+        }
+        return highestValue(snapshot.length - 1);
+    }
+
+    /*
+     * returns the largest latency recorded (rounded up to the end of its bucket)
+     */
+    public long max(){
+        for(int i = counts.length() - 1; i >= 0; i--){
+            if(counts.get(i) != 0){
+                return highestValue(i);
+            }
+        }
+        return 0;
+    }
+
+    /*
+     * bucket of a value: values below 2 * SUB_BUCKETS are exact, above that the bucket is given
+     * by the position of the highest bit and the SUB_BUCKET_BITS bits that follow it
+     */
+    private static int index(long value){
+        if(value < 2 * SUB_BUCKETS){
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) (value >>> shift) - SUB_BUCKETS;
+    }
+
+    /*
+     * returns the largest value that falls in the given bucket
+     */
+    private static long highestValue(int index){
+        if(index < 2 * SUB_BUCKETS){
+            return index;
+        }
+        int shift = index / SUB_BUCKETS - 1;
+        long top = index % SUB_BUCKETS + SUB_BUCKETS;
+        return ((top + 1) << shift) - 1;
+    }
+}
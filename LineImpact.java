@@ -0,0 +1,235 @@
+/*
+ * This class represents how closing one line changes the travel times of a CompactGraph: how
+ * many origin-destination pairs get slower or can't be travelled anymore, the extra time they
+ * add up to, and the pairs that are hit the hardest. Only pairs of vertices/stations that stay
+ * open are counted, the trips from or to the closed line are lost whatever happens.
+ * It is filled by ResilienceAnalysis.
+ */
+public class LineImpact{
+
+    /*
+     * extra time (in seconds) a pair that can't be travelled anymore counts for in the score
+     */
+    public static final int DISCONNECTED_TIME = 3600;
+
+    private final int line;
+    private final int closedStations;
+    private final long openPairs;
+
+    private int searchedSources;
+    private long delayedPairs;
+    private long disconnectedPairs;
+    private long extraTime;
+
+    /*
+     * most affected pairs, kept as a min-heap on the delay while the line is analysed and sorted
+     * from the most to the least affected once it is done
+     */
+    private final int[] origins, destinations, before, after;
+    private int size;
+
+    LineImpact(int line, int closedStations, long openPairs, int maxPairs){
+        this.line = line;
+        this.closedStations = closedStations;
+        this.openPairs = openPairs;
+        origins = new int[maxPairs];
+        destinations = new int[maxPairs];
+        before = new int[maxPairs];
+        after = new int[maxPairs];
+    }
+
+    /*
+     * counts the pair (u, v) whose travel time went from time to newTime (Integer.MAX_VALUE if
+     * v can't be reached anymore)
+     */
+    void add(int u, int v, int time, int newTime){
+        if(newTime == Integer.MAX_VALUE){
+            disconnectedPairs++;
+        }
+        else{
+            delayedPairs++;
+            extraTime += newTime - time;
+        }
+        keep(u, v, time, newTime);
+    }
+
+    /*
+     * adds the pairs counted by part, which analysed other sources of the same line
+     */
+    synchronized void merge(LineImpact part){
+        searchedSources += part.searchedSources;
+        delayedPairs += part.delayedPairs;
+        disconnectedPairs += part.disconnectedPairs;
+        extraTime += part.extraTime;
+        for(int i = 0; i < part.size; i++){
+            keep(part.origins[i], part.destinations[i], part.before[i], part.after[i]);
+        }
+    }
+
+    /*
+     * keeps the pair if it is among the most affected seen so far
+     */
+    private void keep(int u, int v, int time, int newTime){
+        if(size < origins.length){
+            set(size, u, v, time, newTime);
+            up(size++);
+        }
+        else if(size > 0 && delay(time, newTime) > delay(0)){
+            set(0, u, v, time, newTime);
+            down(0, size);
+        }
+    }
+
+    void searched(){
+        searchedSources++;
+    }
+
+    /*
+     * sorts the most affected pairs, the most affected first
+     */
+    void finish(){
+        for(int end = size - 1; end > 0; end--){
+            swap(0, end);
+            down(0, end);
+        }
+    }
+
+    private static long delay(int time, int newTime){
+        return newTime == Integer.MAX_VALUE ? Long.MAX_VALUE : (long) newTime - time;
+    }
+
+    private long delay(int i){
+        return delay(before[i], after[i]);
+    }
+
+    private void set(int i, int u, int v, int time, int newTime){
+        origins[i] = u;
+        destinations[i] = v;
+        before[i] = time;
+        after[i] = newTime;
+    }
+
+    private void up(int i){
+        while(i > 0 && delay((i - 1) >>> 1) > delay(i)){
+            swap(i, (i - 1) >>> 1);
+            i = (i - 1) >>> 1;
+        }
+    }
+
+    private void down(int i, int end){
+        while(true){
+            int smallest = i;
+            for(int child = 2 * i + 1; child <= 2 * i + 2 && child < end; child++){
+                if(delay(child) < delay(smallest)){
+                    smallest = child;
+                }
+            }
+            if(smallest == i){
+                return;
+            }
+            swap(i, smallest);
+            i = smallest;
+        }
+    }
+
+    private void swap(int i, int j){
+        int t = origins[i]; origins[i] = origins[j]; origins[j] = t;
+        t = destinations[i]; destinations[i] = destinations[j]; destinations[j] = t;
+        t = before[i]; before[i] = before[j]; before[j] = t;
+        t = after[i]; after[i] = after[j]; after[j] = t;
+    }
+
+    /*
+     * returns the line closed
+     */
+    public int getLine(){
+        return line;
+    }
+
+    /*
+     * returns the number of vertices/stations closed with the line
+     */
+    public int getClosedStations(){
+        return closedStations;
+    }
+
+    /*
+     * returns the number of ordered pairs of distinct vertices/stations that stay open
+     */
+    public long getOpenPairs(){
+        return openPairs;
+    }
+
+    /*
+     * returns the number of sources some trips of which go through the line and had to be
+     * searched again, the trips of the other sources don't change
+     */
+    public int getSearchedSources(){
+        return searchedSources;
+    }
+
+    /*
+     * returns the number of pairs that can still be travelled but take longer
+     */
+    public long getDelayedPairs(){
+        return delayedPairs;
+    }
+
+    /*
+     * returns the number of pairs that could be travelled and can't anymore
+     */
+    public long getDisconnectedPairs(){
+        return disconnectedPairs;
+    }
+
+    /*
+     * returns the extra time (in seconds) of the delayed pairs added up
+     */
+    public long getExtraTime(){
+        return extraTime;
+    }
+
+    /*
+     * returns the average extra time (in seconds) of a trip between two open vertices/stations,
+     * a pair that can't be travelled anymore counting for DISCONNECTED_TIME
+     */
+    public double getScore(){
+        return openPairs == 0 ? 0 : (extraTime + (double) disconnectedPairs * DISCONNECTED_TIME) / openPairs;
+    }
+
+    /*
+     * returns the number of most affected pairs kept
+     */
+    public int numPairs(){
+        return size;
+    }
+
+    /*
+     * returns the origin (dense id) of the i-th most affected pair
+     */
+    public int origin(int i){
+        return origins[i];
+    }
+
+    /*
+     * returns the destination (dense id) of the i-th most affected pair
+     */
+    public int destination(int i){
+        return destinations[i];
+    }
+
+    /*
+     * returns the travel time of the i-th most affected pair with the line open
+     */
+    public int timeBefore(int i){
+        return before[i];
+    }
+
+    /*
+     * returns the travel time of the i-th most affected pair with the line closed,
+     * Integer.MAX_VALUE if it can't be travelled anymore
+     */
+    public int timeAfter(int i){
+        return after[i];
+    }
+}
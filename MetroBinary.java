@@ -0,0 +1,279 @@
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.BufferedOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.StringTokenizer;
+
+/*
+ * This class converts the text format of the Paris metro network (metro.txt) into a compact
+ * binary format, and loads that binary format back into a graph by mapping the file with NIO.
+ * Edges refer to stations by their position in the station table, so the loader doesn't
+ * need any lookup table and doesn't parse any token.
+ *
+ * File layout (big endian):
+ *   int magic, int version, int number of stations, int number of edges
+ *   int[stations] station numbers
+ *   int[stations + 1] offsets of the names in the name bytes, int length of the name bytes
+ *   byte[] names (UTF-8)
+ *   int[edges] sources, int[edges] destinations, int[edges] weights
+ * Sources and destinations are positions in the station table, weights are the same as
+ * in the text file (-1 for a walking transfer).
+ */
+public class MetroBinary{
+
+    private static final int MAGIC = 0x504D4742; // "PMGB"
+
+    private static final int VERSION = 1;
+
+    /*
+     * returns true if the file starts with the magic number of the binary format
+     */
+    public static boolean isBinary(String fileName) throws IOException{
+        try(FileInputStream in = new FileInputStream(fileName)){
+            byte[] head = new byte[4];
+            return in.read(head) == 4 && ByteBuffer.wrap(head).getInt() == MAGIC;
+        }
+    }
+
+    /*
+     * Reads a network in the text format (counts line, station block, "$" separator and
+     * the edge triples) and writes it in the binary format. Edges that appear more than
+     * once are only written the first time, like readMetro does.
+     */
+    public static void convert(String textFile, String binaryFile) throws IOException{
+        int[] stations;
+        String[] names;
+        int[] sources, destinations, weights;
+        int numberV = 0, numberE = 0;
+
+        try(BufferedReader graphFile = new BufferedReader(new FileReader(textFile, StandardCharsets.UTF_8))){
+            String line = graphFile.readLine();
+            StringTokenizer st = new StringTokenizer(line);
+            int expectedV = Integer.parseInt(st.nextToken());
+            int expectedE = Integer.parseInt(st.nextToken());
+            stations = new int[expectedV];
+            names = new String[expectedV];
+            sources = new int[expectedE];
+            destinations = new int[expectedE];
+            weights = new int[expectedE];
+
+            // position of each station number in the station table
+            HashMap<Integer, Integer> positions = new HashMap<>();
+            line = graphFile.readLine();
+            while(!(line.startsWith("$"))){
+                line = line.trim();
+                int split = line.indexOf(' ');
+                int vertexNum = Integer.parseInt(split == -1 ? line : line.substring(0, split));
+                if(!positions.containsKey(vertexNum)){ // only the first entry of a station is kept
+                    if(numberV == stations.length){
+                        stations = Arrays.copyOf(stations, 2 * numberV + 1);
+                        names = Arrays.copyOf(names, 2 * numberV + 1);
+                    }
+                    positions.put(vertexNum, numberV);
+                    stations[numberV] = vertexNum;
+                    names[numberV] = split == -1 ? "" : line.substring(split + 1).trim().replaceAll("\\s+", " ");
+                    numberV++;
+                }
+                line = graphFile.readLine();
+            }
+
+            HashSet<Long> seen = new HashSet<>();
+            line = graphFile.readLine();
+            while(line != null){
+                st = new StringTokenizer(line);
+                if(st.hasMoreTokens()){
+                    Integer source = positions.get(Integer.parseInt(st.nextToken()));
+                    Integer dest = positions.get(Integer.parseInt(st.nextToken()));
+                    int weight = Integer.parseInt(st.nextToken());
+                    if(source == null || dest == null){
+                        throw new IOException("Edge refers to a station that isn't listed: " + line);
+                    }
+                    if(seen.add(((long) source << 32) | dest)){ // if the edge wasn't written already
+                        if(numberE == sources.length){
+                            sources = Arrays.copyOf(sources, 2 * numberE + 1);
+                            destinations = Arrays.copyOf(destinations, 2 * numberE + 1);
+                            weights = Arrays.copyOf(weights, 2 * numberE + 1);
+                        }
+                        sources[numberE] = source;
+                        destinations[numberE] = dest;
+                        weights[numberE] = weight;
+                        numberE++;
+                    }
+                }
+                line = graphFile.readLine();
+            }
+        }
+
+        write(binaryFile, numberV, numberE, stations, names, sources, destinations, weights);
+    }
+
+    /*
+     * Writes the stations and edges of the graph g in the binary format, so a network built in
+     * memory (like a region of PartitionedNetwork) can be loaded back with load()
+     */
+    public static void write(Graph<Integer,Integer> g, String binaryFile) throws IOException{
+        int numberV = g.numVertices();
+        int numberE = g.numEdges();
+        int[] stations = new int[numberV];
+        String[] names = new String[numberV];
+        int[] positions = new int[g.maxVertexId() + 1]; // position of each vertex id in the station table
+        int i = 0;
+        for(Graph<Integer,Integer>.Vertex<Integer> vert : g.vertices()){
+            positions[vert.getId()] = i;
+            stations[i] = vert.getElement();
+            names[i] = vert.getStation();
+            i++;
+        }
+        int[] sources = new int[numberE];
+        int[] destinations = new int[numberE];
+        int[] weights = new int[numberE];
+        i = 0;
+        for(Graph<Integer,Integer>.Edge<Integer> edge : g.edges()){
+            Graph<Integer,Integer>.Vertex<Integer>[] ends = edge.getEndpoints();
+            sources[i] = positions[ends[0].getId()];
+            destinations[i] = positions[ends[1].getId()];
+            weights[i] = edge.getElement();
+            i++;
+        }
+        write(binaryFile, numberV, numberE, stations, names, sources, destinations, weights);
+    }
+
+    private static void write(String binaryFile, int numberV, int numberE, int[] stations, String[] names, int[] sources, int[] destinations, int[] weights) throws IOException{
+        byte[][] encoded = new byte[numberV][];
+        int nameBytes = 0;
+        for(int i = 0; i < numberV; i++){
+            encoded[i] = names[i].getBytes(StandardCharsets.UTF_8);
+            nameBytes += encoded[i].length;
+        }
+
+        try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(binaryFile)))){
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(numberV);
+            out.writeInt(numberE);
+            for(int i = 0; i < numberV; i++){
+                out.writeInt(stations[i]);
+            }
+            int offset = 0;
+            for(int i = 0; i < numberV; i++){
+                out.writeInt(offset);
+                offset += encoded[i].length;
+            }
+            out.writeInt(offset);
+            out.writeInt(nameBytes);
+            for(int i = 0; i < numberV; i++){
+                out.write(encoded[i]);
+            }
+            for(int i = 0; i < numberE; i++){
+                out.writeInt(sources[i]);
+            }
+            for(int i = 0; i < numberE; i++){
+                out.writeInt(destinations[i]);
+            }
+            for(int i = 0; i < numberE; i++){
+                out.writeInt(weights[i]);
+            }
+        }
+    }
+
+    /*
+     * Maps a file in the binary format and adds its stations and edges to the graph g. Counts,
+     * name offsets and station positions are checked against the file before they are used, so
+     * a corrupt file gives an IOException and nothing is allocated for counts it can't hold.
+     */
+    public static void load(String fileName, Graph<Integer,Integer> g) throws IOException{
+        try(RandomAccessFile file = new RandomAccessFile(fileName, "r"); FileChannel channel = file.getChannel()){
+            long size = channel.size();
+            if(size > Integer.MAX_VALUE){ // a single mapping is limited to 2GB
+                throw new IOException("Binary metro file too large: " + fileName);
+            }
+            ByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if(in.remaining() < 16 || in.getInt() != MAGIC){
+                throw new IOException("Not a binary metro file: " + fileName);
+            }
+            if(in.getInt() != VERSION){
+                throw new IOException("Unsupported binary metro file version: " + fileName);
+            }
+            int numberV = in.getInt();
+            int numberE = in.getInt();
+            // stations, name offsets, name length and edges, the names take at least 0 bytes
+            if(numberV < 0 || numberE < 0 || 16L + 8L * numberV + 8L + 12L * numberE > size){
+                throw new IOException("Corrupt binary metro file: " + fileName);
+            }
+
+            int stationsAt = in.position();
+            int offsetsAt = stationsAt + 4 * numberV;
+            in.position(offsetsAt + 4 * (numberV + 1));
+            int nameLength = in.getInt();
+            if(nameLength < 0){
+                throw new IOException("Corrupt binary metro file: " + fileName);
+            }
+            if((long) in.position() + nameLength + 12L * numberE != size){
+                throw new IOException("Truncated binary metro file: " + fileName);
+            }
+            byte[] nameBytes = new byte[nameLength];
+            in.get(nameBytes);
+            int edgesAt = in.position();
+
+            ArrayList<Graph<Integer,Integer>.Vertex<Integer>> vertices = new ArrayList<>(numberV);
+            for(int i = 0; i < numberV; i++){
+                int from = in.getInt(offsetsAt + 4 * i);
+                int to = in.getInt(offsetsAt + 4 * (i + 1));
+                if(from < 0 || to < from || to > nameLength){
+                    throw new IOException("Corrupt binary metro file: " + fileName);
+                }
+                String name = new String(nameBytes, from, to - from, StandardCharsets.UTF_8);
+                try{
+                    vertices.add(g.insertVertex(in.getInt(stationsAt + 4 * i), name));
+                }
+                catch(IllegalArgumentException except){ // the same station number twice
+                    throw new IOException("Corrupt binary metro file: " + fileName);
+                }
+            }
+
+            int destinationsAt = edgesAt + 4 * numberE;
+            int weightsAt = destinationsAt + 4 * numberE;
+            for(int i = 0; i < numberE; i++){
+                int source = in.getInt(edgesAt + 4 * i);
+                int dest = in.getInt(destinationsAt + 4 * i);
+                if(source < 0 || source >= numberV || dest < 0 || dest >= numberV){
+                    throw new IOException("Corrupt binary metro file: " + fileName);
+                }
+                try{
+                    g.insertEdge(vertices.get(source), vertices.get(dest), in.getInt(weightsAt + 4 * i));
+                }
+                catch(IllegalArgumentException except){ // the same edge twice
+                    throw new IOException("Corrupt binary metro file: " + fileName);
+                }
+            }
+        }
+    }
+
+    /*
+     * Converts a network from the text format to the binary format:
+     * java MetroBinary metro.txt metro.bin
+     */
+    public static void main(String[] args){
+        if(args.length != 2){
+            System.err.print("Usage: java MetroBinary <text file> <binary file>");
+            return;
+        }
+        try{
+            convert(args[0], args[1]);
+        }
+        catch(Exception except){
+            System.err.print(except);
+        }
+    }
+}
@@ -0,0 +1,130 @@
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+/*
+ * This class writes synthetic metro networks in the format of metro.txt (number of stations and
+ * edges, the station block, the $ separator and the "source destination weight" lines), so the
+ * rest of the code can be run on networks much larger than the Paris metro.
+ * The networks are built like metro.txt:
+ * - a line is a chain of vertices/stations connected both ways, with travel times between
+ *   MIN_TIME and MAX_TIME seconds, and most lines have between MIN_LINE and MAX_LINE stations
+ * - an interchange is a station of a new line connected both ways by a walking transfer (weight
+ *   -1) to a station of one of the WINDOW lines built just before it, and both have the same
+ *   name, like the platforms of one station in metro.txt. Every line has at least one
+ *   interchange, so the network is connected, and the window keeps the interchanges local like
+ *   in a real city instead of linking random stations across the whole network.
+ * The output only depends on the number of stations and the seed.
+ */
+public class MetroGenerator{
+
+    private static final int MIN_LINE = 15;
+    private static final int MAX_LINE = 40;
+
+    private static final int MIN_TIME = 45;
+    private static final int MAX_TIME = 165;
+
+    /*
+     * chance (in percent) that a station of a line is an interchange with a previous line
+     */
+    private static final int INTERCHANGE_PERCENT = 12;
+
+    private static final int WINDOW = 64;
+
+    private final int numberV;
+    private final long seed;
+
+    /*
+     * the station whose name each vertex/station uses, itself unless it is an interchange
+     */
+    private final int[] nameOf;
+
+    /*
+     * first vertex/station of each line
+     */
+    private int[] lineStart = new int[16];
+
+    private int numberE;
+    private BufferedWriter writer;
+
+    private MetroGenerator(int numberV, long seed){
+        this.numberV = numberV;
+        this.seed = seed;
+        nameOf = new int[numberV];
+    }
+
+    /*
+     * Writes a network of the given number of stations to fileName
+     */
+    public static void generate(int numberV, long seed, String fileName) throws IOException{
+        if(numberV < 1){
+            throw new IllegalArgumentException("The network needs at least one station");
+        }
+        MetroGenerator generator = new MetroGenerator(numberV, seed);
+        // the number of edges goes before the edges in the file, so the network is built twice:
+        // once to count them and once to write them, with the same random numbers
+        generator.build();
+        try(BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(fileName), StandardCharsets.UTF_8), 1 << 16)){
+            writer.write(numberV + " " + generator.numberE + "\n");
+            for(int v = 0; v < numberV; v++){
+                writer.write(v + " Station " + generator.nameOf[v] + "\n");
+            }
+            writer.write("$\n");
+            generator.writer = writer;
+            generator.numberE = 0;
+            generator.build();
+        }
+    }
+
+    private void build() throws IOException{
+        Random random = new Random(seed);
+        int v = 0;
+        for(int line = 0; v < numberV; line++){
+            if(line == lineStart.length){
+                lineStart = Arrays.copyOf(lineStart, 2 * line);
+            }
+            lineStart[line] = v;
+            int length = Math.min(MIN_LINE + random.nextInt(MAX_LINE - MIN_LINE + 1), numberV - v);
+            int windowStart = line > WINDOW ? lineStart[line - WINDOW] : 0;
+            int forced = random.nextInt(length); // the interchange every line has
+            for(int i = 0; i < length; i++, v++){
+                nameOf[v] = v;
+                if(i > 0){
+                    int time = MIN_TIME + random.nextInt(MAX_TIME - MIN_TIME + 1);
+                    edge(v - 1, v, time);
+                    edge(v, v - 1, time);
+                }
+                if(line > 0 && (i == forced || random.nextInt(100) < INTERCHANGE_PERCENT)){
+                    int other = windowStart + random.nextInt(lineStart[line] - windowStart);
+                    nameOf[v] = nameOf[other];
+                    edge(v, other, -1);
+                    edge(other, v, -1);
+                }
+            }
+        }
+    }
+
+    private void edge(int source, int dest, int weight) throws IOException{
+        numberE++;
+        if(writer != null){
+            writer.write(source + " " + dest + " " + weight + "\n");
+        }
+    }
+
+    public static void main(String[] args){
+        if(args.length != 2 && args.length != 3){
+            System.err.print("Usage: java MetroGenerator <number of stations> <network file> [seed]");
+            return;
+        }
+        try{
+            generate(Integer.parseInt(args[0]), args.length == 3 ? Long.parseLong(args[2]) : 0, args[1]);
+        }
+        catch(Exception except){
+            System.err.print(except);
+        }
+    }
+}
@@ -0,0 +1,422 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.NoSuchElementException;
+import java.util.StringTokenizer;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/*
+ * This class keeps the Paris metro network loaded and answers a stream of queries, either
+ * from stdin (batch mode) or from clients connected to a local socket. The network file is
+ * parsed once at startup instead of once per query.
+ *
+ * Usage: java MetroServer [--file metro.txt] [--matrix metro.ttm] [--ch metro.ch] [--port 7070]
+ *
+ * Every query is one line and gets one line in response:
+ *   line <station>                 -> line <station> <station> ...
+ *   route <from> <to>              -> route <time> <station> <station> ...
+ *   closure <from> <to> <station>  -> route <time> <station> ...   (line of <station> closed)
+ *   reach <from> <seconds>         -> reach <station>=<time> ...
+ *   journeys <from> <to>           -> journeys <time> <transfers> <station> ... ; <time> <transfers> <station> ...
+ *                                     (fewest changes first, fastest last)
+ *   alternatives <from> <to> <k>   -> alternatives <time> <station> ... ; <time> <station> ...
+ *                                     (at most k loopless routes, fastest first)
+ *   find <prefix>                  -> find <name>=<station>,<station> ; <name>=<station> ...
+ *                                     (stations whose name or one of its words starts with <prefix>)
+ *   trip <from name> ; <to name>   -> route <time> <station> ...   (from any platform to any platform)
+ *   compare <from> <to>            -> compare <time> dijkstra=<settled> bidirectional=<settled> alt=<settled> [ch=<settled>]
+ *   cache                          -> cache hits=<n> misses=<n> evictions=<n> size=<n>
+ *   metrics                        -> metrics routes=<n> ... (see SearchMetrics.toString)
+ * A destination that can't be reached gives "route -1", and a query that can't be
+ * answered gives "error <message>".
+ */
+public class MetroServer{
+
+    private final CompactGraph graph;
+
+    /*
+     * precomputed travel times, or null if routes have to be searched
+     */
+    private final TravelTimeMatrix matrix;
+
+    /*
+     * number of landmarks picked for the ALT search
+     */
+    private static final int LANDMARKS = 8;
+
+    private final Landmarks landmarks;
+
+    /*
+     * station names, for the queries that give stations by name
+     */
+    private final StationIndex stations;
+
+    /*
+     * number of stations a find query returns at most
+     */
+    private static final int FIND_LIMIT = 10;
+
+    /*
+     * contraction hierarchy of the network, or null if none was given
+     */
+    private final ContractionHierarchy hierarchy;
+
+    /*
+     * number of routes kept by the route cache
+     */
+    private static final int CACHE_SIZE = 4096;
+
+    /*
+     * routes searched by every session, the graph never changes so they stay valid
+     */
+    private final RouteCache cache = new RouteCache(CACHE_SIZE);
+
+    /*
+     * counters and latencies of the route queries searched or found in the cache
+     */
+    private final SearchMetrics metrics = new SearchMetrics();
+
+    public MetroServer(CompactGraph graph, TravelTimeMatrix matrix, ContractionHierarchy hierarchy){
+        if(matrix != null && !matrix.matches(graph)){
+            throw new IllegalArgumentException("The travel time matrix was computed for another network");
+        }
+        if(hierarchy != null && !hierarchy.matches(graph)){
+            throw new IllegalArgumentException("The contraction hierarchy was computed for another network");
+        }
+        this.graph = graph;
+        this.matrix = matrix;
+        this.hierarchy = hierarchy;
+        this.landmarks = Landmarks.select(graph, LANDMARKS);
+        this.stations = StationIndex.of(graph);
+    }
+
+    /*
+     * Answers the queries read from in until it is exhausted. Responses are buffered and
+     * only flushed once there is no more input waiting, so a batch of queries is written
+     * in one go.
+     */
+    public void serve(Reader in, Writer out) throws IOException{
+        BufferedReader reader = new BufferedReader(in);
+        BufferedWriter writer = new BufferedWriter(out);
+        Session session = new Session();
+        StringBuilder response = new StringBuilder();
+        String line;
+        while((line = reader.readLine()) != null){
+            if(line.isBlank()){
+                continue;
+            }
+            response.setLength(0);
+            session.answer(line, response);
+            writer.append(response).append('\n');
+            if(!reader.ready()){
+                writer.flush();
+            }
+        }
+        writer.flush();
+    }
+
+    /*
+     * Accepts clients on a loopback socket, each one is served on its own thread
+     */
+    public void listen(int port) throws IOException{
+        ExecutorService workers = Executors.newCachedThreadPool();
+        try(ServerSocket server = new ServerSocket(port, 50, InetAddress.getLoopbackAddress())){
+            while(true){
+                Socket client = server.accept();
+                workers.execute(() -> {
+                    try(Socket socket = client){
+                        serve(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8), new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+                    }
+                    catch(IOException except){
+                        System.err.println(except);
+                    }
+                });
+            }
+        }
+        finally{
+            workers.shutdown();
+        }
+    }
+
+    /*
+     * This nested class answers the queries of one client. It owns the search buffers, so
+     * queries of different clients can run at the same time on the shared graph.
+     */
+    private class Session{
+        private final RouteEngine engine = new RouteEngine(graph);
+        private final BidirectionalSearch bidirectional = new BidirectionalSearch(graph);
+        private final LandmarkSearch alt = new LandmarkSearch(landmarks);
+        private final ContractionHierarchy.Query ch = hierarchy == null ? null : hierarchy.newQuery();
+        private final RaptorRouter raptor = new RaptorRouter(graph);
+        private final AlternativeRoutes alternatives = new AlternativeRoutes(graph);
+
+        void answer(String query, StringBuilder out){
+            StringTokenizer st = new StringTokenizer(query);
+            String command = st.nextToken();
+            try{
+                switch(command){
+                    case "line":
+                        line(station(st), out);
+                        break;
+                    case "route":
+                        route(station(st), station(st), out);
+                        break;
+                    case "closure":
+                        closure(station(st), station(st), station(st), out);
+                        break;
+                    case "reach":
+                        reach(station(st), Integer.parseInt(st.nextToken()), out);
+                        break;
+                    case "compare":
+                        compare(station(st), station(st), out);
+                        break;
+                    case "find":
+                        find(rest(query, command), out);
+                        break;
+                    case "trip":
+                        trip(rest(query, command), out);
+                        break;
+                    case "journeys":
+                        journeys(station(st), station(st), out);
+                        break;
+                    case "alternatives":
+                        alternatives(station(st), station(st), Integer.parseInt(st.nextToken()), out);
+                        break;
+                    case "cache":
+                        out.append("cache hits=").append(cache.hits()).append(" misses=").append(cache.misses());
+                        out.append(" evictions=").append(cache.evictions()).append(" size=").append(cache.size());
+                        break;
+                    case "metrics":
+                        out.append("metrics ").append(metrics);
+                        break;
+                    default:
+                        out.append("error unknown query ").append(command);
+                }
+            }
+            catch(NoSuchElementException except){
+                out.setLength(0);
+                out.append("error missing argument for ").append(command);
+            }
+            catch(RuntimeException except){ // bad station numbers
+                out.setLength(0);
+                out.append("error ").append(except.getMessage() == null ? except.toString() : except.getMessage());
+            }
+        }
+
+        private int station(StringTokenizer st){
+            String token = st.nextToken();
+            int id = graph.id(Integer.parseInt(token));
+            if(id == -1){
+                throw new IllegalArgumentException("unknown station " + token);
+            }
+            return id;
+        }
+
+        /*
+         * returns what follows the command in the query, station names can have spaces
+         */
+        private String rest(String query, String command){
+            String rest = query.trim().substring(command.length()).trim();
+            if(rest.isEmpty()){
+                throw new NoSuchElementException();
+            }
+            return rest;
+        }
+
+        private int stationNamed(String name){
+            int s = stations.find(name);
+            if(s == -1){
+                throw new IllegalArgumentException("unknown station " + name.trim());
+            }
+            return s;
+        }
+
+        private void find(String prefix, StringBuilder out){
+            out.append("find");
+            String separator = " ";
+            for(int s : stations.search(prefix, FIND_LIMIT)){
+                out.append(separator).append(stations.name(s));
+                char before = '=';
+                for(int u : stations.platforms(s)){
+                    out.append(before).append(graph.station(u));
+                    before = ',';
+                }
+                separator = " ; ";
+            }
+        }
+
+        private void trip(String names, StringBuilder out){
+            int split = names.indexOf(';');
+            if(split == -1){
+                throw new NoSuchElementException();
+            }
+            int from = stationNamed(names.substring(0, split));
+            int to = stationNamed(names.substring(split + 1));
+            long start = System.nanoTime();
+            Route route = stations.route(engine, from, to, null);
+            int[] path = route.getPath();
+            int origin = route.isFound() ? path[0] : stations.platforms(from)[0];
+            int destination = route.isFound() ? path[path.length - 1] : stations.platforms(to)[0];
+            metrics.recordRoute(engine, graph.station(origin), graph.station(destination), System.nanoTime() - start);
+            appendRoute(route, null, out);
+        }
+
+        private void line(int u, StringBuilder out){
+            out.append("line");
+            for(int v : ParisMetro.DFS(graph, u)){ // in DFS order from u, like the line mode of ParisMetro
+                out.append(' ').append(graph.station(v));
+            }
+        }
+
+        private void route(int u, int v, StringBuilder out){
+            if(matrix != null){
+                int mu = matrix.id(graph.station(u));
+                int mv = matrix.id(graph.station(v));
+                if(mu != -1 && mv != -1){
+                    appendRoute(matrix.route(mu, mv), matrix, out);
+                    return;
+                }
+            }
+            appendRoute(cachedRoute(u, v, null), null, out);
+        }
+
+        private void closure(int u, int v, int closed, StringBuilder out){
+            ClosureMask mask = new ClosureMask(graph).closeLine(graph.line(closed));
+            appendRoute(cachedRoute(u, v, mask), null, out);
+        }
+
+        private Route cachedRoute(int u, int v, ClosureMask mask){
+            long start = System.nanoTime();
+            Route route = cache.get(0, u, v, mask);
+            boolean searched = route == null;
+            if(searched){
+                route = engine.route(u, v, mask);
+                cache.put(0, u, v, mask, route);
+            }
+            metrics.recordRoute(searched ? engine : null, graph.station(u), graph.station(v), System.nanoTime() - start);
+            return route;
+        }
+
+        private void reach(int u, int budget, StringBuilder out){
+            if(budget < 0){
+                throw new IllegalArgumentException("negative time budget " + budget);
+            }
+            Isochrone reachable = engine.isochrone(u, budget);
+            out.append("reach");
+            for(int i = 0; i < reachable.size(); i++){
+                out.append(' ').append(graph.station(reachable.station(i))).append('=').append(reachable.time(i));
+            }
+        }
+
+        private void journeys(int u, int v, StringBuilder out){
+            out.append("journeys");
+            String separator = " ";
+            for(Journey journey : raptor.journeys(u, v)){
+                out.append(separator).append(journey.getTime()).append(' ').append(journey.getTransfers());
+                for(int vec : journey.getPath()){
+                    out.append(' ').append(graph.station(vec));
+                }
+                separator = " ; ";
+            }
+        }
+
+        private void alternatives(int u, int v, int k, StringBuilder out){
+            if(k <= 0){
+                throw new IllegalArgumentException("the number of routes has to be positive");
+            }
+            out.append("alternatives");
+            String separator = " ";
+            for(Route route : alternatives.routes(u, v, k)){
+                out.append(separator).append(route.getTime());
+                for(int vec : route.getPath()){
+                    out.append(' ').append(graph.station(vec));
+                }
+                separator = " ; ";
+            }
+        }
+
+        /*
+         * runs the same query with the three point to point searches and reports how many
+         * vertices/stations each of them settled
+         */
+        private void compare(int u, int v, StringBuilder out){
+            int time = engine.route(u, v).getTime();
+            int both = bidirectional.route(u, v).getTime();
+            int guided = alt.route(u, v).getTime();
+            // the hierarchy was checked against the network when the server started, every station is in it
+            int contracted = ch == null ? time : ch.route(hierarchy.id(graph.station(u)), hierarchy.id(graph.station(v))).getTime();
+            if(both != time || guided != time || contracted != time){
+                throw new IllegalStateException("searches disagree: " + time + " " + both + " " + guided + (ch == null ? "" : " " + contracted));
+            }
+            out.append("compare ").append(time == Integer.MAX_VALUE ? -1 : time);
+            out.append(" dijkstra=").append(engine.settledCount());
+            out.append(" bidirectional=").append(bidirectional.settledCount());
+            out.append(" alt=").append(alt.settledCount());
+            if(ch != null){
+                out.append(" ch=").append(ch.settledCount());
+            }
+        }
+
+        private void appendRoute(Route route, TravelTimeMatrix ids, StringBuilder out){
+            out.append("route ");
+            if(!route.isFound()){
+                out.append(-1);
+                return;
+            }
+            out.append(route.getTime());
+            for(int vec : route.getPath()){
+                out.append(' ').append(ids != null ? ids.station(vec) : graph.station(vec));
+            }
+        }
+    }
+
+    public static void main(String[] args){
+        String fileName = "metro.txt";
+        String matrixName = null;
+        String hierarchyName = null;
+        int port = -1;
+        try{
+            for(int i = 0; i < args.length; i++){
+                switch(args[i]){
+                    case "--file":
+                        fileName = args[++i];
+                        break;
+                    case "--matrix":
+                        matrixName = args[++i];
+                        break;
+                    case "--ch":
+                        hierarchyName = args[++i];
+                        break;
+                    case "--port":
+                        port = Integer.parseInt(args[++i]);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown option " + args[i]);
+                }
+            }
+            new ParisMetro(fileName);
+            CompactGraph graph = CompactGraph.of(ParisMetro.getGraph());
+            TravelTimeMatrix matrix = matrixName == null ? null : TravelTimeMatrix.map(matrixName);
+            ContractionHierarchy hierarchy = hierarchyName == null ? null : ContractionHierarchy.read(hierarchyName);
+            MetroServer server = new MetroServer(graph, matrix, hierarchy);
+            if(port == -1){
+                server.serve(new InputStreamReader(System.in, StandardCharsets.UTF_8), new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+            }
+            else{
+                server.listen(port);
+            }
+        }
+        catch(Exception except){
+            System.err.print(except);
+        }
+    }
+}
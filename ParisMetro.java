@@ -2,12 +2,13 @@ import java.io.BufferedReader;
 import java.io.FileReader;
 import java.util.Hashtable;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.StringTokenizer;
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.PriorityQueue;
-import java.util.Comparator;
-import java.util.Collections;
+import java.util.ArrayDeque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Arrays;
 
 /*
  * Implementation by: Michael Massaad
@@ -22,6 +23,51 @@ public class ParisMetro{
 
     private static Graph<Integer,Integer> graphSystem;
 
+    /*
+     * time (in seconds) it takes to walk between two lines, edges with a weight of -1 are walking transfers
+     */
+    public static final int TRANSFER_TIME = 90;
+
+    /*
+     * number of routes kept by the route cache
+     */
+    private static final int CACHE_SIZE = 1024;
+
+    /*
+     * routes already computed on the current snapshot, popular pairs of stations are asked for over and over
+     */
+    private static final RouteCache routeCache = new RouteCache(CACHE_SIZE);
+
+    /*
+     * counters and latencies of the queries and loads, see SearchMetrics
+     */
+    private static final SearchMetrics metrics = new SearchMetrics();
+
+    /*
+     * search engine of every thread, made again when the thread searches another snapshot
+     */
+    private static final ThreadLocal<RouteEngine> engines = new ThreadLocal<>();
+
+    /*
+     * k shortest routes search of every thread, kept like the engines so its reverse tree can
+     * be used again by the next query to the same destination
+     */
+    private static final ThreadLocal<AlternativeRoutes> alternativeSearches = new ThreadLocal<>();
+
+    /*
+     * last snapshot compiled, the graph and graph version it was compiled from, and the number of
+     * snapshots compiled so far (the version of the network for the route cache)
+     */
+    private static CompactGraph snapshot;
+    private static Graph<Integer,Integer> snapshotGraph;
+    private static long snapshotVersion;
+    private static long snapshotCount;
+
+    /*
+     * names of the stations of the snapshot, built the first time a station is looked up by name
+     */
+    private static StationIndex stations;
+
     /*
      * creates an instance of ParisMetro from a file name
      */
@@ -32,10 +78,76 @@ public class ParisMetro{
     }
 
     /*
-     * Reads the file to populate the graph with the stations/vertices and the edges/connections
+     * returns the graph of the Paris metro network loaded by the last ParisMetro instance
+     */
+    public static Graph<Integer,Integer> getGraph(){
+        return graphSystem;
+    }
+
+    /*
+     * returns the cache of the routes computed by shortestPath
+     */
+    public static RouteCache getRouteCache(){
+        return routeCache;
+    }
+
+    /*
+     * returns the counters and latencies of the queries and loads
+     */
+    public static SearchMetrics getMetrics(){
+        return metrics;
+    }
+
+    /*
+     * returns a compact snapshot of g, compiled again only when g changed since the last call
+     */
+    public static synchronized CompactGraph snapshot(Graph<Integer,Integer> g){
+        if(g != snapshotGraph || g.version() != snapshotVersion){
+            snapshot = CompactGraph.of(g);
+            snapshotGraph = g;
+            snapshotVersion = g.version();
+            snapshotCount++;
+        }
+        return snapshot;
+    }
+
+    /*
+     * returns the search engine of the calling thread for the snapshot g, its buffers are reused
+     * from one query to the next as long as the thread searches the same snapshot
+     */
+    public static RouteEngine engine(CompactGraph g){
+        RouteEngine engine = engines.get();
+        if(engine == null || engine.graph() != g){
+            engine = new RouteEngine(g);
+            engines.set(engine);
+        }
+        return engine;
+    }
+
+    /*
+     * returns the index of the station names of the graph loaded by the last ParisMetro
+     * instance, built again if the graph changed since the last call
+     */
+    public static synchronized StationIndex getStations(){
+        CompactGraph g = snapshot(graphSystem);
+        if(stations == null || stations.graph() != g){
+            stations = StationIndex.of(g);
+        }
+        return stations;
+    }
+
+    /*
+     * Reads the file to populate the graph with the stations/vertices and the edges/connections.
+     * The file can be in the text format of metro.txt or in the binary format of MetroBinary.
      */
     public static void readMetro(String fileName) throws Exception, IOException{
-        BufferedReader graphFile = new BufferedReader(new FileReader(fileName));
+        long start = System.nanoTime();
+        if(MetroBinary.isBinary(fileName)){ // files converted by MetroBinary are mapped instead of parsed
+            MetroBinary.load(fileName, graphSystem);
+            metrics.recordLoad(fileName, graphSystem.numVertices(), graphSystem.numEdges(), System.nanoTime() - start);
+            return;
+        }
+        BufferedReader graphFile = new BufferedReader(new FileReader(fileName, StandardCharsets.UTF_8));
         
         //stores all the vertices/stations read in a hashmap
         Hashtable<Integer, Graph<Integer, Integer>.Vertex<Integer>> vertices = new Hashtable<Integer, Graph<Integer, Integer>.Vertex<Integer>>();
@@ -81,6 +193,7 @@ public class ParisMetro{
             line = graphFile.readLine();
         }
         graphFile.close();
+        metrics.recordLoad(fileName, graphSystem.numVertices(), graphSystem.numEdges(), System.nanoTime() - start);
     }
 
     /*
@@ -89,132 +202,239 @@ public class ParisMetro{
      * to the stationsVisited list.
      */
     public static void DFS( Graph<Integer,Integer> g, Graph<Integer,Integer>.Vertex<Integer> u,ArrayList<Graph<Integer,Integer>.Vertex<Integer>> stationsVisited){
-        if(!stationsVisited.contains(u)){
-        stationsVisited.add(u); //storing u in the discovered vertex/station list if its not present already
+        long start = System.nanoTime();
+        int before = stationsVisited.size();
+        // set of the discovered vertices/stations, so checking if a station was visited doesn't scan the list
+        HashSet<Graph<Integer,Integer>.Vertex<Integer>> visited = new HashSet<>(stationsVisited);
+        if(visited.add(u)){
+            stationsVisited.add(u); //storing u in the discovered vertex/station list if its not present already
         }
-        for(Graph<Integer, Integer>.Edge<Integer> e : g.outgoingEdges(u)){
+        // an explicit stack of the edges left to explore at each vertex/station replaces the recursive calls
+        ArrayDeque<Iterator<Graph<Integer,Integer>.Edge<Integer>>> stack = new ArrayDeque<>();
+        ArrayDeque<Graph<Integer,Integer>.Vertex<Integer>> path = new ArrayDeque<>();
+        stack.push(g.outgoingEdges(u).iterator());
+        path.push(u);
+        while(!stack.isEmpty()){
+            Iterator<Graph<Integer,Integer>.Edge<Integer>> edges = stack.peek();
+            if(!edges.hasNext()){ // all the edges were explored, going back to the previous vertex/station
+                stack.pop();
+                path.pop();
+                continue;
+            }
+            Graph<Integer, Integer>.Edge<Integer> e = edges.next();
             if(e.getElement() != -1){ // if the edge weight is -1, that means the opposing vertex/station isnt part of the same line
-                Graph<Integer,Integer>.Vertex<Integer> v = g.opposite(u,e);
-                if(!stationsVisited.contains(v)){
+                Graph<Integer,Integer>.Vertex<Integer> v = g.opposite(path.peek(), e);
+                if(visited.add(v)){
                     stationsVisited.add(v);
-                    DFS(g, v, stationsVisited); //recursive call to the DFS from the next vertex/station
+                    stack.push(g.outgoingEdges(v).iterator());
+                    path.push(v);
                 }
             }
         }
+        metrics.recordLine(u.getElement(), stationsVisited.size() - before, System.nanoTime() - start);
     }
 
     /*
-     * this nested class represents the vertex/stations with their distance from
-     * a source vertex/station, this is used during the implementation of 
-     * Dijkstra's Algorithm
+     * Performs the same traversal as DFS on a compact snapshot of the graph, starting at the
+     * vertex/station with dense id u. It returns the dense ids of the vertices/stations on the
+     * same line, in the order they were discovered. An explicit stack is used instead of
+     * recursion so long lines can't overflow the call stack. The line of u is already known
+     * by the snapshot, so the traversal never leaves it and its buffers have the size of the
+     * line, not of the network.
      */
-    public static class PQEntry{
-        Graph<Integer, Integer>.Vertex<Integer> vertex;
-        int distance;
-
-        public PQEntry(Graph<Integer, Integer>.Vertex<Integer> v, int d){
-            vertex = v;
-            distance = d;
+    public static int[] DFS(CompactGraph g, int u){
+        long start = System.nanoTime();
+        int[] members = g.lineStations(g.line(u)); // in increasing dense ids
+        int size = members.length;
+        boolean[] visited = new boolean[size]; // by position in members
+        int[] stationsVisited = new int[size];
+        int count = 0;
+        // stack of the vertices/stations being explored and the next edge to look at for each of them
+        int[] stack = new int[size];
+        int[] nextEdge = new int[size];
+        int top = 0;
+
+        visited[Arrays.binarySearch(members, u)] = true;
+        stationsVisited[count++] = u;
+        stack[top] = u;
+        nextEdge[top] = g.firstEdge(u);
+        top++;
+        while(top > 0){
+            int vert = stack[top - 1];
+            int e = nextEdge[top - 1];
+            if(e == g.endEdge(vert)){ // all the edges of vert were explored, going back to the previous vertex/station
+                top--;
+                continue;
+            }
+            nextEdge[top - 1] = e + 1;
+            if(!g.isTransfer(e)){ // walking transfers lead to a different line
+                int op = g.target(e);
+                int at = Arrays.binarySearch(members, op);
+                if(!visited[at]){
+                    visited[at] = true;
+                    stationsVisited[count++] = op;
+                    stack[top] = op;
+                    nextEdge[top] = g.firstEdge(op);
+                    top++;
+                }
+            }
         }
+        int[] line = Arrays.copyOf(stationsVisited, count);
+        metrics.recordLine(g.station(u), count, System.nanoTime() - start);
+        return line;
+    }
+
+    /*
+     * Computes Dijkstra's Algorithm and computes the shortest path from 
+     * one given vertex/station to another. The graph is compiled into a compact
+     * snapshot and the search runs on the indexed heap of RouteEngine.
+     */
+    public static void shortestPath(Graph<Integer,Integer> g, Graph<Integer,Integer>.Vertex<Integer> u, Graph<Integer,Integer>.Vertex<Integer> v){
+        CompactGraph compact = snapshot(g);
+        shortestPathV(compact, route(g, compact.id(u.getElement()), compact.id(v.getElement()), null));
+    }
 
-        public Graph<Integer, Integer>.Vertex<Integer> getVertex(){
-            return vertex;
+    /*
+     * Returns the shortest path between the vertices/stations with dense ids u and v of
+     * snapshot(g), avoiding the parts of the network closed by the mask (null if everything
+     * is open). A query that was already answered since the last change to g comes from the
+     * route cache instead of running Dijkstra's Algorithm again.
+     */
+    public static Route route(Graph<Integer,Integer> g, int u, int v, ClosureMask mask){
+        long start = System.nanoTime();
+        CompactGraph compact;
+        long version;
+        synchronized(ParisMetro.class){
+            compact = snapshot(g);
+            version = snapshotCount;
+        }
+        if(mask != null && mask.graph() != compact){
+            throw new IllegalArgumentException("The closure is for another snapshot");
         }
-        public int getDistance(){
-            return distance;
+        Route route = routeCache.get(version, u, v, mask);
+        RouteEngine engine = null;
+        if(route == null){
+            engine = engine(compact);
+            route = engine.route(u, v, mask);
+            routeCache.put(version, u, v, mask, route);
         }
+        metrics.recordRoute(engine, compact.station(u), compact.station(v), System.nanoTime() - start);
+        return route;
+    }
 
-        public void setDistance(int dist){
-            distance = dist;
+    /*
+     * Returns at most k loopless routes between the vertices/stations with dense ids u and v
+     * of snapshot(g), fastest first, avoiding the parts of the network closed by the mask
+     * (null if everything is open). The first one is the shortest path.
+     */
+    public static Route[] alternatives(Graph<Integer,Integer> g, int u, int v, int k, ClosureMask mask){
+        CompactGraph compact = snapshot(g);
+        if(mask != null && mask.graph() != compact){
+            throw new IllegalArgumentException("The closure is for another snapshot");
+        }
+        AlternativeRoutes search = alternativeSearches.get();
+        if(search == null || search.graph() != compact){
+            search = new AlternativeRoutes(compact);
+            alternativeSearches.set(search);
         }
+        return search.routes(u, v, k, mask);
+    }
 
+    /*
+     * Computes Dijkstra's Algorithm on a compact snapshot of the graph and prints the shortest
+     * path from the vertex/station with dense id u to the one with dense id v.
+     */
+    public static void shortestPath(CompactGraph g, int u, int v){
+        shortestPath(g, u, v, null);
     }
 
     /*
-     * Computes Dijkstra's Algorithm and computes the shortest path from 
-     * one given vertex/station to another. The implementation of the
-     * shortestPathLengths method from lab 8 and Chat GPT were used as guidance
-     * to implement this method.
+     * Computes the shortest path between two stations, each given by number or by name (names
+     * are compared without accents or case). A station given by name can be left from or
+     * reached at whichever of its platforms is the fastest. The path is made of dense ids of
+     * getStations().graph().
      */
-    public static void shortestPath(Graph<Integer,Integer> g, Graph<Integer,Integer>.Vertex<Integer> u, Graph<Integer,Integer>.Vertex<Integer> v){
-        //Stores the current "distance" from vertex/station u to v, we can use d.get(v) to find the distance
-        HashMap<Graph<Integer,Integer>.Vertex<Integer>, Integer> d = new HashMap<>();
-        // maps the discovered vertex/station v to its final "distance" from u
-        HashMap<Graph<Integer,Integer>.Vertex<Integer>, Integer> cloud = new HashMap<>();
-        //Stores the vertices/stations with the "distance" from u as the key, so it is sorted by min("distance")
-        PriorityQueue<PQEntry> pq = new PriorityQueue<>(Comparator.comparingInt(node -> node.getDistance()));
-        // maps from vertex/station to the pq locator
-        HashMap<Graph<Integer, Integer>.Vertex<Integer>, PQEntry> pqTokens = new HashMap<>();
-        //keeps track of the vertices/stations that were travelled in order to construct the "cloud", used to find shortest path from u to v
-        HashMap<Graph<Integer, Integer>.Vertex<Integer>, Graph<Integer, Integer>.Vertex<Integer>> predecessors = new HashMap<>();
-        //Keeps track of the total time to reach the vertex/station, used to find time taken to traverse shortest path
-        HashMap<Graph<Integer, Integer>.Vertex<Integer>, Integer> totalTime = new HashMap<>();
-
-        // for each vertex/station v of the graph, add an entry to the priority queue, with
-        // the source having "distance" 0 and all others having infinite distance
-        for(Graph<Integer,Integer>.Vertex<Integer> station : g.vertices() ){
-            if(station == u){
-                d.put(station, 0);
-                totalTime.put(station, 0);
-            }
-            else{
-                d.put(station, Integer.MAX_VALUE);
-                totalTime.put(station, Integer.MAX_VALUE);
-            }
-            PQEntry newEntry = new PQEntry(station, d.get(station));
-            pq.add(newEntry);
-            pqTokens.put(station, newEntry);
-        }
-        // adding the vertices/stations to the cloud
-        while(!pq.isEmpty()){
-            PQEntry entry = pq.poll();
-            int key = entry.getDistance();
-            Graph<Integer,Integer>.Vertex<Integer> vert = entry.getVertex();
-            cloud.put(vert, key); //storing the final "distance"
-            pqTokens.remove(vert);//removing vert from pq, since it has been stored
-            
-            for(Graph<Integer,Integer>.Edge<Integer> e: g.outgoingEdges(vert)){
-                Graph<Integer,Integer>.Vertex<Integer> op = g.opposite(vert, e);
-                if(cloud.get(op) ==null){
-                int wgt = e.getElement();
-
-                if(wgt == -1){
-                    wgt = 90;
-                }                    
-                if(d.get(vert) + wgt < d.get(op)){ // edge relaxation to update the "distance"
-                    d.put(op, d.get(vert) + wgt);
-                    totalTime.put(op, totalTime.get(vert) + wgt);
-                    predecessors.put(op, vert);
-                    PQEntry opEntry = pqTokens.get(op);
-                    pq.remove(opEntry);
-                    opEntry.setDistance(d.get(op));
-                    pq.add(opEntry);
-                }
-                
-            }
+    public static Route route(String from, String to, ClosureMask mask){
+        long start = System.nanoTime();
+        CompactGraph g = getStations().graph();
+        int[] sources = platforms(from);
+        int[] targets = platforms(to);
+        RouteEngine engine = engine(g);
+        Route route = engine.route(sources, targets, mask);
+        int[] path = route.getPath();
+        int origin = route.isFound() ? path[0] : sources[0];
+        int destination = route.isFound() ? path[path.length - 1] : targets[0];
+        metrics.recordRoute(engine, g.station(origin), g.station(destination), System.nanoTime() - start);
+        return route;
+    }
+
+    /*
+     * Same as shortestPath(g, u, v), avoiding the parts of the network closed by the mask.
+     * The snapshot isn't modified, so other queries can keep using it.
+     */
+    public static void shortestPath(CompactGraph g, int u, int v, ClosureMask mask){
+        long start = System.nanoTime();
+        RouteEngine engine = engine(g);
+        Route route = engine.route(u, v, mask);
+        metrics.recordRoute(engine, g.station(u), g.station(v), System.nanoTime() - start);
+        shortestPathV(g, route);
+    }
+
+    /*
+     * Prints the shortest path and the time it takes to traverse it
+     */
+    public static void shortestPathV(CompactGraph g, Route route){
+        StringBuilder out = new StringBuilder();
+        out.append("Time = ").append(route.getTime()).append(System.lineSeparator());
+        out.append("Path : ");
+        for(int vec : route.getPath()){
+            out.append(g.station(vec)).append(' ');
         }
+        System.out.print(out);
     }
-    // calling method to print the shortest path from u to v and the time it takes to traverse
-    shortestPathV(u, v, predecessors, totalTime.get(v)); 
+
+    /*
+     * Prints every vertex/station that can be reached from the vertex/station with dense id u
+     * within budget seconds, along with its arrival time
+     */
+    public static void isochrone(CompactGraph g, int u, int budget){
+        RouteEngine engine = engine(g);
+        Isochrone reachable = engine.isochrone(u, budget);
+        StringBuilder out = new StringBuilder();
+        out.append("Reachable : ");
+        for(int i = 0; i < reachable.size(); i++){
+            out.append(g.station(reachable.station(i))).append('=').append(reachable.time(i)).append(' ');
+        }
+        System.out.print(out);
     }
 
     /*
-     * Prints the shortest path and the time it takes to traverse from vertex/station u to v
+     * returns the platforms (dense ids of getStations().graph()) of a station given by number,
+     * which is its only platform, or by name
      */
-    public static void shortestPathV(Graph<Integer, Integer>.Vertex<Integer> u, Graph<Integer,Integer>.Vertex<Integer> v, HashMap<Graph<Integer,Integer>.Vertex<Integer>, Graph<Integer, Integer>.Vertex<Integer>> predecessors, int time ){
-        ArrayList<Graph<Integer,Integer>.Vertex<Integer>> path = new ArrayList<>();
-        Graph<Integer,Integer>.Vertex<Integer> current = v;
+    private static int[] platforms(String station){
+        StationIndex index = getStations();
+        if(isNumber(station)){
+            int u = index.graph().id(Integer.parseInt(station));
+            if(u == -1){
+                throw new IllegalArgumentException("Unknown station " + station);
+            }
+            return new int[]{u};
+        }
+        int s = index.find(station);
+        if(s == -1){
+            throw new IllegalArgumentException("Unknown station " + station);
+        }
+        return index.platforms(s);
+    }
 
-        while(current != null){ //traversing backwards until we reach the source node, which itself doesnt have a predecessor
-            path.add(current); // we add the vertex visited in an arraylist which will allow us to iterate and print the vertices/stations
-            current = predecessors.get(current);
+    private static boolean isNumber(String arg){
+        try{
+            Integer.parseInt(arg);
+            return true;
         }
-        
-        Collections.reverse(path);
-        System.out.println("Time = " + time);
-        System.out.print("Path : " );
-        for(Graph<Integer,Integer>.Vertex<Integer> vec : path){
-            System.out.print(vec.getElement() + " ");
+        catch(NumberFormatException except){
+            return false;
         }
     }
 
@@ -225,20 +445,30 @@ public class ParisMetro{
         if(args.length == 1){
             try{
                 ParisMetro graph = new ParisMetro("metro.txt");
-                Graph<Integer, Integer>.Vertex<Integer> vert = graphSystem.getVertex(Integer.parseInt(args[0]));
-                ArrayList<Graph<Integer,Integer>.Vertex<Integer>> stationsVisited = new ArrayList<Graph<Integer,Integer>.Vertex<Integer>>();
-                stationsVisited.add(vert); 
-                DFS(graphSystem, vert, stationsVisited);
-        
-                System.out.print("Line: ");
-                for(Graph<Integer,Integer>.Vertex<Integer> v : stationsVisited){
-                    System.out.print(v.getElement() + " ");
+                CompactGraph compact = snapshot(graphSystem);
+                int vert = compact.id(Integer.parseInt(args[0]));
+                if(vert == -1){
+                    throw new IllegalArgumentException("Unknown station");
                 }
+                // the line is listed in DFS order from the queried station, inside the line the snapshot computed
+                StringBuilder out = new StringBuilder("Line: ");
+                for(int v : DFS(compact, vert)){
+                    out.append(compact.station(v)).append(' ');
+                }
+                System.out.print(out);
             }
             catch(Exception except){
                 System.err.print(except);
             }
         }
+        else if(args.length == 2 && !(isNumber(args[0]) && isNumber(args[1]))){ // at least one station given by name
+            try{
+                ParisMetro graph = new ParisMetro("metro.txt");
+                shortestPathV(getStations().graph(), route(args[0], args[1], null));
+            }catch(Exception except){
+                System.err.print(except);
+            }
+        }
         else if(args.length == 2){
             try{
                 ParisMetro graph = new ParisMetro("metro.txt");
@@ -254,22 +484,17 @@ public class ParisMetro{
         else if(args.length == 3){
             try{
                 ParisMetro graph = new ParisMetro("metro.txt");
-                Graph<Integer, Integer>.Vertex<Integer> vert1 = graphSystem.getVertex(Integer.parseInt(args[0]));
-                Graph<Integer, Integer>.Vertex<Integer> vert2 = graphSystem.getVertex(Integer.parseInt(args[1]));
-                Graph<Integer, Integer>.Vertex<Integer> vert3 = graphSystem.getVertex(Integer.parseInt(args[2]));
-                ArrayList<Graph<Integer,Integer>.Vertex<Integer>> stationsNF = new ArrayList<Graph<Integer,Integer>.Vertex<Integer>>();
-
-                stationsNF.add(vert3);
-
-                DFS(graphSystem, vert3, stationsNF); // finding all the stations that are on the line that is no longer functional
-
-                for(Graph<Integer,Integer>.Vertex<Integer> v : stationsNF){
-                    graphSystem.removeVertex(v);
+                CompactGraph compact = snapshot(graphSystem);
+                int vert1 = compact.id(Integer.parseInt(args[0]));
+                int vert2 = compact.id(Integer.parseInt(args[1]));
+                int vert3 = compact.id(Integer.parseInt(args[2]));
+                if(vert1 == -1 || vert2 == -1 || vert3 == -1){
+                    throw new IllegalArgumentException("Unknown station");
                 }
+                // closing the line that is no longer functional for this query only, the graph isn't modified
+                ClosureMask closed = new ClosureMask(compact).closeLine(compact.line(vert3));
 
-                shortestPath(graphSystem, vert1, vert2);
-
-                
+                shortestPathV(compact, route(graphSystem, vert1, vert2, closed));
 
             }catch(Exception except){
                 System.err.print(except);
@@ -0,0 +1,901 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/*
+ * This class represents a metro network split into regions, for networks too large to keep in a
+ * single Graph. A region is a group of whole lines (the DFS components over the non -1 edges)
+ * that are next to each other, so the only edges between regions are walking transfers. The
+ * parts of the network every query needs are small and always in memory (the overlay):
+ * - the region of every station
+ * - the boundary vertices/stations (the ones with a transfer to another region) and the
+ *   transfers between regions
+ * - the clique of every region: the travel time inside the region between every pair of its
+ *   boundary vertices/stations
+ * A region itself is only loaded when a query starts or ends in it (or when a path through it
+ * is rebuilt), from its own file in the binary format of MetroBinary, and at most maxLoaded
+ * regions are kept, the least recently used one being dropped first.
+ *
+ * A query from u to v runs Dijkstra's algorithm on the region of u, the region of v and the
+ * overlay: every other region is crossed in one step from a boundary vertex/station to another
+ * with the times of its clique, and those steps are expanded into stations at the end.
+ * Closing stations or lines, or replacing the file of a region, only rebuilds the clique of that
+ * region. Queries can run on several threads at the same time, updates are applied one at a time:
+ * an update publishes the new graph, closures and clique of its region together, and a query
+ * reads them once per region, so it never mixes the closures of one update with the clique of
+ * another. A query whose path crosses a region that changed before the path was expanded runs
+ * again.
+ *
+ * Files: a directory with "overlay.bin" and one "region-<index>.bin" per region. Overlay layout
+ * (big endian ints): magic, number of regions, stations, boundary vertices/stations and
+ * transfers between regions, the station numbers and the region of each, the first boundary
+ * vertex/station of each region (plus the end), the station number of each boundary
+ * vertex/station, the transfers (sources, destinations and travel times, as boundary
+ * positions), and the clique of every region.
+ */
+public class PartitionedNetwork{
+
+    private static final int MAGIC = 0x504D504E; // "PMPN"
+
+    private static final String OVERLAY_FILE = "overlay.bin";
+
+    /*
+     * number of regions kept in memory by default when the network is read from a directory
+     */
+    public static final int MAX_LOADED = 16;
+
+    /*
+     * directory the regions are read from, or null if every region stays in memory
+     */
+    private final String directory;
+
+    private final int numRegions;
+
+    /*
+     * region of every station number, or -1 if there is no such station
+     */
+    private final int[] regionOf;
+
+    /*
+     * boundary vertices/stations of region r are boundaryStart[r] to boundaryStart[r + 1] - 1,
+     * in the order of Region.boundary
+     */
+    private final int[] boundaryStart;
+    private final int[] boundaryStations;
+    private final int[] boundaryRegion;
+
+    /*
+     * transfers between regions leaving each boundary vertex/station:
+     * crossTargets[crossOffsets[b]] to crossTargets[crossOffsets[b + 1] - 1]
+     */
+    private final int[] crossOffsets;
+    private final int[] crossTargets;
+    private final int[] crossWeights;
+
+    /*
+     * what the queries see of every region, replaced as a whole by the updates
+     */
+    private final AtomicReferenceArray<RegionState> states;
+
+    /*
+     * closed station numbers of every region, only used by the updates
+     */
+    private final ArrayList<HashSet<Integer>> closed = new ArrayList<>();
+
+    /*
+     * regions in memory, from the least to the most recently used
+     */
+    private final LinkedHashMap<Integer, Region> loaded;
+
+    private PartitionedNetwork(String directory, int maxLoaded, int[] regionOf, int[] boundaryStart, int[] boundaryStations, int[] crossSources, int[] crossTargets, int[] crossWeights, int[][] cliques){
+        this.directory = directory;
+        this.numRegions = boundaryStart.length - 1;
+        this.regionOf = regionOf;
+        this.boundaryStart = boundaryStart;
+        this.boundaryStations = boundaryStations;
+        int numBoundary = boundaryStations.length;
+        boundaryRegion = new int[numBoundary];
+        states = new AtomicReferenceArray<>(numRegions);
+        for(int r = 0; r < numRegions; r++){
+            Arrays.fill(boundaryRegion, boundaryStart[r], boundaryStart[r + 1], r);
+            closed.add(new HashSet<>());
+            states.set(r, new RegionState(null, null, cliques[r], cliques[r], null, 0));
+        }
+
+        // the transfers are laid out by source like the edges of a CompactGraph
+        crossOffsets = new int[numBoundary + 1];
+        for(int source : crossSources){
+            crossOffsets[source + 1]++;
+        }
+        for(int b = 0; b < numBoundary; b++){
+            crossOffsets[b + 1] += crossOffsets[b];
+        }
+        this.crossTargets = new int[crossSources.length];
+        this.crossWeights = new int[crossSources.length];
+        int[] next = Arrays.copyOf(crossOffsets, numBoundary);
+        for(int i = 0; i < crossSources.length; i++){
+            int at = next[crossSources[i]]++;
+            this.crossTargets[at] = crossTargets[i];
+            this.crossWeights[at] = crossWeights[i];
+        }
+
+        loaded = new LinkedHashMap<Integer, Region>(16, 0.75f, true){
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Region> eldest){
+                if(directory == null || size() <= maxLoaded){
+                    return false;
+                }
+                int r = eldest.getKey();
+                states.set(r, states.get(r).withoutRegion());
+                return true;
+            }
+        };
+    }
+
+    /*
+     * This nested class is what the queries see of a region: its graph (null while the region
+     * isn't in memory), its closures (null if nothing is closed, or while the region isn't in
+     * memory), its clique with and without the closures, which of its boundary vertices/stations
+     * are closed (null if none is) and the number of updates it went through. It is never
+     * changed, every update of the region publishes a new one.
+     */
+    private static final class RegionState{
+        final Region region;
+        final ClosureMask mask;
+        final int[] clique;
+        final int[] openClique;
+        final boolean[] closedBoundary;
+        final int version;
+
+        RegionState(Region region, ClosureMask mask, int[] clique, int[] openClique, boolean[] closedBoundary, int version){
+            this.region = region;
+            this.mask = mask;
+            this.clique = clique;
+            this.openClique = openClique;
+            this.closedBoundary = closedBoundary;
+            this.version = version;
+        }
+
+        RegionState withoutRegion(){
+            return new RegionState(null, null, clique, openClique, closedBoundary, version);
+        }
+    }
+
+    /*
+     * Splits the given snapshot into regions of about regionSize vertices/stations (a line
+     * longer than that gets a region of its own). If directory isn't null, the overlay and the
+     * regions are written to it and at most MAX_LOADED regions stay in memory, otherwise every
+     * region stays in memory.
+     */
+    public static PartitionedNetwork partition(CompactGraph g, int regionSize, String directory) throws IOException{
+        if(regionSize < 1){
+            throw new IllegalArgumentException("A region needs at least one station");
+        }
+        int n = g.numVertices();
+        int numLines = g.numLines();
+
+        // lines next to each other are the ones connected by a transfer
+        ArrayList<HashSet<Integer>> neighbours = new ArrayList<>();
+        for(int l = 0; l < numLines; l++){
+            neighbours.add(new HashSet<>());
+        }
+        for(int u = 0; u < n; u++){
+            for(int e = g.firstEdge(u); e < g.endEdge(u); e++){
+                int other = g.line(g.target(e));
+                if(other != g.line(u)){
+                    neighbours.get(g.line(u)).add(other);
+                    neighbours.get(other).add(g.line(u));
+                }
+            }
+        }
+
+        // a region grows from its first line to the lines next to it until it is full
+        int[] regionOfLine = new int[numLines];
+        Arrays.fill(regionOfLine, -1);
+        int numRegions = 0;
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        for(int seed = 0; seed < numLines; seed++){
+            if(regionOfLine[seed] != -1){
+                continue;
+            }
+            int r = numRegions++;
+            int size = 0;
+            HashSet<Integer> seen = new HashSet<>();
+            queue.add(seed);
+            seen.add(seed);
+            while(!queue.isEmpty()){
+                int l = queue.poll();
+                int length = g.lineStations(l).length;
+                if(size > 0 && size + length > regionSize){
+                    continue;
+                }
+                regionOfLine[l] = r;
+                size += length;
+                for(int other : neighbours.get(l)){
+                    if(regionOfLine[other] == -1 && seen.add(other)){
+                        queue.add(other);
+                    }
+                }
+            }
+        }
+
+        // the lines left over between full regions make small regions, each of them is merged
+        // into its smallest neighbouring region as long as the result stays under twice regionSize
+        int[] sizes = new int[numRegions];
+        for(int l = 0; l < numLines; l++){
+            sizes[regionOfLine[l]] += g.lineStations(l).length;
+        }
+        Integer[] bySize = new Integer[numRegions];
+        for(int r = 0; r < numRegions; r++){
+            bySize[r] = r;
+        }
+        Arrays.sort(bySize, (a, b) -> Integer.compare(sizes[a], sizes[b]));
+        int[] mergedInto = new int[numRegions];
+        for(int r = 0; r < numRegions; r++){
+            mergedInto[r] = r;
+        }
+        for(int r : bySize){
+            if(sizes[r] >= regionSize / 2){
+                break;
+            }
+            int best = -1;
+            for(int l = 0; l < numLines; l++){
+                if(root(mergedInto, regionOfLine[l]) != r){
+                    continue;
+                }
+                for(int other : neighbours.get(l)){
+                    int s = root(mergedInto, regionOfLine[other]);
+                    if(s != r && sizes[r] + sizes[s] < 2 * regionSize && (best == -1 || sizes[s] < sizes[best])){
+                        best = s;
+                    }
+                }
+            }
+            if(best != -1){
+                mergedInto[r] = best;
+                sizes[best] += sizes[r];
+            }
+        }
+        int[] renumber = new int[numRegions];
+        Arrays.fill(renumber, -1);
+        int merged = 0;
+        for(int l = 0; l < numLines; l++){
+            int r = root(mergedInto, regionOfLine[l]);
+            if(renumber[r] == -1){
+                renumber[r] = merged++;
+            }
+            regionOfLine[l] = renumber[r];
+        }
+        numRegions = merged;
+
+        // the graph of every region and the transfers between regions
+        ArrayList<Graph<Integer,Integer>> graphs = new ArrayList<>();
+        for(int r = 0; r < numRegions; r++){
+            graphs.add(new Graph<>());
+        }
+        ArrayList<Graph<Integer,Integer>.Vertex<Integer>> vertices = new ArrayList<>();
+        int maxStation = -1;
+        for(int u = 0; u < n; u++){
+            vertices.add(graphs.get(regionOfLine[g.line(u)]).insertVertex(g.station(u), g.name(u)));
+            maxStation = Math.max(maxStation, g.station(u));
+        }
+        int[] position = new int[n]; // position of every boundary vertex/station in its region
+        Arrays.fill(position, -1);
+        int[] counts = new int[numRegions];
+        ArrayList<int[]> cross = new ArrayList<>();
+        for(int u = 0; u < n; u++){
+            int r = regionOfLine[g.line(u)];
+            for(int e = g.firstEdge(u); e < g.endEdge(u); e++){
+                int v = g.target(e);
+                int weight = g.isTransfer(e) ? -1 : g.weight(e);
+                if(regionOfLine[g.line(v)] == r){
+                    graphs.get(r).insertEdge(vertices.get(u), vertices.get(v), weight);
+                    continue;
+                }
+                for(int w : new int[]{u, v}){
+                    if(position[w] == -1){
+                        position[w] = counts[regionOfLine[g.line(w)]]++;
+                    }
+                }
+                cross.add(new int[]{u, v, g.weight(e)});
+            }
+        }
+
+        int[] boundaryStart = new int[numRegions + 1];
+        for(int r = 0; r < numRegions; r++){
+            boundaryStart[r + 1] = boundaryStart[r] + counts[r];
+        }
+        int[] boundaryStations = new int[boundaryStart[numRegions]];
+        int[] regionOf = new int[maxStation + 1];
+        Arrays.fill(regionOf, -1);
+        for(int u = 0; u < n; u++){
+            int r = regionOfLine[g.line(u)];
+            regionOf[g.station(u)] = r;
+            if(position[u] != -1){
+                boundaryStations[boundaryStart[r] + position[u]] = g.station(u);
+            }
+        }
+        int[] crossSources = new int[cross.size()];
+        int[] crossTargets = new int[cross.size()];
+        int[] crossWeights = new int[cross.size()];
+        for(int i = 0; i < cross.size(); i++){
+            int[] edge = cross.get(i);
+            crossSources[i] = boundaryStart[regionOfLine[g.line(edge[0])]] + position[edge[0]];
+            crossTargets[i] = boundaryStart[regionOfLine[g.line(edge[1])]] + position[edge[1]];
+            crossWeights[i] = edge[2];
+        }
+
+        int[][] cliques = new int[numRegions][];
+        PartitionedNetwork network = new PartitionedNetwork(directory, MAX_LOADED, regionOf, boundaryStart, boundaryStations, crossSources, crossTargets, crossWeights, cliques);
+        if(directory != null){
+            new File(directory).mkdirs();
+        }
+        for(int r = 0; r < numRegions; r++){
+            Region region = new Region(r, graphs.get(r), network.regionBoundary(r));
+            cliques[r] = region.clique(null);
+            if(directory != null){
+                MetroBinary.write(graphs.get(r), network.regionFile(r));
+            }
+            graphs.set(r, null); // the compiled region is all that is kept
+            network.states.set(r, new RegionState(region, null, cliques[r], cliques[r], null, 0));
+            network.loaded.put(r, region);
+        }
+        if(directory != null){
+            network.writeOverlay(cliques);
+        }
+        return network;
+    }
+
+    /*
+     * Reads the overlay of a network written by partition(), the regions are only read when
+     * they are needed and at most maxLoaded of them are kept in memory
+     */
+    public static PartitionedNetwork read(String directory, int maxLoaded) throws IOException{
+        if(maxLoaded < 1){
+            throw new IllegalArgumentException("At least one region has to be kept in memory");
+        }
+        String fileName = new File(directory, OVERLAY_FILE).getPath();
+        try(DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(fileName)))){
+            if(in.readInt() != MAGIC){
+                throw new IOException("Not a partitioned network overlay: " + fileName);
+            }
+            int numRegions = in.readInt();
+            int numStations = in.readInt();
+            int numBoundary = in.readInt();
+            int numCross = in.readInt();
+            int[] stations = readInts(in, numStations);
+            int[] stationRegions = readInts(in, numStations);
+            int[] boundaryStart = readInts(in, numRegions + 1);
+            int[] boundaryStations = readInts(in, numBoundary);
+            int[] crossSources = readInts(in, numCross);
+            int[] crossTargets = readInts(in, numCross);
+            int[] crossWeights = readInts(in, numCross);
+            int[][] cliques = new int[numRegions][];
+            for(int r = 0; r < numRegions; r++){
+                int k = boundaryStart[r + 1] - boundaryStart[r];
+                cliques[r] = readInts(in, k * k);
+            }
+            int maxStation = -1;
+            for(int station : stations){
+                maxStation = Math.max(maxStation, station);
+            }
+            int[] regionOf = new int[maxStation + 1];
+            Arrays.fill(regionOf, -1);
+            for(int i = 0; i < numStations; i++){
+                regionOf[stations[i]] = stationRegions[i];
+            }
+            return new PartitionedNetwork(directory, maxLoaded, regionOf, boundaryStart, boundaryStations, crossSources, crossTargets, crossWeights, cliques);
+        }
+    }
+
+    /*
+     * writes the overlay with the given cliques, the ones with nothing closed
+     */
+    private void writeOverlay(int[][] openCliques) throws IOException{
+        int[] crossSources = new int[crossTargets.length];
+        for(int b = 0; b < boundaryStations.length; b++){
+            Arrays.fill(crossSources, crossOffsets[b], crossOffsets[b + 1], b);
+        }
+        int numStations = 0;
+        for(int r : regionOf){
+            numStations += r == -1 ? 0 : 1;
+        }
+        try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(new File(directory, OVERLAY_FILE))))){
+            out.writeInt(MAGIC);
+            out.writeInt(numRegions);
+            out.writeInt(numStations);
+            out.writeInt(boundaryStations.length);
+            out.writeInt(crossSources.length);
+            for(int station = 0; station < regionOf.length; station++){
+                if(regionOf[station] != -1){
+                    out.writeInt(station);
+                }
+            }
+            for(int r : regionOf){
+                if(r != -1){
+                    out.writeInt(r);
+                }
+            }
+            for(int[] array : new int[][]{boundaryStart, boundaryStations, crossSources, crossTargets, crossWeights}){
+                for(int value : array){
+                    out.writeInt(value);
+                }
+            }
+            for(int[] clique : openCliques){
+                for(int value : clique){
+                    out.writeInt(value);
+                }
+            }
+        }
+    }
+
+    /*
+     * returns the region r was merged into, directly or through other merged regions
+     */
+    private static int root(int[] mergedInto, int r){
+        while(mergedInto[r] != r){
+            r = mergedInto[r];
+        }
+        return r;
+    }
+
+    private static int[] readInts(DataInputStream in, int count) throws IOException{
+        int[] values = new int[count];
+        for(int i = 0; i < count; i++){
+            values[i] = in.readInt();
+        }
+        return values;
+    }
+
+    private String regionFile(int r){
+        return new File(directory, "region-" + r + ".bin").getPath();
+    }
+
+    private int[] regionBoundary(int r){
+        return Arrays.copyOfRange(boundaryStations, boundaryStart[r], boundaryStart[r + 1]);
+    }
+
+    /*
+     * returns the number of regions
+     */
+    public int numRegions(){
+        return numRegions;
+    }
+
+    /*
+     * returns the region of a station number, or -1 if there is no such station
+     */
+    public int regionOf(int station){
+        return station >= 0 && station < regionOf.length ? regionOf[station] : -1;
+    }
+
+    /*
+     * returns region r, reading it from its file if it isn't in memory
+     */
+    public Region region(int r) throws IOException{
+        return loadedState(r).region;
+    }
+
+    /*
+     * returns the state of region r, after reading the region from its file if it isn't in memory
+     */
+    private synchronized RegionState loadedState(int r) throws IOException{
+        RegionState state = states.get(r);
+        if(state.region != null){
+            loaded.get(r); // the region is now the most recently used one
+            return state;
+        }
+        // the file is only written by replaceRegion, which publishes its state with the region
+        Region region = Region.load(r, regionFile(r), regionBoundary(r));
+        state = new RegionState(region, region.closing(closed.get(r)), state.clique, state.openClique, state.closedBoundary, state.version);
+        states.set(r, state);
+        loaded.put(r, region);
+        return state;
+    }
+
+    /*
+     * returns the number of regions in memory
+     */
+    public synchronized int numLoaded(){
+        return loaded.size();
+    }
+
+    // -------- updates --------
+
+    /*
+     * closes a station, only its region is rebuilt
+     */
+    public synchronized void closeStation(int station) throws IOException{
+        int r = checkStation(station);
+        closed.get(r).add(station);
+        rebuild(r);
+    }
+
+    /*
+     * closes every station on the line of a station, only its region is rebuilt
+     */
+    public synchronized void closeLine(int station) throws IOException{
+        int r = checkStation(station);
+        CompactGraph g = region(r).graph();
+        for(int u : g.lineStations(g.line(g.id(station)))){
+            closed.get(r).add(g.station(u));
+        }
+        rebuild(r);
+    }
+
+    /*
+     * reopens every station closed in the region of a station, only that region is rebuilt
+     */
+    public synchronized void reopen(int station) throws IOException{
+        int r = checkStation(station);
+        closed.get(r).clear();
+        rebuild(r);
+    }
+
+    /*
+     * Replaces the stations and edges of region r, for instance with new travel times, and
+     * rebuilds it. The region keeps its boundary vertices/stations and the transfers to the other
+     * regions, so they have to be in g. If the network has a directory, the new region is
+     * written over its file and the overlay is written again with the new clique.
+     */
+    public synchronized void replaceRegion(int r, Graph<Integer,Integer> g) throws IOException{
+        if(r < 0 || r >= numRegions){
+            throw new IllegalArgumentException("Unknown region " + r);
+        }
+        for(Graph<Integer,Integer>.Vertex<Integer> vert : g.vertices()){
+            if(regionOf(vert.getElement()) != r){
+                throw new IllegalArgumentException("Station " + vert.getElement() + " isn't in region " + r);
+            }
+        }
+        Region region = new Region(r, g, regionBoundary(r));
+        RegionState state = build(r, region, region.clique(null), states.get(r).version + 1);
+        if(directory != null){
+            MetroBinary.write(g, regionFile(r));
+            int[][] openCliques = new int[numRegions][];
+            for(int i = 0; i < numRegions; i++){
+                openCliques[i] = i == r ? state.openClique : states.get(i).openClique;
+            }
+            writeOverlay(openCliques);
+        }
+        states.set(r, state);
+        loaded.put(r, region);
+    }
+
+    private int checkStation(int station){
+        int r = regionOf(station);
+        if(r == -1){
+            throw new IllegalArgumentException("Unknown station " + station);
+        }
+        return r;
+    }
+
+    /*
+     * applies the closures of region r, recomputes its clique and publishes its new state
+     */
+    private void rebuild(int r) throws IOException{
+        RegionState state = loadedState(r);
+        states.set(r, build(r, state.region, state.openClique, state.version + 1));
+    }
+
+    /*
+     * returns the state of region r with the given graph and the current closures
+     */
+    private RegionState build(int r, Region region, int[] openClique, int version){
+        HashSet<Integer> stations = closed.get(r);
+        ClosureMask mask = region.closing(stations);
+        int[] clique = mask == null ? openClique : region.clique(mask);
+        boolean[] closedBoundary = null;
+        for(int b = boundaryStart[r]; b < boundaryStart[r + 1]; b++){
+            if(stations.contains(boundaryStations[b])){
+                closedBoundary = closedBoundary == null ? new boolean[boundaryStart[r + 1] - boundaryStart[r]] : closedBoundary;
+                closedBoundary[b - boundaryStart[r]] = true;
+            }
+        }
+        return new RegionState(region, mask, clique, openClique, closedBoundary, version);
+    }
+
+    // -------- queries --------
+
+    /*
+     * Computes the shortest path between two station numbers. Unlike the routes of a
+     * CompactGraph, the path of the result is made of station numbers, since the stations
+     * come from several regions.
+     */
+    public Route route(int from, int to) throws IOException{
+        while(true){
+            Route route = new Query(from, to).run();
+            if(route != null){
+                return route;
+            }
+            // a region the path crosses changed while the query ran, the next try sees the change
+        }
+    }
+
+    /*
+     * This nested class runs one query. The vertices/stations it searches are numbered by slot:
+     * the vertices/stations of the origin region, then those of the destination region (if it is
+     * another one), then the boundary vertices/stations of the network in overlay order (the
+     * slots of the boundary vertices/stations of the two regions are not used).
+     */
+    private class Query{
+        private final int originRegion, destinationRegion;
+        private final RegionState originState, destinationState;
+        private final Region origin, destination;
+        private final int destinationStart, overlayStart;
+        private final int source, target;
+
+        private final int[] dist;
+        private final int[] pred;
+        private final IndexedHeap heap;
+
+        /*
+         * state of every region the query looked at, read once so the query sees one version of it
+         */
+        private final RegionState[] seen = new RegionState[numRegions];
+
+        Query(int from, int to) throws IOException{
+            originRegion = checkStation(from);
+            destinationRegion = checkStation(to);
+            originState = loadedState(originRegion);
+            seen[originRegion] = originState;
+            origin = originState.region;
+            destinationState = destinationRegion == originRegion ? null : loadedState(destinationRegion);
+            if(destinationState != null){
+                seen[destinationRegion] = destinationState;
+            }
+            destination = destinationState == null ? null : destinationState.region;
+            destinationStart = origin.graph().numVertices();
+            overlayStart = destinationStart + (destination == null ? 0 : destination.graph().numVertices());
+            int size = overlayStart + boundaryStations.length;
+            source = origin.graph().id(from);
+            int local = (destination == null ? origin : destination).graph().id(to);
+            if(source == -1 || local == -1){ // the station was removed from its region by replaceRegion
+                throw new IllegalArgumentException("Unknown station " + (source == -1 ? from : to));
+            }
+            target = destination == null ? local : destinationStart + local;
+            dist = new int[size];
+            Arrays.fill(dist, Integer.MAX_VALUE);
+            pred = new int[size];
+            heap = new IndexedHeap(size);
+        }
+
+        /*
+         * returns the shortest path, or null if a region it crosses changed during the query
+         */
+        Route run() throws IOException{
+            ClosureMask originMask = originState.mask;
+            ClosureMask destinationMask = destinationState == null ? null : destinationState.mask;
+            if((originMask != null && !originMask.isOpen(source)) || !isOpen(target, originMask, destinationMask)){
+                return new Route(new int[0], Integer.MAX_VALUE);
+            }
+            dist[source] = 0;
+            pred[source] = -1;
+            heap.insert(source, 0);
+            while(!heap.isEmpty()){
+                int x = heap.poll();
+                if(x == target){
+                    break;
+                }
+                if(x < destinationStart){
+                    relaxRegion(x, origin, originRegion, 0, originMask);
+                }
+                else if(x < overlayStart){
+                    relaxRegion(x, destination, destinationRegion, destinationStart, destinationMask);
+                }
+                else{
+                    relaxOverlay(x - overlayStart);
+                }
+            }
+            if(dist[target] == Integer.MAX_VALUE){
+                return new Route(new int[0], Integer.MAX_VALUE);
+            }
+            int[] path = path();
+            return path == null ? null : new Route(path, dist[target]);
+        }
+
+        private boolean isOpen(int x, ClosureMask originMask, ClosureMask destinationMask){
+            if(x < destinationStart){
+                return originMask == null || originMask.isOpen(x);
+            }
+            return destinationMask == null || destinationMask.isOpen(x - destinationStart);
+        }
+
+        /*
+         * returns the state of region r as the query first saw it
+         */
+        private RegionState state(int r){
+            if(seen[r] == null){
+                seen[r] = states.get(r);
+            }
+            return seen[r];
+        }
+
+        private boolean isBoundaryOpen(int b){
+            int r = boundaryRegion[b];
+            boolean[] closedBoundary = state(r).closedBoundary;
+            return closedBoundary == null || !closedBoundary[b - boundaryStart[r]];
+        }
+
+        /*
+         * relaxes the edges of a vertex/station of a loaded region, and its transfers to other
+         * regions if it is on the boundary
+         */
+        private void relaxRegion(int x, Region region, int r, int start, ClosureMask mask){
+            CompactGraph g = region.graph();
+            int u = x - start;
+            for(int e = g.firstEdge(u), end = g.endEdge(u); e < end; e++){
+                int v = g.target(e);
+                if(mask == null || mask.isOpen(v)){
+                    relax(x, start + v, g.weight(e));
+                }
+            }
+            int i = region.boundaryPosition(u);
+            if(i != -1){
+                relaxCross(x, boundaryStart[r] + i);
+            }
+        }
+
+        /*
+         * crosses the region of boundary vertex/station b with its clique, and relaxes its
+         * transfers to other regions
+         */
+        private void relaxOverlay(int b){
+            int x = overlayStart + b;
+            int r = boundaryRegion[b];
+            int[] clique = state(r).clique;
+            int first = boundaryStart[r];
+            int k = boundaryStart[r + 1] - first;
+            int row = (b - first) * k;
+            for(int j = 0; j < k; j++){
+                int time = clique[row + j];
+                if(time != Integer.MAX_VALUE && first + j != b){
+                    relax(x, slot(first + j), time);
+                }
+            }
+            relaxCross(x, b);
+        }
+
+        private void relaxCross(int x, int b){
+            if(!isBoundaryOpen(b)){
+                return;
+            }
+            for(int i = crossOffsets[b], end = crossOffsets[b + 1]; i < end; i++){
+                int c = crossTargets[i];
+                if(isBoundaryOpen(c)){
+                    relax(x, slot(c), crossWeights[i]);
+                }
+            }
+        }
+
+        /*
+         * returns the slot of boundary vertex/station b
+         */
+        private int slot(int b){
+            int r = boundaryRegion[b];
+            if(r == originRegion){
+                return origin.boundary(b - boundaryStart[r]);
+            }
+            if(r == destinationRegion){
+                return destinationStart + destination.boundary(b - boundaryStart[r]);
+            }
+            return overlayStart + b;
+        }
+
+        private void relax(int x, int y, int weight){
+            int nd = dist[x] + weight;
+            if(nd < dist[y]){
+                if(dist[y] == Integer.MAX_VALUE){
+                    heap.insert(y, nd);
+                }
+                else if(heap.contains(y)){
+                    heap.decreaseKey(y, nd);
+                }
+                else{
+                    return; // y was settled already
+                }
+                dist[y] = nd;
+                pred[y] = x;
+            }
+        }
+
+        /*
+         * rebuilds the stations of the path, expanding every step across a region with its clique
+         * into the stations of that region. Returns null if one of those regions wasn't in
+         * memory and changed since its clique was used.
+         */
+        private int[] path() throws IOException{
+            ArrayList<Integer> slots = new ArrayList<>();
+            for(int x = target; x != -1; x = pred[x]){
+                slots.add(x);
+            }
+            ArrayList<Integer> stations = new ArrayList<>();
+            for(int i = slots.size() - 1; i >= 0; i--){
+                int x = slots.get(i);
+                int prev = i + 1 < slots.size() ? slots.get(i + 1) : -1;
+                if(prev >= overlayStart && x >= overlayStart && boundaryRegion[prev - overlayStart] == boundaryRegion[x - overlayStart]){
+                    int r = boundaryRegion[x - overlayStart];
+                    RegionState state = state(r);
+                    if(state.region == null){ // the region has to be read again, in its current version
+                        RegionState current = loadedState(r);
+                        if(current.version != state.version){
+                            return null;
+                        }
+                        state = current;
+                    }
+                    Region region = state.region;
+                    int[] inner = region.route(region.boundary(prev - overlayStart - boundaryStart[r]),
+                            region.boundary(x - overlayStart - boundaryStart[r]), state.mask).getPath();
+                    for(int j = 1; j < inner.length; j++){
+                        stations.add(region.graph().station(inner[j]));
+                    }
+                }
+                else{
+                    stations.add(station(x));
+                }
+            }
+            int[] path = new int[stations.size()];
+            for(int i = 0; i < path.length; i++){
+                path[i] = stations.get(i);
+            }
+            return path;
+        }
+
+        private int station(int x){
+            if(x < destinationStart){
+                return origin.graph().station(x);
+            }
+            if(x < overlayStart){
+                return destination.graph().station(x - destinationStart);
+            }
+            return boundaryStations[x - overlayStart];
+        }
+    }
+
+    /*
+     * java PartitionedNetwork split <network file> <stations per region> <directory>
+     *   splits a network and writes its regions and overlay to the directory
+     * java PartitionedNetwork route <directory> <from> <to> [closed station]
+     *   prints the shortest path between two stations, optionally with the line of a station closed
+     */
+    public static void main(String[] args){
+        try{
+            if(args.length == 4 && args[0].equals("split")){
+                new ParisMetro(args[1]);
+                PartitionedNetwork network = partition(CompactGraph.of(ParisMetro.getGraph()), Integer.parseInt(args[2]), args[3]);
+                System.out.print("Regions = " + network.numRegions() + System.lineSeparator());
+            }
+            else if((args.length == 4 || args.length == 5) && args[0].equals("route")){
+                PartitionedNetwork network = read(args[1], MAX_LOADED);
+                if(args.length == 5){
+                    network.closeLine(Integer.parseInt(args[4]));
+                }
+                Route route = network.route(Integer.parseInt(args[2]), Integer.parseInt(args[3]));
+                StringBuilder out = new StringBuilder();
+                out.append("Time = ").append(route.getTime()).append(System.lineSeparator());
+                out.append("Path : ");
+                for(int station : route.getPath()){
+                    out.append(station).append(' ');
+                }
+                System.out.print(out);
+            }
+            else{
+                System.err.print("Usage: java PartitionedNetwork split <network file> <stations per region> <directory>"
+                        + " | route <directory> <from> <to> [closed station]");
+            }
+        }
+        catch(Exception except){
+            System.err.print(except);
+        }
+    }
+}
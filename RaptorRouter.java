@@ -0,0 +1,467 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/*
+ * This class finds journeys on the metro network round by round, in the style of RAPTOR
+ * (Round-bAsed Public Transit Optimized Router): round k computes the earliest arrival at
+ * every vertex/station using at most k rides on a line, so one query gives the fastest
+ * journey for every number of changes, and the journeys where fewer changes cost more time
+ * form the Pareto set of (travel time, transfers).
+ *
+ * Each round has two phases:
+ * - the lines with a station improved in the previous round are ridden from those stations.
+ *   The stations of a line are laid out contiguously, along with the edges between them, so
+ *   a line is scanned in one block of memory. Lines in metro.txt aren't all simple sequences
+ *   of stations (line 13 has two branches, lines 7bis and 10 end in one-way loops), so the
+ *   ride along a line is a small Dijkstra over the line's own edges, which is a plain sweep
+ *   on a straight line.
+ * - walking transfers (weight -1 in the file) are followed from the stations reached by those
+ *   rides, so their platforms on other lines can be ridden from in the next round.
+ * A station is only updated when it improves on its earliest arrival so far and on the
+ * earliest arrival at the destination, so later rounds only touch the part of the network
+ * where taking one more line still helps.
+ *
+ * Like RouteEngine, the buffers are reused between queries and an instance is not thread safe.
+ */
+public class RaptorRouter{
+
+    /*
+     * how a vertex/station got its arrival time in a round
+     */
+    private static final byte SOURCE = 0, RIDE = 1, WALK = 2;
+
+    private final CompactGraph g;
+
+    /*
+     * the stations of line l are stops[lineOffsets[l]] to stops[lineOffsets[l+1]-1], and
+     * position[u] is the index of u in stops
+     */
+    private final int[] lineOffsets;
+    private final int[] stops;
+    private final int[] position;
+
+    /*
+     * edges that aren't walking transfers, by position: the ones leaving stops[p] are
+     * rideTargets[rideOffsets[p]] to rideTargets[rideOffsets[p+1]-1] (positions on the same
+     * line), with their travel times and their index in the snapshot
+     */
+    private final int[] rideOffsets, rideTargets, rideWeights, rideEdges;
+
+    /*
+     * arrival time, how it was reached (SOURCE, RIDE or WALK), where from (the station the
+     * ride started at or the walk came from) and the generation of the label, for every round.
+     * A vertex/station only has a label in the rounds where it improved.
+     */
+    private int[][] time, from, stamp;
+    private byte[][] kind;
+
+    /*
+     * earliest arrival at every vertex/station over the rounds so far
+     */
+    private final int[] earliest, earliestStamp;
+
+    private int generation;
+
+    /*
+     * vertices/stations improved in the current round, they are ridden from in the next one
+     */
+    private final int[] marked;
+    private final boolean[] isMarked;
+    private int markedCount;
+
+    /*
+     * stations the current round rides from and their arrival time at the end of the previous
+     * round, grouped by line: lineSeeds[l] is the index of the first one on line l (-1 if
+     * there is none) and nextSeed links the others. touched lists the lines that have seeds.
+     */
+    private final int[] seeds, seedTimes, nextSeed;
+    private final int[] lineSeeds, touched;
+
+    /*
+     * "distance", station the ride started from and predecessor of the positions reached by
+     * the current ride
+     */
+    private final int[] rideDist, rideRoot, ridePred, rideStamp;
+    private int rideGeneration;
+
+    private final IndexedHeap heap;
+
+    private ClosureMask mask;
+
+    /*
+     * Constructs the rides and buffers of the router for the given snapshot
+     */
+    public RaptorRouter(CompactGraph g){
+        this.g = g;
+        int n = g.numVertices();
+        int numLines = g.numLines();
+
+        // laying out the stations of every line contiguously
+        lineOffsets = new int[numLines + 1];
+        for(int u = 0; u < n; u++){
+            lineOffsets[g.line(u) + 1]++;
+        }
+        for(int l = 0; l < numLines; l++){
+            lineOffsets[l + 1] += lineOffsets[l];
+        }
+        stops = new int[n];
+        position = new int[n];
+        int[] fill = Arrays.copyOf(lineOffsets, numLines);
+        for(int u = 0; u < n; u++){
+            int p = fill[g.line(u)]++;
+            stops[p] = u;
+            position[u] = p;
+        }
+
+        rideOffsets = new int[n + 1];
+        for(int p = 0; p < n; p++){
+            int u = stops[p];
+            int count = 0;
+            for(int e = g.firstEdge(u); e < g.endEdge(u); e++){
+                if(!g.isTransfer(e)){
+                    count++;
+                }
+            }
+            rideOffsets[p + 1] = rideOffsets[p] + count;
+        }
+        rideTargets = new int[rideOffsets[n]];
+        rideWeights = new int[rideOffsets[n]];
+        rideEdges = new int[rideOffsets[n]];
+        for(int p = 0; p < n; p++){
+            int u = stops[p];
+            int i = rideOffsets[p];
+            for(int e = g.firstEdge(u); e < g.endEdge(u); e++){
+                if(!g.isTransfer(e)){
+                    rideTargets[i] = position[g.target(e)];
+                    rideWeights[i] = g.weight(e);
+                    rideEdges[i] = e;
+                    i++;
+                }
+            }
+        }
+
+        time = new int[0][];
+        from = new int[0][];
+        stamp = new int[0][];
+        kind = new byte[0][];
+        earliest = new int[n];
+        earliestStamp = new int[n];
+        marked = new int[n];
+        isMarked = new boolean[n];
+        seeds = new int[n];
+        seedTimes = new int[n];
+        nextSeed = new int[n];
+        lineSeeds = new int[numLines];
+        Arrays.fill(lineSeeds, -1);
+        touched = new int[numLines];
+        rideDist = new int[n];
+        rideRoot = new int[n];
+        ridePred = new int[n];
+        rideStamp = new int[n];
+        heap = new IndexedHeap(n);
+    }
+
+    /*
+     * returns the snapshot this router searches
+     */
+    public CompactGraph graph(){
+        return g;
+    }
+
+    /*
+     * Computes the Pareto set of journeys from source to target: the fastest journey with no
+     * change of lines (if there is one), then every faster journey with more changes, so the
+     * first journey has the fewest changes and the last one is the fastest. The list is
+     * empty if target can't be reached.
+     */
+    public List<Journey> journeys(int source, int target){
+        return journeys(source, target, null, Integer.MAX_VALUE);
+    }
+
+    /*
+     * Same as journeys(source, target), avoiding the parts of the network closed by the mask
+     * (null if everything is open) and with at most maxTransfers changes of lines
+     */
+    public List<Journey> journeys(int source, int target, ClosureMask mask, int maxTransfers){
+        if(maxTransfers < 0){
+            throw new IllegalArgumentException("The number of transfers can't be negative");
+        }
+        generation++;
+        if(generation == 0){ // the generation number wrapped around, old stamps could look current
+            for(int[] round : stamp){
+                Arrays.fill(round, 0);
+            }
+            Arrays.fill(earliestStamp, 0);
+            generation = 1;
+        }
+        this.mask = mask;
+        for(int i = 0; i < markedCount; i++){ // marks left by a query that stopped at its maximum number of rounds
+            isMarked[marked[i]] = false;
+        }
+        markedCount = 0;
+        List<Journey> journeys = new ArrayList<>();
+        if(mask != null && (!mask.isOpen(source) || !mask.isOpen(target))){
+            return journeys;
+        }
+
+        ensureRound(0);
+        improve(0, source, 0, SOURCE, -1, target);
+        walk(0, target);
+        if(stamp[0][target] == generation){
+            journeys.add(journey(0, target));
+        }
+        // k rides means k - 1 changes of lines
+        long maxRounds = (long) maxTransfers + 1;
+        for(int k = 1; k <= maxRounds && markedCount > 0; k++){
+            ensureRound(k);
+            int lines = collectSeeds();
+            for(int i = 0; i < lines; i++){
+                ride(k, touched[i], target);
+            }
+            walk(k, target);
+            if(stamp[k][target] == generation){
+                journeys.add(journey(k, target));
+            }
+        }
+        return journeys;
+    }
+
+    /*
+     * returns the earliest arrival at v so far, Integer.MAX_VALUE if v wasn't reached
+     */
+    private int earliest(int v){
+        return earliestStamp[v] == generation ? earliest[v] : Integer.MAX_VALUE;
+    }
+
+    private void ensureRound(int k){
+        if(k < time.length){
+            return;
+        }
+        int n = g.numVertices();
+        int rounds = Math.max(k + 1, 2 * time.length);
+        int old = time.length;
+        time = Arrays.copyOf(time, rounds);
+        from = Arrays.copyOf(from, rounds);
+        stamp = Arrays.copyOf(stamp, rounds);
+        kind = Arrays.copyOf(kind, rounds);
+        for(int r = old; r < rounds; r++){
+            time[r] = new int[n];
+            from[r] = new int[n];
+            stamp[r] = new int[n];
+            kind[r] = new byte[n];
+        }
+    }
+
+    /*
+     * gives v the arrival time t in round k and marks it for the next round, if it is better
+     * than what v and the destination already have
+     */
+    private boolean improve(int k, int v, int t, byte how, int origin, int target){
+        if(t >= earliest(v) || t >= earliest(target)){
+            return false;
+        }
+        time[k][v] = t;
+        from[k][v] = origin;
+        kind[k][v] = how;
+        stamp[k][v] = generation;
+        earliest[v] = t;
+        earliestStamp[v] = generation;
+        if(!isMarked[v]){
+            isMarked[v] = true;
+            marked[markedCount++] = v;
+        }
+        return true;
+    }
+
+    /*
+     * turns the vertices/stations marked by the previous round into the seeds of this round,
+     * with their arrival time at the end of that round, and groups them by line. Returns the
+     * number of lines to ride, which are listed in touched.
+     */
+    private int collectSeeds(){
+        int lines = 0;
+        for(int i = 0; i < markedCount; i++){
+            int v = marked[i];
+            isMarked[v] = false;
+            int l = g.line(v);
+            if(lineSeeds[l] == -1){
+                touched[lines++] = l;
+            }
+            seeds[i] = v;
+            seedTimes[i] = earliest[v];
+            nextSeed[i] = lineSeeds[l];
+            lineSeeds[l] = i;
+        }
+        markedCount = 0;
+        return lines;
+    }
+
+    /*
+     * starts a new ride, the positions reached by the previous one are forgotten
+     */
+    private void newRide(){
+        heap.clear();
+        rideGeneration++;
+        if(rideGeneration == 0){ // the generation number wrapped around, old stamps could look current
+            Arrays.fill(rideStamp, 0);
+            rideGeneration = 1;
+        }
+    }
+
+    /*
+     * puts position p in the ride's heap with "distance" d, reached from the position pred of
+     * a ride that started at the station root
+     */
+    private void reach(int p, int d, int pred, int root){
+        if(rideStamp[p] != rideGeneration){
+            rideStamp[p] = rideGeneration;
+            rideDist[p] = d;
+            ridePred[p] = pred;
+            rideRoot[p] = root;
+            heap.insert(p, d);
+        }
+        else if(d < rideDist[p] && heap.contains(p)){
+            rideDist[p] = d;
+            ridePred[p] = pred;
+            rideRoot[p] = root;
+            heap.decreaseKey(p, d);
+        }
+    }
+
+    /*
+     * rides line l from all its seeds at once and gives round k arrival times to the stations
+     * that are reached earlier than before
+     */
+    private void ride(int k, int l, int target){
+        newRide();
+        for(int i = lineSeeds[l]; i != -1; i = nextSeed[i]){
+            reach(position[seeds[i]], seedTimes[i], -1, seeds[i]);
+        }
+        lineSeeds[l] = -1;
+        int bound = earliest(target);
+        while(!heap.isEmpty()){
+            int p = heap.poll();
+            int d = rideDist[p];
+            if(d >= bound){ // the rest of the ride can't beat the destination
+                break;
+            }
+            int v = stops[p];
+            if(rideRoot[p] != v && improve(k, v, d, RIDE, rideRoot[p], target) && v == target){
+                bound = d;
+            }
+            relaxRide(p, d);
+        }
+    }
+
+    /*
+     * relaxes the edges of the line leaving position p, reached at "distance" d
+     */
+    private void relaxRide(int p, int d){
+        for(int i = rideOffsets[p]; i < rideOffsets[p + 1]; i++){
+            int q = rideTargets[i];
+            if(mask != null && (!mask.isEdgeOpen(rideEdges[i]) || !mask.isOpen(stops[q]))){
+                continue;
+            }
+            reach(q, d + rideWeights[i], p, rideRoot[p]);
+        }
+    }
+
+    /*
+     * follows the walking transfers from the vertices/stations marked in round k, in order
+     * of arrival time so a station that is walked to can be walked from in the same round
+     */
+    private void walk(int k, int target){
+        heap.clear();
+        for(int i = 0; i < markedCount; i++){
+            heap.insert(marked[i], earliest[marked[i]]);
+        }
+        while(!heap.isEmpty()){
+            int v = heap.poll();
+            int t = earliest[v];
+            for(int e = g.firstEdge(v); e < g.endEdge(v); e++){
+                int q = g.target(e);
+                if(!g.isTransfer(e) || (mask != null && (!mask.isEdgeOpen(e) || !mask.isOpen(q)))){
+                    continue;
+                }
+                if(improve(k, q, t + g.weight(e), WALK, v, target)){
+                    if(heap.contains(q)){
+                        heap.decreaseKey(q, earliest[q]);
+                    }
+                    else{
+                        heap.insert(q, earliest[q]);
+                    }
+                }
+            }
+        }
+    }
+
+    /*
+     * returns the last round up to k in which v got an arrival time
+     */
+    private int round(int v, int k){
+        for(int r = k; r >= 0; r--){
+            if(stamp[r][v] == generation){
+                return r;
+            }
+        }
+        throw new IllegalStateException("No arrival time for " + v);
+    }
+
+    /*
+     * Builds the journey to target found in round k by following the labels back to the
+     * source. A ride only records the station it started from, so the stations in between are
+     * found again by riding the line from there.
+     */
+    private Journey journey(int k, int target){
+        int[] path = new int[16];
+        int length = 0;
+        int rides = 0;
+        int v = target;
+        int r = round(target, k);
+        int t = time[r][target];
+        while(true){
+            if(kind[r][v] == SOURCE){
+                path = add(path, length++, v);
+                break;
+            }
+            if(kind[r][v] == WALK){
+                path = add(path, length++, v);
+                v = from[r][v];
+                r = round(v, r);
+                continue;
+            }
+            // riding the line again from where the ride started, to find the stations between
+            int board = from[r][v];
+            newRide();
+            reach(position[board], 0, -1, board);
+            int end = position[v];
+            while(!heap.isEmpty()){
+                int p = heap.poll();
+                if(p == end){
+                    break;
+                }
+                relaxRide(p, rideDist[p]);
+            }
+            for(int p = end; p != position[board]; p = ridePred[p]){ // adding the stations of the ride backwards, without board
+                path = add(path, length++, stops[p]);
+            }
+            rides++;
+            v = board;
+            r = round(board, r - 1);
+        }
+        int[] journey = new int[length];
+        for(int i = 0; i < length; i++){ // the path was built from the destination back to the source
+            journey[i] = path[length - 1 - i];
+        }
+        return new Journey(journey, t, Math.max(0, rides - 1));
+    }
+
+    private static int[] add(int[] path, int i, int v){
+        if(i == path.length){
+            path = Arrays.copyOf(path, 2 * i);
+        }
+        path[i] = v;
+        return path;
+    }
+}
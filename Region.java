@@ -0,0 +1,133 @@
+import java.io.IOException;
+import java.util.Arrays;
+
+/*
+ * This class represents one region of a PartitionedNetwork: a group of whole lines, with the
+ * vertices/stations on them and the edges between those vertices/stations, compiled into its
+ * own CompactGraph. Its boundary vertices/stations are the ones with a transfer to another
+ * region, and the clique gives the travel time inside the region between every pair of them.
+ * Dense ids in a region are ids of the region's CompactGraph. A region is never changed, its
+ * closures are given to every search as a ClosureMask.
+ */
+public class Region{
+
+    private final int index;
+    private final CompactGraph graph;
+
+    /*
+     * dense ids of the boundary vertices/stations, in the order the overlay numbers them
+     */
+    private final int[] boundary;
+
+    /*
+     * position of every vertex/station in boundary, or -1 if it isn't on the boundary
+     */
+    private final int[] boundaryPosition;
+
+    /*
+     * Constructs region index from its graph, boundaryStations are the station numbers of its
+     * boundary vertices/stations in the order of the overlay
+     */
+    public Region(int index, Graph<Integer,Integer> g, int[] boundaryStations){
+        this.index = index;
+        this.graph = CompactGraph.of(g);
+        boundary = new int[boundaryStations.length];
+        boundaryPosition = new int[graph.numVertices()];
+        Arrays.fill(boundaryPosition, -1);
+        for(int i = 0; i < boundary.length; i++){
+            int u = graph.id(boundaryStations[i]);
+            if(u == -1){
+                throw new IllegalArgumentException("Boundary station " + boundaryStations[i] + " isn't in region " + index);
+            }
+            boundary[i] = u;
+            boundaryPosition[u] = i;
+        }
+    }
+
+    /*
+     * Loads region index from a file in the binary format of MetroBinary
+     */
+    public static Region load(int index, String fileName, int[] boundaryStations) throws IOException{
+        Graph<Integer,Integer> g = new Graph<>();
+        MetroBinary.load(fileName, g);
+        return new Region(index, g, boundaryStations);
+    }
+
+    /*
+     * returns the index of the region in its network
+     */
+    public int index(){
+        return index;
+    }
+
+    /*
+     * returns the compiled graph of the region
+     */
+    public CompactGraph graph(){
+        return graph;
+    }
+
+    /*
+     * returns the number of boundary vertices/stations
+     */
+    public int numBoundary(){
+        return boundary.length;
+    }
+
+    /*
+     * returns the dense id of the i-th boundary vertex/station
+     */
+    public int boundary(int i){
+        return boundary[i];
+    }
+
+    /*
+     * returns the position of the vertex/station u (dense id) among the boundary
+     * vertices/stations, or -1 if it isn't on the boundary
+     */
+    public int boundaryPosition(int u){
+        return boundaryPosition[u];
+    }
+
+    /*
+     * returns a mask closing the vertices/stations of the region with the given station
+     * numbers, or null if none of them is in the region
+     */
+    public ClosureMask closing(Iterable<Integer> stations){
+        ClosureMask closed = null;
+        for(int station : stations){
+            int u = graph.id(station);
+            if(u != -1){
+                closed = closed == null ? new ClosureMask(graph) : closed;
+                closed.closeStation(u);
+            }
+        }
+        return closed;
+    }
+
+    /*
+     * Computes the clique of the region with the given closures (mask can be null): the entry
+     * at i * k + j (k boundary vertices/stations) is the travel time inside the region from the
+     * i-th boundary vertex/station to the j-th one, Integer.MAX_VALUE if there is no such path
+     */
+    public int[] clique(ClosureMask mask){
+        int k = boundary.length;
+        int[] times = new int[k * k];
+        RouteEngine engine = new RouteEngine(graph);
+        for(int i = 0; i < k; i++){
+            engine.search(boundary[i], mask);
+            for(int j = 0; j < k; j++){
+                times[i * k + j] = engine.distance(boundary[j]);
+            }
+        }
+        return times;
+    }
+
+    /*
+     * returns the shortest path inside the region from u to v (dense ids) with the given
+     * closures (mask can be null)
+     */
+    public Route route(int u, int v, ClosureMask mask){
+        return new RouteEngine(graph).route(u, v, mask);
+    }
+}
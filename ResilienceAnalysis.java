@@ -0,0 +1,338 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/*
+ * This class measures how resilient a network is to line closures: for every line of a
+ * CompactGraph (every DFS component over the non -1 edges), it closes the line and compares the
+ * travel times between all the pairs of open vertices/stations with the times of the full
+ * network, giving a LineImpact per line. The times with a line closed are the ones RouteEngine
+ * finds with a ClosureMask closing the line.
+ *
+ * Closing a line only changes the trips whose shortest path goes through one of its
+ * vertices/stations, so the closures share most of the work instead of running one all-pairs
+ * search each:
+ * - the all-pairs matrix of the full network is computed once (or mapped from a file)
+ * - for a source, the shortest path tree is rebuilt once from the predecessor row, and only
+ *   the lines it goes through are looked at
+ * - for one of those lines, only the vertices/stations below the line in the tree can get
+ *   slower. They are searched again with a Dijkstra limited to them, starting from the times
+ *   of the matrix of their neighbours that don't change, and every other time is kept.
+ * The sources are split between the threads of a fork-join pool, each thread keeping its own
+ * buffers, and the counts of every part are merged at the end.
+ */
+public class ResilienceAnalysis{
+
+    /*
+     * number of sources handled by one fork-join task before it stops splitting
+     */
+    private static final int SOURCES_PER_TASK = 16;
+
+    private final CompactGraph g;
+    private final TravelTimeMatrix baseline;
+    private final ForkJoinPool pool;
+
+    /*
+     * buffers of every thread that analysed a source of this analysis
+     */
+    private final ThreadLocal<Repair> repairs;
+
+    /*
+     * Constructs the analysis of the given snapshot, computing its matrix on the common
+     * fork-join pool
+     */
+    public ResilienceAnalysis(CompactGraph g){
+        this(g, TravelTimeMatrix.compute(g), ForkJoinPool.commonPool());
+    }
+
+    /*
+     * Constructs the analysis of the given snapshot from its travel time matrix, the sources
+     * are analysed on pool
+     */
+    public ResilienceAnalysis(CompactGraph g, TravelTimeMatrix baseline, ForkJoinPool pool){
+        if(!baseline.matches(g)){
+            throw new IllegalArgumentException("The matrix is for another network");
+        }
+        for(int u = 0; u < g.numVertices(); u++){ // the rows are read with the dense ids of g
+            if(baseline.station(u) != g.station(u)){
+                throw new IllegalArgumentException("The matrix is for another network");
+            }
+        }
+        this.g = g;
+        this.baseline = baseline;
+        this.pool = pool;
+        repairs = ThreadLocal.withInitial(Repair::new);
+    }
+
+    /*
+     * returns the snapshot analysed
+     */
+    public CompactGraph graph(){
+        return g;
+    }
+
+    /*
+     * Closes every line in turn, the result at index l is the impact of closing line l. Each
+     * impact keeps the maxPairs most affected pairs.
+     */
+    public LineImpact[] analyze(int maxPairs){
+        if(maxPairs < 0){
+            throw new IllegalArgumentException("The number of pairs can't be negative");
+        }
+        int n = g.numVertices();
+        LineImpact[] impacts = new LineImpact[g.numLines()];
+        for(int l = 0; l < impacts.length; l++){
+            int closed = g.lineStations(l).length;
+            impacts[l] = new LineImpact(l, closed, (long) (n - closed) * (n - closed - 1), maxPairs);
+        }
+        pool.invoke(new SourceTask(0, n, impacts, maxPairs));
+        for(LineImpact impact : impacts){
+            impact.finish();
+        }
+        return impacts;
+    }
+
+    /*
+     * Fork-join task that analyses the sources from (inclusive) to to (exclusive) for every
+     * line, and adds what it counted to impacts
+     */
+    private class SourceTask extends RecursiveAction{
+        private static final long serialVersionUID = 1L;
+
+        private final int from, to;
+        private final LineImpact[] impacts;
+        private final int maxPairs;
+
+        SourceTask(int from, int to, LineImpact[] impacts, int maxPairs){
+            this.from = from;
+            this.to = to;
+            this.impacts = impacts;
+            this.maxPairs = maxPairs;
+        }
+
+        @Override
+        protected void compute(){
+            if(to - from > SOURCES_PER_TASK){
+                int mid = (from + to) >>> 1;
+                invokeAll(new SourceTask(from, mid, impacts, maxPairs), new SourceTask(mid, to, impacts, maxPairs));
+                return;
+            }
+            LineImpact[] parts = new LineImpact[impacts.length];
+            Repair repair = repairs.get();
+            for(int u = from; u < to; u++){
+                repair.analyze(u, parts, maxPairs);
+            }
+            for(int l = 0; l < parts.length; l++){
+                if(parts[l] != null){
+                    impacts[l].merge(parts[l]);
+                }
+            }
+        }
+    }
+
+    /*
+     * This nested class holds the buffers one thread needs to analyse a source: its shortest
+     * path tree, the vertices/stations below a closed line and the limited Dijkstra search.
+     */
+    private class Repair{
+
+        /*
+         * children of every vertex/station in the tree of the current source:
+         * children[childStart[v]] to children[childStart[v + 1] - 1]
+         */
+        private final int[] childStart = new int[g.numVertices() + 1];
+        private final int[] children = new int[g.numVertices()];
+
+        /*
+         * lines the tree goes through, lineStamp[l] == source + 1 once l is in treeLines
+         */
+        private final int[] lineStamp = new int[g.numLines()];
+        private final int[] treeLines = new int[g.numLines()];
+
+        /*
+         * vertices/stations below the closed line, mark[v] == generation once v was reached
+         */
+        private final int[] mark = new int[g.numVertices()];
+        private int generation;
+        private final int[] below = new int[g.numVertices()];
+        private final int[] stack = new int[g.numVertices()];
+
+        private final int[] dist = new int[g.numVertices()];
+        private final IndexedHeap heap = new IndexedHeap(g.numVertices());
+
+        void analyze(int u, LineImpact[] parts, int maxPairs){
+            int n = g.numVertices();
+            int numLines = 0;
+            Arrays.fill(childStart, 0);
+            for(int v = 0; v < n; v++){
+                int p = baseline.predecessor(u, v);
+                if(p != -1){
+                    childStart[p + 1]++;
+                    int l = g.line(p);
+                    if(lineStamp[l] != u + 1){
+                        lineStamp[l] = u + 1;
+                        treeLines[numLines++] = l;
+                    }
+                }
+            }
+            for(int v = 0; v < n; v++){
+                childStart[v + 1] += childStart[v];
+            }
+            for(int v = 0; v < n; v++){ // childStart[p] is moved to the end of p's children while filling
+                int p = baseline.predecessor(u, v);
+                if(p != -1){
+                    children[childStart[p]++] = v;
+                }
+            }
+            for(int v = n; v > 0; v--){
+                childStart[v] = childStart[v - 1];
+            }
+            childStart[0] = 0;
+
+            for(int i = 0; i < numLines; i++){
+                int l = treeLines[i];
+                if(l == g.line(u)){ // every trip from a closed source is lost
+                    continue;
+                }
+                int count = collectBelow(l);
+                if(count == 0){
+                    continue;
+                }
+                if(parts[l] == null){
+                    parts[l] = new LineImpact(l, 0, 0, maxPairs);
+                }
+                parts[l].searched();
+                search(u, l, count);
+                for(int j = 0; j < count; j++){
+                    int v = below[j];
+                    int time = baseline.time(u, v);
+                    if(dist[v] != time){
+                        parts[l].add(u, v, time, dist[v]);
+                    }
+                }
+            }
+        }
+
+        /*
+         * finds the open vertices/stations whose path in the tree goes through line l, returns
+         * how many there are
+         */
+        private int collectBelow(int l){
+            generation++;
+            if(generation == 0){ // the generation number wrapped around, old marks could look current
+                Arrays.fill(mark, 0);
+                generation = 1;
+            }
+            int count = 0;
+            for(int w : g.lineStations(l)){
+                if(mark[w] == generation){
+                    continue;
+                }
+                mark[w] = generation;
+                int top = 0;
+                stack[top++] = w;
+                while(top > 0){
+                    int v = stack[--top];
+                    for(int c = childStart[v]; c < childStart[v + 1]; c++){
+                        int child = children[c];
+                        if(mark[child] != generation){
+                            mark[child] = generation;
+                            stack[top++] = child;
+                            if(g.line(child) != l){
+                                below[count++] = child;
+                            }
+                        }
+                    }
+                }
+            }
+            return count;
+        }
+
+        /*
+         * Dijkstra's algorithm from u with line l closed, limited to the count vertices/stations
+         * in below: the others keep their time of the matrix, so the search starts with every
+         * edge coming from one of them
+         */
+        private void search(int u, int l, int count){
+            for(int j = 0; j < count; j++){
+                int v = below[j];
+                int best = Integer.MAX_VALUE;
+                for(int i = g.firstInEdge(v), end = g.endInEdge(v); i < end; i++){
+                    int e = g.inEdge(i);
+                    int w = g.source(e);
+                    if(mark[w] == generation || g.line(w) == l){
+                        continue;
+                    }
+                    int time = baseline.time(u, w);
+                    if(time != Integer.MAX_VALUE){
+                        best = Math.min(best, time + g.weight(e));
+                    }
+                }
+                dist[v] = best;
+                if(best != Integer.MAX_VALUE){
+                    heap.insert(v, best);
+                }
+            }
+            while(!heap.isEmpty()){
+                int v = heap.poll();
+                for(int e = g.firstEdge(v), end = g.endEdge(v); e < end; e++){
+                    int op = g.target(e);
+                    if(mark[op] != generation || g.line(op) == l){
+                        continue;
+                    }
+                    int nd = dist[v] + g.weight(e);
+                    if(nd < dist[op]){
+                        if(dist[op] == Integer.MAX_VALUE){
+                            heap.insert(op, nd);
+                        }
+                        else{
+                            heap.decreaseKey(op, nd);
+                        }
+                        dist[op] = nd;
+                    }
+                }
+            }
+        }
+    }
+
+    /*
+     * Prints the impact of closing every line of a network, the most disruptive first, with
+     * its most affected pairs
+     */
+    public static void main(String[] args){
+        if(args.length < 1 || args.length > 3){
+            System.err.print("Usage: java ResilienceAnalysis <network file> [pairs per line] [matrix file]");
+            return;
+        }
+        try{
+            new ParisMetro(args[0]);
+            CompactGraph g = CompactGraph.of(ParisMetro.getGraph());
+            int maxPairs = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+            ResilienceAnalysis analysis = args.length > 2 ? new ResilienceAnalysis(g, TravelTimeMatrix.map(args[2]), ForkJoinPool.commonPool())
+                    : new ResilienceAnalysis(g);
+            List<LineImpact> impacts = new ArrayList<>(Arrays.asList(analysis.analyze(maxPairs)));
+            impacts.sort((a, b) -> Double.compare(b.getScore(), a.getScore()));
+
+            StringBuilder out = new StringBuilder();
+            for(LineImpact impact : impacts){
+                int[] stations = g.lineStations(impact.getLine());
+                out.append("line ").append(impact.getLine()).append(" (").append(g.name(stations[0])).append(", ");
+                out.append(impact.getClosedStations()).append(" stations) score=").append(String.format("%.1f", impact.getScore()));
+                out.append(" delayed=").append(impact.getDelayedPairs()).append(" disconnected=").append(impact.getDisconnectedPairs());
+                out.append(" extra=").append(impact.getExtraTime()).append(" searched=").append(impact.getSearchedSources()).append('\n');
+                for(int i = 0; i < impact.numPairs(); i++){
+                    int after = impact.timeAfter(i);
+                    out.append("  ").append(g.station(impact.origin(i))).append(' ').append(g.name(impact.origin(i)));
+                    out.append(" -> ").append(g.station(impact.destination(i))).append(' ').append(g.name(impact.destination(i)));
+                    out.append(": ").append(impact.timeBefore(i)).append(" -> ").append(after == Integer.MAX_VALUE ? -1 : after).append('\n');
+                }
+            }
+            System.out.print(out);
+        }
+        catch(Exception except){
+            System.err.print(except);
+        }
+    }
+}
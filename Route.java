@@ -0,0 +1,37 @@
+/*
+ * This class represents the result of a route query on a CompactGraph: the dense ids of the
+ * vertices/stations on the path (from the origin to the destination) and the time it
+ * takes to traverse it. If the destination can't be reached, the path is empty and the
+ * time is Integer.MAX_VALUE.
+ */
+public class Route{
+
+    private final int[] path;
+    private final int time;
+
+    public Route(int[] path, int time){
+        this.path = path;
+        this.time = time;
+    }
+
+    /*
+     * returns the dense ids of the vertices/stations on the path
+     */
+    public int[] getPath(){
+        return path;
+    }
+
+    /*
+     * returns the total time of the path
+     */
+    public int getTime(){
+        return time;
+    }
+
+    /*
+     * returns true if the destination could be reached
+     */
+    public boolean isFound(){
+        return path.length > 0;
+    }
+}
@@ -0,0 +1,158 @@
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/*
+ * This class keeps the most recently used routes, so a query that was already answered
+ * doesn't run Dijkstra's Algorithm again. A route is found by its origin, destination
+ * (dense ids of a CompactGraph) and closure mask, and is only valid for the version of the
+ * network it was computed on: the first lookup with a newer version drops every entry of the
+ * older ones. When the cache is full, the least recently used route is evicted.
+ * All the methods are synchronized, so one cache can be shared by several threads.
+ */
+public class RouteCache{
+
+    private final int capacity;
+
+    /*
+     * routes in access order, the eldest entry is the least recently used
+     */
+    private final LinkedHashMap<Key, Route> routes;
+
+    /*
+     * version of the network the current entries were computed on
+     */
+    private long version;
+
+    private long hits, misses, evictions, invalidations;
+
+    /*
+     * Constructs an empty cache that holds at most capacity routes
+     */
+    public RouteCache(int capacity){
+        if(capacity < 1){
+            throw new IllegalArgumentException("The cache must hold at least one route");
+        }
+        this.capacity = capacity;
+        routes = new LinkedHashMap<>(16, 0.75f, true){
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Route> eldest){
+                if(size() > RouteCache.this.capacity){
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /*
+     * returns the route of the query computed on the given version of the network, or null
+     * if it isn't in the cache
+     */
+    public synchronized Route get(long version, int origin, int destination, ClosureMask mask){
+        Route route = update(version) ? routes.get(new Key(origin, destination, mask)) : null;
+        if(route == null){
+            misses++;
+        }
+        else{
+            hits++;
+        }
+        return route;
+    }
+
+    /*
+     * stores the route of the query, computed on the given version of the network. The mask
+     * must not be changed afterwards, it is part of the key.
+     */
+    public synchronized void put(long version, int origin, int destination, ClosureMask mask, Route route){
+        if(update(version)){ // a route computed on an older version is already stale
+            routes.put(new Key(origin, destination, mask), route);
+        }
+    }
+
+    /*
+     * drops the entries of older versions, returns false if version itself is older than the
+     * entries
+     */
+    private boolean update(long version){
+        if(version > this.version){
+            invalidations += routes.size();
+            routes.clear();
+            this.version = version;
+        }
+        return version == this.version;
+    }
+
+    /*
+     * removes every route from the cache
+     */
+    public synchronized void clear(){
+        invalidations += routes.size();
+        routes.clear();
+    }
+
+    /*
+     * returns the number of routes in the cache
+     */
+    public synchronized int size(){
+        return routes.size();
+    }
+
+    /*
+     * returns the number of lookups that found their route
+     */
+    public synchronized long hits(){
+        return hits;
+    }
+
+    /*
+     * returns the number of lookups that didn't find their route
+     */
+    public synchronized long misses(){
+        return misses;
+    }
+
+    /*
+     * returns the number of routes removed to make room for newer ones
+     */
+    public synchronized long evictions(){
+        return evictions;
+    }
+
+    /*
+     * returns the number of routes dropped because the network changed
+     */
+    public synchronized long invalidations(){
+        return invalidations;
+    }
+
+    /*
+     * origin, destination and closure mask of a query
+     */
+    private static final class Key{
+        private final int origin, destination;
+        private final ClosureMask mask;
+        private final int hash;
+
+        Key(int origin, int destination, ClosureMask mask){
+            this.origin = origin;
+            this.destination = destination;
+            this.mask = mask;
+            hash = 31 * (31 * origin + destination) + (mask == null ? 0 : mask.hashCode());
+        }
+
+        @Override
+        public boolean equals(Object o){
+            if(!(o instanceof Key)){
+                return false;
+            }
+            Key other = (Key) o;
+            return origin == other.origin && destination == other.destination && (mask == null ? other.mask == null : mask.equals(other.mask));
+        }
+
+        @Override
+        public int hashCode(){
+            return hash;
+        }
+    }
+}
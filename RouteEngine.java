@@ -0,0 +1,333 @@
+import java.util.Arrays;
+
+/*
+ * This class runs Dijkstra's Algorithm on a CompactGraph. Only the vertices/stations that
+ * are reached are added to the indexed heap, and the distances and predecessors are kept in
+ * int arrays that are reused from one query to the next: a generation number marks which
+ * entries belong to the current query, so nothing has to be cleared or allocated per search.
+ * An engine is not thread safe, every worker thread should use its own.
+ */
+public class RouteEngine{
+
+    private final CompactGraph g;
+
+    /*
+     * "distance" from the source of the last search, valid only where stamp == generation
+     */
+    private final int[] dist;
+
+    /*
+     * predecessor on the shortest path from the source of the last search, -1 for the source
+     */
+    private final int[] pred;
+
+    /*
+     * generation in which each vertex/station was last reached
+     */
+    private final int[] stamp;
+
+    private int generation;
+
+    private final IndexedHeap heap;
+
+    private int source = -1;
+
+    /*
+     * closed part of the network for the current search, or null if everything is open
+     */
+    private ClosureMask mask;
+
+    /*
+     * vertices/stations in the order they were settled by the last search
+     */
+    private final int[] order;
+
+    /*
+     * number of vertices/stations settled by the last search
+     */
+    private int settled;
+
+    /*
+     * number of edges relaxed and of heap operations (insertions, key decreases and removals)
+     * of the last search
+     */
+    private int relaxed;
+    private int heapOperations;
+
+    /*
+     * Constructs an engine with buffers sized for the given snapshot
+     */
+    public RouteEngine(CompactGraph g){
+        this.g = g;
+        int n = g.numVertices();
+        dist = new int[n];
+        pred = new int[n];
+        stamp = new int[n];
+        order = new int[n];
+        heap = new IndexedHeap(n);
+    }
+
+    /*
+     * returns the snapshot this engine searches
+     */
+    public CompactGraph graph(){
+        return g;
+    }
+
+    /*
+     * Computes the shortest paths from source to every vertex/station it can reach
+     */
+    public void search(int source){
+        search(source, (ClosureMask) null);
+    }
+
+    /*
+     * Computes the shortest paths from source to every vertex/station it can reach without
+     * going through the closed part of the network
+     */
+    public void search(int source, ClosureMask mask){
+        start(source, mask);
+        while(!heap.isEmpty()){
+            settle(heap.poll());
+        }
+    }
+
+    /*
+     * Computes the shortest path from source to target, stopping as soon as target is
+     * settled. Only the vertices/stations closer to source than target are settled.
+     */
+    public void search(int source, int target){
+        search(source, target, null);
+    }
+
+    /*
+     * Computes the shortest path from source to target without going through the closed
+     * part of the network, stopping as soon as target is settled
+     */
+    public void search(int source, int target, ClosureMask mask){
+        start(source, mask);
+        while(!heap.isEmpty()){
+            int vert = heap.poll();
+            settle(vert);
+            if(vert == target){
+                break;
+            }
+        }
+    }
+
+    /*
+     * Computes the shortest path from source to target and returns it
+     */
+    public Route route(int source, int target){
+        return route(source, target, null);
+    }
+
+    /*
+     * Computes the shortest path from source to target that avoids the closed part of the
+     * network and returns it
+     */
+    public Route route(int source, int target, ClosureMask mask){
+        search(source, target, mask);
+        return new Route(path(target), distance(target));
+    }
+
+    /*
+     * Computes the shortest paths from the closest of the sources to every vertex/station, like
+     * a search from a single vertex/station linked to all the sources, for instance from every
+     * platform of a station
+     */
+    public void search(int[] sources, ClosureMask mask){
+        start(sources, mask);
+        while(!heap.isEmpty()){
+            settle(heap.poll());
+        }
+    }
+
+    /*
+     * Computes the shortest path from any of the sources to the closest of the targets (dense
+     * ids) that avoids the closed part of the network, stopping as soon as a target is settled.
+     * The path starts at the source it leaves from and ends at the target it reaches.
+     */
+    public Route route(int[] sources, int[] targets, ClosureMask mask){
+        start(sources, mask);
+        while(!heap.isEmpty()){
+            int vert = heap.poll();
+            settle(vert);
+            for(int target : targets){
+                if(vert == target){
+                    return new Route(path(vert), dist[vert]);
+                }
+            }
+        }
+        return new Route(new int[0], Integer.MAX_VALUE);
+    }
+
+    /*
+     * Finds every vertex/station that can be reached from source in at most budget
+     * (in seconds), along with its arrival time. The search stops at the edge of the budget,
+     * so only the part of the network inside it is explored.
+     */
+    public Isochrone isochrone(int source, int budget){
+        return isochrone(source, budget, null);
+    }
+
+    /*
+     * Same as isochrone(source, budget), without going through the closed part of the network
+     */
+    public Isochrone isochrone(int source, int budget, ClosureMask mask){
+        start(source, mask);
+        while(!heap.isEmpty() && heap.minKey() <= budget){
+            settle(heap.poll());
+        }
+        int[] stations = Arrays.copyOf(order, settled);
+        int[] times = new int[settled];
+        for(int i = 0; i < settled; i++){
+            times[i] = dist[stations[i]];
+        }
+        return new Isochrone(stations, times);
+    }
+
+    /*
+     * returns the "distance" of v from the source of the last search, or Integer.MAX_VALUE if
+     * v wasn't reached
+     */
+    public int distance(int v){
+        return stamp[v] == generation ? dist[v] : Integer.MAX_VALUE;
+    }
+
+    /*
+     * returns the predecessor of v on its shortest path from the source of the last search,
+     * or -1 if v is the source or wasn't reached
+     */
+    public int predecessor(int v){
+        return stamp[v] == generation ? pred[v] : -1;
+    }
+
+    /*
+     * returns the dense ids of the vertices/stations on the shortest path from the source of
+     * the last search to v, or an empty array if v wasn't reached
+     */
+    public int[] path(int v){
+        if(stamp[v] != generation){
+            return new int[0];
+        }
+        int length = 0;
+        for(int current = v; current != -1; current = pred[current]){
+            length++;
+        }
+        int[] path = new int[length];
+        for(int current = v; current != -1; current = pred[current]){ // filling the path backwards from v
+            path[--length] = current;
+        }
+        return path;
+    }
+
+    /*
+     * returns the source of the last search, the first one if it had several
+     */
+    public int source(){
+        return source;
+    }
+
+    /*
+     * returns the i-th vertex/station settled by the last search, in increasing "distance"
+     */
+    public int settled(int i){
+        return order[i];
+    }
+
+    /*
+     * returns the number of vertices/stations settled by the last search
+     */
+    public int settledCount(){
+        return settled;
+    }
+
+    /*
+     * returns the number of edges relaxed by the last search
+     */
+    public int relaxedCount(){
+        return relaxed;
+    }
+
+    /*
+     * returns the number of heap insertions, key decreases and removals of the last search
+     */
+    public int heapOperationCount(){
+        return heapOperations;
+    }
+
+    /*
+     * starts a new generation and puts the source in the heap, unless it is closed
+     */
+    private void start(int source, ClosureMask mask){
+        reset(mask);
+        this.source = source;
+        seed(source);
+    }
+
+    /*
+     * starts a new generation and puts every open source in the heap at "distance" 0
+     */
+    private void start(int[] sources, ClosureMask mask){
+        reset(mask);
+        source = sources.length > 0 ? sources[0] : -1;
+        for(int s : sources){
+            seed(s);
+        }
+    }
+
+    private void reset(ClosureMask mask){
+        heap.clear();
+        generation++;
+        if(generation == 0){ // the generation number wrapped around, old stamps could look current
+            Arrays.fill(stamp, 0);
+            generation = 1;
+        }
+        this.mask = mask;
+        settled = 0;
+        relaxed = 0;
+        heapOperations = 0;
+    }
+
+    private void seed(int s){
+        if(stamp[s] == generation || (mask != null && !mask.isOpen(s))){ // nothing can be reached from a closed station
+            return;
+        }
+        stamp[s] = generation;
+        dist[s] = 0;
+        pred[s] = -1;
+        heap.insert(s, 0);
+        heapOperations++;
+    }
+
+    /*
+     * adds vert to the cloud and relaxes its outgoing edges
+     */
+    private void settle(int vert){
+        order[settled++] = vert;
+        heapOperations++; // vert was just removed from the heap
+        int dv = dist[vert];
+        for(int e = g.firstEdge(vert), end = g.endEdge(vert); e < end; e++){
+            int op = g.target(e);
+            if(mask != null && (!mask.isEdgeOpen(e) || !mask.isOpen(op))){
+                continue;
+            }
+            int nd = dv + g.weight(e);
+            relaxed++;
+            if(stamp[op] != generation){ // first time op is reached
+                stamp[op] = generation;
+                dist[op] = nd;
+                pred[op] = vert;
+                heap.insert(op, nd);
+                heapOperations++;
+            }
+            else if(nd < dist[op] && heap.contains(op)){ // edge relaxation to update the "distance"
+                dist[op] = nd;
+                pred[op] = vert;
+                heap.decreaseKey(op, nd);
+                heapOperations++;
+            }
+        }
+    }
+}
@@ -0,0 +1,41 @@
+/*
+ * This class represents one query of a batch: the origin and destination (dense ids of a
+ * CompactGraph) and the closed part of the network, or null if everything is open.
+ */
+public class RouteQuery{
+
+    private final int origin;
+    private final int destination;
+    private final ClosureMask mask;
+
+    public RouteQuery(int origin, int destination, ClosureMask mask){
+        this.origin = origin;
+        this.destination = destination;
+        this.mask = mask;
+    }
+
+    public RouteQuery(int origin, int destination){
+        this(origin, destination, null);
+    }
+
+    /*
+     * returns the dense id of the origin
+     */
+    public int getOrigin(){
+        return origin;
+    }
+
+    /*
+     * returns the dense id of the destination
+     */
+    public int getDestination(){
+        return destination;
+    }
+
+    /*
+     * returns the closed part of the network, or null if everything is open
+     */
+    public ClosureMask getMask(){
+        return mask;
+    }
+}
@@ -0,0 +1,253 @@
+import java.util.concurrent.atomic.LongAdder;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/*
+ * This class collects what the searches of the metro network do: how many route and line
+ * queries ran, how many vertices/stations they settled, edges they relaxed and heap
+ * operations they made, their latency, and the time spent loading network files. The
+ * counters are LongAdders and the latencies go to LatencyHistograms, so recording costs a
+ * few atomic additions and can stay on in production.
+ *
+ * Every query also emits a Java Flight Recorder event (RouteEvent, LineEvent, LoadEvent).
+ * They cost almost nothing while no recording is running and can be turned on in a running
+ * JVM (jcmd <pid> JFR.start), next to the JVM's own GC events, to see whether slow queries
+ * come with bigger search frontiers, garbage collections or network loads.
+ */
+public class SearchMetrics{
+
+    private final LongAdder routes = new LongAdder();
+    private final LongAdder cachedRoutes = new LongAdder();
+    private final LongAdder settled = new LongAdder();
+    private final LongAdder relaxed = new LongAdder();
+    private final LongAdder heapOperations = new LongAdder();
+    private final LongAdder lines = new LongAdder();
+    private final LongAdder lineStations = new LongAdder();
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder loadNanos = new LongAdder();
+
+    private final LatencyHistogram routeLatency = new LatencyHistogram();
+    private final LatencyHistogram lineLatency = new LatencyHistogram();
+
+    /*
+     * Records a route query between two station numbers that took nanos from start to finish.
+     * engine is the engine that searched it, or null if the route came from a cache.
+     */
+    public void recordRoute(RouteEngine engine, int origin, int destination, long nanos){
+        routes.increment();
+        routeLatency.record(nanos);
+        RouteEvent event = new RouteEvent();
+        if(engine == null){
+            cachedRoutes.increment();
+        }
+        else{
+            settled.add(engine.settledCount());
+            relaxed.add(engine.relaxedCount());
+            heapOperations.add(engine.heapOperationCount());
+        }
+        if(event.shouldCommit()){
+            event.origin = origin;
+            event.destination = destination;
+            event.time = nanos;
+            event.cached = engine == null;
+            if(engine != null){
+                event.settled = engine.settledCount();
+                event.relaxed = engine.relaxedCount();
+                event.heapOperations = engine.heapOperationCount();
+            }
+            event.commit();
+        }
+    }
+
+    /*
+     * Records a line query (DFS) from the given station that found stations stations in nanos
+     */
+    public void recordLine(int station, int stations, long nanos){
+        lines.increment();
+        lineStations.add(stations);
+        lineLatency.record(nanos);
+        LineEvent event = new LineEvent();
+        if(event.shouldCommit()){
+            event.station = station;
+            event.stations = stations;
+            event.time = nanos;
+            event.commit();
+        }
+    }
+
+    /*
+     * Records the load of a network file of the given size that took nanos
+     */
+    public void recordLoad(String fileName, int vertices, int edges, long nanos){
+        loads.increment();
+        loadNanos.add(nanos);
+        LoadEvent event = new LoadEvent();
+        if(event.shouldCommit()){
+            event.file = fileName;
+            event.vertices = vertices;
+            event.edges = edges;
+            event.time = nanos;
+            event.commit();
+        }
+    }
+
+    /*
+     * returns the number of route queries, including the ones answered by a cache
+     */
+    public long routes(){
+        return routes.sum();
+    }
+
+    /*
+     * returns the number of route queries answered by a cache
+     */
+    public long cachedRoutes(){
+        return cachedRoutes.sum();
+    }
+
+    /*
+     * returns the number of vertices/stations settled by all the route searches
+     */
+    public long settled(){
+        return settled.sum();
+    }
+
+    /*
+     * returns the number of edges relaxed by all the route searches
+     */
+    public long relaxed(){
+        return relaxed.sum();
+    }
+
+    /*
+     * returns the number of heap insertions, key decreases and removals of all the route searches
+     */
+    public long heapOperations(){
+        return heapOperations.sum();
+    }
+
+    /*
+     * returns the number of line queries
+     */
+    public long lines(){
+        return lines.sum();
+    }
+
+    /*
+     * returns the number of stations found by all the line queries
+     */
+    public long lineStations(){
+        return lineStations.sum();
+    }
+
+    /*
+     * returns the number of network files loaded
+     */
+    public long loads(){
+        return loads.sum();
+    }
+
+    /*
+     * returns the total time spent loading network files, in nanoseconds
+     */
+    public long loadNanos(){
+        return loadNanos.sum();
+    }
+
+    /*
+     * returns the latencies of the route queries
+     */
+    public LatencyHistogram routeLatency(){
+        return routeLatency;
+    }
+
+    /*
+     * returns the latencies of the line queries
+     */
+    public LatencyHistogram lineLatency(){
+        return lineLatency;
+    }
+
+    /*
+     * returns the counters on one line, latencies in microseconds
+     */
+    @Override
+    public String toString(){
+        StringBuilder out = new StringBuilder();
+        out.append("routes=").append(routes()).append(" cached=").append(cachedRoutes());
+        out.append(" settled=").append(settled()).append(" relaxed=").append(relaxed()).append(" heap=").append(heapOperations());
+        out.append(" p50=").append(routeLatency.percentile(50) / 1000).append(" p99=").append(routeLatency.percentile(99) / 1000);
+        out.append(" max=").append(routeLatency.max() / 1000);
+        out.append(" lines=").append(lines()).append(" lineP99=").append(lineLatency.percentile(99) / 1000);
+        out.append(" loads=").append(loads()).append(" loadMs=").append(loadNanos() / 1000000);
+        return out.toString();
+    }
+
+    @Name("parismetro.Route")
+    @Label("Route Query")
+    @Category("Paris Metro")
+    @Description("Shortest path query between two stations")
+    public static class RouteEvent extends Event{
+        @Label("Origin")
+        int origin;
+
+        @Label("Destination")
+        int destination;
+
+        @Label("Cached")
+        boolean cached;
+
+        @Label("Settled Stations")
+        int settled;
+
+        @Label("Relaxed Edges")
+        int relaxed;
+
+        @Label("Heap Operations")
+        int heapOperations;
+
+        @Label("Query Time")
+        @Timespan(Timespan.NANOSECONDS)
+        long time;
+    }
+
+    @Name("parismetro.Line")
+    @Label("Line Query")
+    @Category("Paris Metro")
+    @Description("Search of the stations on the line of a station")
+    public static class LineEvent extends Event{
+        @Label("Station")
+        int station;
+
+        @Label("Stations Found")
+        int stations;
+
+        @Label("Query Time")
+        @Timespan(Timespan.NANOSECONDS)
+        long time;
+    }
+
+    @Name("parismetro.Load")
+    @Label("Network Load")
+    @Category("Paris Metro")
+    @Description("Load of a network file")
+    public static class LoadEvent extends Event{
+        @Label("File")
+        String file;
+
+        @Label("Stations")
+        int vertices;
+
+        @Label("Edges")
+        int edges;
+
+        @Label("Load Time")
+        @Timespan(Timespan.NANOSECONDS)
+        long time;
+    }
+}
@@ -0,0 +1,248 @@
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+
+/*
+ * This class indexes the vertices/stations of a CompactGraph by name. metro.txt lists a
+ * station once per line going through it (Bastille is 16, 17 and 18), so the vertices/stations
+ * with the same name are grouped into one station, whose vertices/stations are its platforms.
+ * Stations are numbered from 0 in the order of their first platform.
+ *
+ * Names are compared once normalized: accents are removed, letters are lower case and anything
+ * that isn't a letter or a digit separates words, so "chatelet" finds Chatelet written with
+ * its circumflex and "gare de l est" finds "Gare de l'Est". The normalized names, and the
+ * names starting from each of their later words, are kept in one sorted array: a prefix search
+ * is a binary search for the first key starting with the prefix followed by a scan of the keys
+ * that do, so "laz" finds "Saint-Lazare" too.
+ */
+public class StationIndex{
+
+    private final CompactGraph g;
+
+    /*
+     * name of every station, as written for its first platform
+     */
+    private final String[] names;
+
+    /*
+     * platforms of station s: platforms[platformOffsets[s]] to platforms[platformOffsets[s + 1] - 1]
+     */
+    private final int[] platformOffsets;
+    private final int[] platforms;
+
+    /*
+     * station of every vertex/station
+     */
+    private final int[] stationOf;
+
+    /*
+     * sorted normalized keys, the station of each, and whether the key is the whole name
+     * rather than the name from one of its later words
+     */
+    private final String[] keys;
+    private final int[] keyStations;
+    private final boolean[] wholeName;
+
+    private StationIndex(CompactGraph g, String[] names, int[] platformOffsets, int[] platforms, int[] stationOf, String[] keys, int[] keyStations, boolean[] wholeName){
+        this.g = g;
+        this.names = names;
+        this.platformOffsets = platformOffsets;
+        this.platforms = platforms;
+        this.stationOf = stationOf;
+        this.keys = keys;
+        this.keyStations = keyStations;
+        this.wholeName = wholeName;
+    }
+
+    /*
+     * Builds the index of the given snapshot
+     */
+    public static StationIndex of(CompactGraph g){
+        int n = g.numVertices();
+        int[] stationOf = new int[n];
+        HashMap<String, Integer> byKey = new HashMap<>();
+        ArrayList<String> names = new ArrayList<>();
+        ArrayList<String> normalized = new ArrayList<>();
+        for(int u = 0; u < n; u++){
+            String key = normalize(g.name(u));
+            Integer s = byKey.get(key);
+            if(s == null){
+                s = names.size();
+                byKey.put(key, s);
+                names.add(g.name(u));
+                normalized.add(key);
+            }
+            stationOf[u] = s;
+        }
+
+        int numStations = names.size();
+        int[] platformOffsets = new int[numStations + 1];
+        for(int u = 0; u < n; u++){
+            platformOffsets[stationOf[u] + 1]++;
+        }
+        for(int s = 0; s < numStations; s++){
+            platformOffsets[s + 1] += platformOffsets[s];
+        }
+        int[] platforms = new int[n];
+        int[] next = Arrays.copyOf(platformOffsets, numStations);
+        for(int u = 0; u < n; u++){
+            platforms[next[stationOf[u]]++] = u;
+        }
+
+        // the whole name of every station, and the name from each of its later words
+        ArrayList<String> keyList = new ArrayList<>();
+        ArrayList<Integer> keyStationList = new ArrayList<>();
+        ArrayList<Boolean> wholeList = new ArrayList<>();
+        for(int s = 0; s < numStations; s++){
+            String key = normalized.get(s);
+            for(int at = 0; at != -1; at = key.indexOf(' ', at)){
+                if(at > 0){
+                    at++; // the word starts after the space
+                }
+                keyList.add(key.substring(at));
+                keyStationList.add(s);
+                wholeList.add(at == 0);
+            }
+        }
+        Integer[] order = new Integer[keyList.size()];
+        for(int i = 0; i < order.length; i++){
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> keyList.get(a).compareTo(keyList.get(b)));
+        String[] keys = new String[order.length];
+        int[] keyStations = new int[order.length];
+        boolean[] wholeName = new boolean[order.length];
+        for(int i = 0; i < order.length; i++){
+            keys[i] = keyList.get(order[i]);
+            keyStations[i] = keyStationList.get(order[i]);
+            wholeName[i] = wholeList.get(order[i]);
+        }
+        return new StationIndex(g, names.toArray(new String[0]), platformOffsets, platforms, stationOf, keys, keyStations, wholeName);
+    }
+
+    /*
+     * returns the name as it is compared: without accents, in lower case, with the words
+     * separated by single spaces
+     */
+    public static String normalize(String name){
+        String stripped = Normalizer.normalize(name, Normalizer.Form.NFD).replaceAll("\\p{M}", "");
+        return stripped.toLowerCase(Locale.ROOT).replaceAll("[^\\p{L}\\p{N}]+", " ").trim();
+    }
+
+    /*
+     * returns the snapshot the index is for
+     */
+    public CompactGraph graph(){
+        return g;
+    }
+
+    /*
+     * returns the number of stations
+     */
+    public int size(){
+        return names.length;
+    }
+
+    /*
+     * returns the name of station s
+     */
+    public String name(int s){
+        return names[s];
+    }
+
+    /*
+     * returns the platforms (dense ids) of station s
+     */
+    public int[] platforms(int s){
+        return Arrays.copyOfRange(platforms, platformOffsets[s], platformOffsets[s + 1]);
+    }
+
+    /*
+     * returns the station the vertex/station u (dense id) is a platform of
+     */
+    public int stationOf(int u){
+        return stationOf[u];
+    }
+
+    /*
+     * returns the station with the given name (compared normalized), or -1 if there is none
+     */
+    public int find(String name){
+        String key = normalize(name);
+        for(int i = lowerBound(key); i < keys.length && keys[i].equals(key); i++){
+            if(wholeName[i]){
+                return keyStations[i];
+            }
+        }
+        return -1;
+    }
+
+    /*
+     * Returns at most limit stations whose name, or one of whose words, starts with the prefix
+     * (compared normalized). The stations whose name starts with it come first, then the
+     * others, each in alphabetical order.
+     */
+    public int[] search(String prefix, int limit){
+        String key = normalize(prefix);
+        if(key.isEmpty() || limit <= 0){
+            return new int[0];
+        }
+        int start = lowerBound(key);
+        int end = start;
+        while(end < keys.length && keys[end].startsWith(key)){
+            end++;
+        }
+        int[] found = new int[Math.min(limit, end - start)];
+        int count = 0;
+        // the whole names first, then the later words; the keys are sorted so each pass is in
+        // alphabetical order, and a station found by its whole name isn't added again
+        for(int pass = 0; pass < 2 && count < found.length; pass++){
+            boolean whole = pass == 0;
+            for(int i = start; i < end && count < found.length; i++){
+                if(wholeName[i] == whole && !contains(found, count, keyStations[i])){
+                    found[count++] = keyStations[i];
+                }
+            }
+        }
+        return Arrays.copyOf(found, count);
+    }
+
+    private static boolean contains(int[] found, int count, int s){
+        for(int i = 0; i < count; i++){
+            if(found[i] == s){
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /*
+     * returns the position of the first key that isn't smaller than key
+     */
+    private int lowerBound(String key){
+        int lo = 0, hi = keys.length;
+        while(lo < hi){
+            int mid = (lo + hi) >>> 1;
+            if(keys[mid].compareTo(key) < 0){
+                lo = mid + 1;
+            }
+            else{
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /*
+     * Computes the shortest path from any platform of station from to any platform of station
+     * to, avoiding the closed part of the network (mask can be null)
+     */
+    public Route route(RouteEngine engine, int from, int to, ClosureMask mask){
+        if(engine.graph() != g){
+            throw new IllegalArgumentException("The engine is for another snapshot");
+        }
+        return engine.route(platforms(from), platforms(to), mask);
+    }
+}
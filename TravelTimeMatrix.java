@@ -0,0 +1,316 @@
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/*
+ * This class represents the travel time between every pair of vertices/stations of a
+ * CompactGraph, along with the predecessor of every vertex/station on the shortest path
+ * from every source. It is computed by running RouteEngine from every source in parallel,
+ * and it can be written to a file that a later process maps into memory to answer
+ * (u, v) queries with a single lookup.
+ *
+ * File layout (big endian ints): magic, n, the number of edges, the fingerprint of the network
+ * (a long, high int first), the n station numbers, the n*n travel times (row = source) and the
+ * n*n predecessors. The fingerprint lets a process check that a matrix file was computed for the
+ * network it loaded, and not for an older version of it.
+ */
+public class TravelTimeMatrix{
+
+    private static final int MAGIC = 0x504D5432; // "PMT2"
+
+    private static final int HEADER_INTS = 5;
+
+    /*
+     * number of sources handled by one fork-join task before it stops splitting
+     */
+    private static final int SOURCES_PER_TASK = 8;
+
+    private final int n;
+
+    /*
+     * number of edges and fingerprint of the network the matrix was computed for
+     */
+    private final int numEdges;
+    private final long fingerprint;
+
+    /*
+     * station number of each dense id
+     */
+    private final int[] stations;
+
+    /*
+     * dense id of each station number, or -1 if the station is not in the matrix
+     */
+    private final int[] idByStation;
+
+    /*
+     * times.get(u * n + v) is the travel time from u to v, Integer.MAX_VALUE if v can't be reached
+     */
+    private final IntBuffer times;
+
+    /*
+     * predecessors.get(u * n + v) is the predecessor of v on the shortest path from u, -1 for u itself
+     */
+    private final IntBuffer predecessors;
+
+    private TravelTimeMatrix(int[] stations, int numEdges, long fingerprint, IntBuffer times, IntBuffer predecessors){
+        this.n = stations.length;
+        this.numEdges = numEdges;
+        this.fingerprint = fingerprint;
+        this.stations = stations;
+        this.times = times;
+        this.predecessors = predecessors;
+        int maxStation = -1;
+        for(int station : stations){
+            maxStation = Math.max(maxStation, station);
+        }
+        idByStation = new int[maxStation + 1];
+        Arrays.fill(idByStation, -1);
+        for(int u = 0; u < n; u++){
+            idByStation[stations[u]] = u;
+        }
+    }
+
+    /*
+     * Computes the matrix of the given snapshot on the common fork-join pool
+     */
+    public static TravelTimeMatrix compute(CompactGraph g){
+        return compute(g, ForkJoinPool.commonPool());
+    }
+
+    /*
+     * Computes the matrix of the given snapshot, running the single source searches on pool
+     */
+    public static TravelTimeMatrix compute(CompactGraph g, ForkJoinPool pool){
+        int n = g.numVertices();
+        if(4L * (HEADER_INTS + n + 2L * n * n) > Integer.MAX_VALUE){ // a single mapping is limited to 2GB
+            throw new IllegalArgumentException("Too many stations for an all-pairs matrix");
+        }
+        int[] times = new int[n * n];
+        int[] predecessors = new int[n * n];
+        pool.invoke(new RowTask(g, 0, n, times, predecessors));
+
+        int[] stations = new int[n];
+        for(int u = 0; u < n; u++){
+            stations[u] = g.station(u);
+        }
+        return new TravelTimeMatrix(stations, g.numEdges(), fingerprint(g), IntBuffer.wrap(times), IntBuffer.wrap(predecessors));
+    }
+
+    /*
+     * Returns a fingerprint of the stations and edges of g. Every station and every edge (its
+     * stations and travel time) is hashed on its own and the hashes are added up, so the
+     * fingerprint doesn't depend on the order the network was loaded in.
+     */
+    public static long fingerprint(CompactGraph g){
+        long hash = 0;
+        for(int u = 0; u < g.numVertices(); u++){
+            int station = g.station(u);
+            hash += mix(station);
+            for(int e = g.firstEdge(u), end = g.endEdge(u); e < end; e++){
+                long edge = (long) station << 32 | (g.station(g.target(e)) & 0xFFFFFFFFL);
+                hash += mix(mix(edge) + g.weight(e));
+            }
+        }
+        return hash;
+    }
+
+    /*
+     * finalizer of SplitMix64, spreads every bit of x over the result
+     */
+    private static long mix(long x){
+        x = (x ^ (x >>> 30)) * 0xBF58476D1CE4E5B9L;
+        x = (x ^ (x >>> 27)) * 0x94D049BB133111EBL;
+        return x ^ (x >>> 31);
+    }
+
+    /*
+     * returns true if the matrix was computed for a network with the same stations and edges as g
+     */
+    public boolean matches(CompactGraph g){
+        return n == g.numVertices() && numEdges == g.numEdges() && fingerprint == fingerprint(g);
+    }
+
+    /*
+     * Fork-join task that fills the rows of the sources from (inclusive) to to (exclusive)
+     */
+    private static class RowTask extends RecursiveAction{
+        private static final long serialVersionUID = 1L;
+
+        private final CompactGraph g;
+        private final int from, to;
+        private final int[] times, predecessors;
+
+        RowTask(CompactGraph g, int from, int to, int[] times, int[] predecessors){
+            this.g = g;
+            this.from = from;
+            this.to = to;
+            this.times = times;
+            this.predecessors = predecessors;
+        }
+
+        @Override
+        protected void compute(){
+            if(to - from > SOURCES_PER_TASK){
+                int mid = (from + to) >>> 1;
+                invokeAll(new RowTask(g, from, mid, times, predecessors), new RowTask(g, mid, to, times, predecessors));
+                return;
+            }
+            int n = g.numVertices();
+            RouteEngine engine = new RouteEngine(g);
+            for(int u = from; u < to; u++){
+                engine.search(u);
+                int row = u * n;
+                for(int v = 0; v < n; v++){
+                    times[row + v] = engine.distance(v);
+                    predecessors[row + v] = engine.predecessor(v);
+                }
+            }
+        }
+    }
+
+    /*
+     * Writes the matrix to a file that can be mapped back with map()
+     */
+    public void write(String fileName) throws IOException{
+        long size = 4L * (HEADER_INTS + n + 2L * n * n);
+        try(RandomAccessFile file = new RandomAccessFile(fileName, "rw"); FileChannel channel = file.getChannel()){
+            file.setLength(size);
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            IntBuffer out = buffer.asIntBuffer();
+            out.put(MAGIC);
+            out.put(n);
+            out.put(numEdges);
+            out.put((int) (fingerprint >>> 32));
+            out.put((int) fingerprint);
+            out.put(stations);
+            out.put(times.duplicate().rewind());
+            out.put(predecessors.duplicate().rewind());
+            buffer.force();
+        }
+    }
+
+    /*
+     * Maps a matrix file written by write() into memory. The travel times and predecessors
+     * are read straight from the mapping, nothing is recomputed.
+     */
+    public static TravelTimeMatrix map(String fileName) throws IOException{
+        try(RandomAccessFile file = new RandomAccessFile(fileName, "r"); FileChannel channel = file.getChannel()){
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            IntBuffer in = buffer.asIntBuffer();
+            if(in.remaining() < HEADER_INTS || in.get() != MAGIC){ // files of the first layout have another magic too
+                throw new IOException("Not a travel time matrix file: " + fileName);
+            }
+            int n = in.get();
+            int numEdges = in.get();
+            long fingerprint = (long) in.get() << 32 | (in.get() & 0xFFFFFFFFL);
+            long expected = HEADER_INTS + n + 2L * n * n;
+            if(n < 0 || 4L * expected > Integer.MAX_VALUE || in.capacity() != expected){
+                throw new IOException("Truncated travel time matrix file: " + fileName);
+            }
+            int[] stations = new int[n];
+            in.get(stations);
+            IntBuffer times = slice(buffer, HEADER_INTS + n, n * n);
+            IntBuffer predecessors = slice(buffer, HEADER_INTS + n + n * n, n * n);
+            return new TravelTimeMatrix(stations, numEdges, fingerprint, times, predecessors);
+        }
+    }
+
+    private static IntBuffer slice(ByteBuffer buffer, int offsetInts, int lengthInts){
+        ByteBuffer view = buffer.duplicate();
+        view.position(offsetInts * 4);
+        view.limit(offsetInts * 4 + lengthInts * 4);
+        return view.slice().asIntBuffer();
+    }
+
+    /*
+     * returns the number of vertices/stations in the matrix
+     */
+    public int numVertices(){
+        return n;
+    }
+
+    /*
+     * returns the dense id of a station number, or -1 if the station is not in the matrix
+     */
+    public int id(int station){
+        if(station < 0 || station >= idByStation.length){
+            return -1;
+        }
+        return idByStation[station];
+    }
+
+    /*
+     * returns the station number of a dense id
+     */
+    public int station(int u){
+        return stations[u];
+    }
+
+    /*
+     * returns the travel time from u to v (dense ids), or Integer.MAX_VALUE if v can't be reached
+     */
+    public int time(int u, int v){
+        return times.get(u * n + v);
+    }
+
+    /*
+     * returns the predecessor of v on the shortest path from u (dense ids), or -1 if v is u
+     * or can't be reached
+     */
+    public int predecessor(int u, int v){
+        return predecessors.get(u * n + v);
+    }
+
+    /*
+     * returns the shortest path from u to v (dense ids) rebuilt from the predecessor rows,
+     * or an empty array if v can't be reached
+     */
+    public int[] path(int u, int v){
+        if(times.get(u * n + v) == Integer.MAX_VALUE){
+            return new int[0];
+        }
+        int row = u * n;
+        int length = 0;
+        for(int current = v; current != -1; current = predecessors.get(row + current)){
+            length++;
+        }
+        int[] path = new int[length];
+        for(int current = v; current != -1; current = predecessors.get(row + current)){ // filling the path backwards from v
+            path[--length] = current;
+        }
+        return path;
+    }
+
+    /*
+     * returns the shortest route from u to v (dense ids)
+     */
+    public Route route(int u, int v){
+        return new Route(path(u, v), time(u, v));
+    }
+
+    /*
+     * Precomputes the matrix of a metro network file and writes it to a matrix file:
+     * java TravelTimeMatrix metro.txt metro.ttm
+     */
+    public static void main(String[] args){
+        if(args.length != 2){
+            System.err.print("Usage: java TravelTimeMatrix <network file> <matrix file>");
+            return;
+        }
+        try{
+            new ParisMetro(args[0]);
+            TravelTimeMatrix matrix = compute(CompactGraph.of(ParisMetro.getGraph()));
+            matrix.write(args[1]);
+        }
+        catch(Exception except){
+            System.err.print(except);
+        }
+    }
+}
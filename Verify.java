@@ -0,0 +1,724 @@
+import java.io.File;
+import java.lang.ref.WeakReference;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/*
+ * Verification harness: the incremental and faster routing algorithms are checked against
+ * Dijkstra's Algorithm (RouteEngine) on random queries, and on random changes to the network
+ * where they keep state. Every check prints one line with the number of answers it compared
+ * and the number that didn't match, and the exit status is 1 if any of them didn't match.
+ * Paths are checked as well as times: a path has to go from the source to the target over
+ * edges of the snapshot and take the time reported with it.
+ * - dynamic tree repair: the trees of a few hubs kept by HubTrees while edges and stations
+ *   are removed and travel times change, against a search on a new snapshot
+ * - bidirectional and ALT search: BidirectionalSearch and LandmarkSearch on random pairs,
+ *   a third of them with a line closed
+ * - contraction hierarchy: ContractionHierarchy queries on random pairs, with a hierarchy
+ *   written to a file and read back
+ * - RAPTOR: the Pareto set of RaptorRouter on random pairs, a third of them with a line
+ *   closed, against a Dijkstra search that also counts the rides, for every number of changes
+ *   of lines up to MAX_TRANSFERS
+ * - partitioned routing: a PartitionedNetwork written to a directory and read back with
+ *   only two regions in memory, while lines and stations are closed and reopened, then after
+ *   the ride times of a region are replaced, both in the same process and read back again
+ * - alternative routes: AlternativeRoutes on random pairs against Yen's algorithm with a new
+ *   RouteEngine search for every spur, with masks that get more closures between queries
+ * - version reclaim: versions of a GraphStore searched by a few threads while batches are
+ *   committed, every reclaimed snapshot has to be collectable once the threads moved on
+ *
+ * java Verify [network file] [queries] [seed]
+ */
+public class Verify{
+
+    /*
+     * number of hubs whose trees are repaired
+     */
+    private static final int HUBS = 4;
+
+    /*
+     * number of landmarks of the ALT search
+     */
+    private static final int LANDMARKS = 8;
+
+    /*
+     * largest number of changes of lines the Pareto sets of RAPTOR are checked for
+     */
+    private static final int MAX_TRANSFERS = 8;
+
+    /*
+     * number of regions the network is split into, and number of them kept in memory
+     */
+    private static final int REGIONS = 8;
+    private static final int MAX_LOADED = 2;
+
+    /*
+     * number of alternative routes asked for, the plain version of Yen's algorithm runs a
+     * search per spur so it only gets a tenth of the queries
+     */
+    private static final int ALTERNATIVES = 4;
+
+    /*
+     * number of threads searching the versions of the GraphStore
+     */
+    private static final int THREADS = 4;
+
+    private static boolean failed;
+
+    /*
+     * loads a network file into a new graph
+     */
+    private static Graph<Integer,Integer> load(String fileName) throws Exception{
+        new ParisMetro(fileName);
+        return ParisMetro.getGraph();
+    }
+
+    /*
+     * prints the result of a check and remembers if it failed
+     */
+    private static void report(String check, long answers, int mismatches){
+        System.out.print(check + ": " + answers + " answers, " + mismatches + " mismatches" + System.lineSeparator());
+        if(mismatches > 0){
+            failed = true;
+        }
+    }
+
+    /*
+     * returns the travel time of path if it goes from source to target over edges of g, with
+     * the given travel times (the ones of g if weights is null), or -1 if it doesn't
+     */
+    private static int pathTime(CompactGraph g, int[] weights, int[] path, int source, int target){
+        if(path.length == 0 || path[0] != source || path[path.length - 1] != target){
+            return -1;
+        }
+        int time = 0;
+        for(int i = 1; i < path.length; i++){
+            int e = g.edge(path[i - 1], path[i]);
+            if(e == -1 || (weights != null && weights[e] == DynamicRouteTree.REMOVED)){
+                return -1;
+            }
+            time += weights != null ? weights[e] : g.weight(e);
+        }
+        return time;
+    }
+
+    /*
+     * returns the travel time of path if it goes from source to target over edges and
+     * vertices/stations of g that are open in mask (which can be null), or -1 if it doesn't
+     */
+    private static int openPathTime(CompactGraph g, ClosureMask mask, int[] path, int source, int target){
+        if(mask != null){
+            for(int i = 0; i < path.length; i++){
+                if(!mask.isOpen(path[i])){
+                    return -1;
+                }
+                if(i > 0){
+                    int e = g.edge(path[i - 1], path[i]);
+                    if(e == -1 || !mask.isEdgeOpen(e)){
+                        return -1;
+                    }
+                }
+            }
+        }
+        return pathTime(g, null, path, source, target);
+    }
+
+    /*
+     * returns true if route has the time of the shortest path (Integer.MAX_VALUE if there is
+     * none) and a path that takes that time without going through the closed part of g
+     */
+    private static boolean matches(CompactGraph g, ClosureMask mask, Route route, int source, int target, int shortest){
+        if(route.getTime() != shortest){
+            return false;
+        }
+        return shortest == Integer.MAX_VALUE || openPathTime(g, mask, route.getPath(), source, target) == shortest;
+    }
+
+    /*
+     * returns a mask with one random line closed for a third of the queries, null otherwise
+     */
+    private static ClosureMask randomMask(CompactGraph g, Random random){
+        if(g.numLines() == 0 || random.nextInt(3) != 0){
+            return null;
+        }
+        return new ClosureMask(g).closeLine(random.nextInt(g.numLines()));
+    }
+
+    /*
+     * Removes edges and stations and changes travel times at random, one change at a time, and
+     * compares the distance and path of every station in the repaired tree of every hub with
+     * a search from the hub on a snapshot of the changed network
+     */
+    private static void checkDynamicTrees(String fileName, int changes, Random random) throws Exception{
+        Graph<Integer,Integer> g = load(fileName);
+        ArrayList<Integer> stations = new ArrayList<>();
+        for(Graph<Integer,Integer>.Vertex<Integer> vert : g.vertices()){
+            stations.add(vert.getElement());
+        }
+        int[] hubs = new int[HUBS];
+        for(int i = 0; i < HUBS; i++){
+            hubs[i] = stations.get(random.nextInt(stations.size()));
+        }
+        HubTrees trees = new HubTrees(g, hubs);
+
+        long answers = 0;
+        int mismatches = 0;
+        for(int change = 0; change < changes; change++){
+            ArrayList<Graph<Integer,Integer>.Edge<Integer>> edges = new ArrayList<>();
+            for(Graph<Integer,Integer>.Edge<Integer> edge : g.edges()){
+                edges.add(edge);
+            }
+            int kind = random.nextInt(4);
+            if(kind == 0){ // a station other than the hubs is removed with its edges
+                int station = stations.get(random.nextInt(stations.size()));
+                Graph<Integer,Integer>.Vertex<Integer> vert = g.getVertex(station);
+                if(vert == null || isHub(hubs, station)){
+                    continue;
+                }
+                g.removeVertex(vert);
+            }
+            else if(kind == 1 && !edges.isEmpty()){ // the travel time of a ride changes
+                Graph<Integer,Integer>.Edge<Integer> edge = edges.get(random.nextInt(edges.size()));
+                Graph<Integer,Integer>.Vertex<Integer>[] ends = edge.getEndpoints();
+                int weight = edge.getElement();
+                g.removeEdge(edge);
+                g.insertEdge(ends[0], ends[1], weight == -1 ? -1 : Math.max(1, weight + random.nextInt(200) - 100));
+            }
+            else if(!edges.isEmpty()){ // an edge is taken out of service
+                g.removeEdge(edges.get(random.nextInt(edges.size())));
+            }
+
+            CompactGraph snapshot = CompactGraph.of(g);
+            RouteEngine engine = new RouteEngine(snapshot);
+            CompactGraph treeGraph = trees.graph();
+            for(int hub : hubs){
+                DynamicRouteTree tree = trees.tree(hub);
+                int[] weights = new int[treeGraph.numEdges()];
+                for(int e = 0; e < weights.length; e++){
+                    weights[e] = tree.weight(e);
+                }
+                engine.search(snapshot.id(hub));
+                for(int v = 0; v < snapshot.numVertices(); v++){
+                    answers++;
+                    int tv = treeGraph.id(snapshot.station(v));
+                    int time = tree.distance(tv);
+                    if(time != engine.distance(v)
+                            || (time != Integer.MAX_VALUE && pathTime(treeGraph, weights, tree.path(tv), tree.hub(), tv) != time)){
+                        mismatches++;
+                    }
+                }
+            }
+        }
+        report("dynamic tree repair", answers, mismatches);
+    }
+
+    /*
+     * Compares BidirectionalSearch and LandmarkSearch with RouteEngine on random pairs
+     */
+    private static void checkBidirectional(CompactGraph g, int queries, Random random){
+        RouteEngine engine = new RouteEngine(g);
+        BidirectionalSearch bidirectional = new BidirectionalSearch(g);
+        LandmarkSearch landmarks = new LandmarkSearch(Landmarks.select(g, LANDMARKS));
+        int n = g.numVertices();
+        int bidirectionalMismatches = 0;
+        int landmarkMismatches = 0;
+        for(int i = 0; i < queries; i++){
+            int source = random.nextInt(n);
+            int target = random.nextInt(n);
+            ClosureMask mask = randomMask(g, random);
+            int shortest = engine.route(source, target, mask).getTime();
+            if(!matches(g, mask, bidirectional.route(source, target, mask), source, target, shortest)){
+                bidirectionalMismatches++;
+            }
+            if(!matches(g, mask, landmarks.route(source, target, mask), source, target, shortest)){
+                landmarkMismatches++;
+            }
+        }
+        report("bidirectional search", queries, bidirectionalMismatches);
+        report("ALT search", queries, landmarkMismatches);
+    }
+
+    /*
+     * Builds the contraction hierarchy of g, writes it to a temporary file and reads it back,
+     * then compares its routes with RouteEngine on random pairs. The hierarchy has its own
+     * dense ids, stations are matched by number.
+     */
+    private static void checkContractionHierarchy(CompactGraph g, int queries, Random random) throws Exception{
+        File file = File.createTempFile("verify", ".ch");
+        file.deleteOnExit();
+        ContractionHierarchy.build(g).write(file.getPath());
+        ContractionHierarchy hierarchy = ContractionHierarchy.read(file.getPath());
+        ContractionHierarchy.Query query = hierarchy.newQuery();
+        RouteEngine engine = new RouteEngine(g);
+        int n = g.numVertices();
+        int mismatches = 0;
+        for(int i = 0; i < queries; i++){
+            int source = random.nextInt(n);
+            int target = random.nextInt(n);
+            int shortest = engine.route(source, target).getTime();
+            Route route = query.route(hierarchy.id(g.station(source)), hierarchy.id(g.station(target)));
+            int[] path = route.getPath();
+            int[] graphPath = new int[path.length];
+            for(int j = 0; j < path.length; j++){
+                graphPath[j] = g.id(hierarchy.station(path[j]));
+            }
+            if(!matches(g, null, new Route(graphPath, route.getTime()), source, target, shortest)){
+                mismatches++;
+            }
+        }
+        report("contraction hierarchy", queries, mismatches);
+    }
+
+    /*
+     * Compares the journeys of RaptorRouter with RouteEngine and with fastestByTransfers on
+     * random pairs
+     */
+    private static void checkRaptor(CompactGraph g, int queries, Random random){
+        RaptorRouter raptor = new RaptorRouter(g);
+        RouteEngine engine = new RouteEngine(g);
+        int n = g.numVertices();
+        int[] dist = new int[n * (MAX_TRANSFERS + 2) * 2];
+        IndexedHeap heap = new IndexedHeap(dist.length);
+        int mismatches = 0;
+        for(int i = 0; i < queries; i++){
+            int source = random.nextInt(n);
+            int target = random.nextInt(n);
+            ClosureMask mask = randomMask(g, random);
+            List<Journey> journeys = raptor.journeys(source, target, mask, Integer.MAX_VALUE);
+            int shortest = engine.route(source, target, mask).getTime();
+            int[] fastest = fastestByTransfers(g, mask, source, target, dist, heap);
+            if(!paretoMatches(g, mask, journeys, source, target, shortest, fastest)){
+                mismatches++;
+            }
+        }
+        report("RAPTOR", queries, mismatches);
+    }
+
+    /*
+     * returns true if journeys is the Pareto set of the query: the last journey is the fastest,
+     * every journey is a valid path with the time and changes of lines reported, each one has
+     * more changes and is faster than the one before, and the fastest journey with at most x
+     * changes takes fastest[x] for every x
+     */
+    private static boolean paretoMatches(CompactGraph g, ClosureMask mask, List<Journey> journeys, int source, int target, int shortest, int[] fastest){
+        if(journeys.isEmpty()){
+            return shortest == Integer.MAX_VALUE && fastest[MAX_TRANSFERS] == Integer.MAX_VALUE;
+        }
+        if(journeys.get(journeys.size() - 1).getTime() != shortest){
+            return false;
+        }
+        int[] byTransfers = new int[MAX_TRANSFERS + 1];
+        Arrays.fill(byTransfers, Integer.MAX_VALUE);
+        int previousTime = Integer.MAX_VALUE;
+        int previousTransfers = -1;
+        for(Journey journey : journeys){
+            int[] path = journey.getPath();
+            if(openPathTime(g, mask, path, source, target) != journey.getTime()
+                    || journey.getTransfers() != Math.max(0, rides(g, path) - 1)
+                    || journey.getTime() >= previousTime || journey.getTransfers() <= previousTransfers){
+                return false;
+            }
+            previousTime = journey.getTime();
+            previousTransfers = journey.getTransfers();
+            for(int x = journey.getTransfers(); x <= MAX_TRANSFERS; x++){
+                byTransfers[x] = Math.min(byTransfers[x], journey.getTime());
+            }
+        }
+        return Arrays.equals(byTransfers, fastest);
+    }
+
+    /*
+     * returns the number of rides on path, a ride being a run of edges that aren't walking
+     * transfers
+     */
+    private static int rides(CompactGraph g, int[] path){
+        int rides = 0;
+        boolean riding = false;
+        for(int i = 1; i < path.length; i++){
+            boolean isRide = !g.isTransfer(g.edge(path[i - 1], path[i]));
+            if(isRide && !riding){
+                rides++;
+            }
+            riding = isRide;
+        }
+        return rides;
+    }
+
+    /*
+     * Brute force for RAPTOR: Dijkstra's Algorithm on the states (vertex/station, number of
+     * rides so far, on a ride or not). Returns, for every number x of changes of lines up to
+     * MAX_TRANSFERS, the fastest time from source to target with at most x + 1 rides.
+     */
+    private static int[] fastestByTransfers(CompactGraph g, ClosureMask mask, int source, int target, int[] dist, IndexedHeap heap){
+        int maxRides = MAX_TRANSFERS + 1;
+        int[] fastest = new int[MAX_TRANSFERS + 1];
+        Arrays.fill(fastest, Integer.MAX_VALUE);
+        if(mask != null && !mask.isOpen(source)){
+            return fastest;
+        }
+        Arrays.fill(dist, Integer.MAX_VALUE);
+        heap.clear();
+        dist[source * (maxRides + 1) * 2] = 0;
+        heap.insert(source * (maxRides + 1) * 2, 0);
+        while(!heap.isEmpty()){
+            int state = heap.poll();
+            int v = state / ((maxRides + 1) * 2);
+            int rides = state / 2 % (maxRides + 1);
+            boolean riding = state % 2 == 1;
+            if(v == target){
+                for(int x = Math.max(0, rides - 1); x <= MAX_TRANSFERS; x++){
+                    fastest[x] = Math.min(fastest[x], dist[state]);
+                }
+            }
+            for(int e = g.firstEdge(v), end = g.endEdge(v); e < end; e++){
+                int w = g.target(e);
+                if(mask != null && (!mask.isEdgeOpen(e) || !mask.isOpen(w))){
+                    continue;
+                }
+                boolean isRide = !g.isTransfer(e);
+                int nextRides = isRide && !riding ? rides + 1 : rides;
+                if(nextRides > maxRides){
+                    continue;
+                }
+                int next = (w * (maxRides + 1) + nextRides) * 2 + (isRide ? 1 : 0);
+                int nd = dist[state] + g.weight(e);
+                if(dist[next] == Integer.MAX_VALUE){ // first time the state is reached
+                    dist[next] = nd;
+                    heap.insert(next, nd);
+                }
+                else if(nd < dist[next] && heap.contains(next)){
+                    dist[next] = nd;
+                    heap.decreaseKey(next, nd);
+                }
+            }
+        }
+        return fastest;
+    }
+
+    /*
+     * Compares the routes of a PartitionedNetwork with RouteEngine on random pairs, in four
+     * rounds: everything open, a line and a station closed, the region of one of them reopened,
+     * and the ride times of a region multiplied by 5
+     */
+    private static void checkPartitioned(CompactGraph g, int queries, Random random) throws Exception{
+        File directory = Files.createTempDirectory("verify").toFile();
+        try{
+            int n = g.numVertices();
+            PartitionedNetwork.partition(g, Math.max(1, n / REGIONS), directory.getPath());
+            PartitionedNetwork network = PartitionedNetwork.read(directory.getPath(), MAX_LOADED);
+            HashSet<Integer> closed = new HashSet<>();
+            int rounds = 3;
+            int mismatches = 0;
+            for(int round = 0; round < rounds; round++){
+                if(round == 1){
+                    int u = random.nextInt(n);
+                    network.closeLine(g.station(u));
+                    for(int v : g.lineStations(g.line(u))){
+                        closed.add(g.station(v));
+                    }
+                    int station = g.station(random.nextInt(n));
+                    network.closeStation(station);
+                    closed.add(station);
+                }
+                else if(round == 2){
+                    int r = network.regionOf(closed.iterator().next());
+                    network.reopen(closed.iterator().next());
+                    closed.removeIf(station -> network.regionOf(station) == r);
+                }
+                ClosureMask mask = null;
+                for(int station : closed){
+                    mask = (mask == null ? new ClosureMask(g) : mask).closeStation(g.id(station));
+                }
+                mismatches += comparePartitioned(network, g, mask, queries / rounds, random);
+            }
+            report("partitioned routing", queries / rounds * rounds, mismatches);
+
+            // every region is reopened, then a region gets slower rides and is read back from the directory
+            for(int station : closed){
+                network.reopen(station);
+            }
+            int r = network.regionOf(g.station(random.nextInt(n)));
+            network.replaceRegion(r, scaledRides(network.region(r).graph(), network, r, 5));
+            CompactGraph replaced = CompactGraph.of(scaledRides(g, network, r, 5));
+            PartitionedNetwork readBack = PartitionedNetwork.read(directory.getPath(), MAX_LOADED);
+            mismatches = comparePartitioned(network, replaced, null, queries / 2, random);
+            mismatches += comparePartitioned(readBack, replaced, null, queries / 2, random);
+            report("partitioned routing with a replaced region", queries / 2 * 2, mismatches);
+        }
+        finally{
+            File[] files = directory.listFiles();
+            if(files != null){
+                for(File file : files){
+                    file.delete();
+                }
+            }
+            directory.delete();
+        }
+    }
+
+    /*
+     * runs random queries on network and returns the number of them whose route doesn't match
+     * the shortest path on g avoiding mask
+     */
+    private static int comparePartitioned(PartitionedNetwork network, CompactGraph g, ClosureMask mask, int queries, Random random) throws Exception{
+        RouteEngine engine = new RouteEngine(g);
+        int n = g.numVertices();
+        int mismatches = 0;
+        for(int i = 0; i < queries; i++){
+            int source = random.nextInt(n);
+            int target = random.nextInt(n);
+            Route route = network.route(g.station(source), g.station(target));
+            int[] path = route.getPath(); // station numbers
+            int[] graphPath = new int[path.length];
+            for(int j = 0; j < path.length; j++){
+                graphPath[j] = g.id(path[j]);
+            }
+            if(!matches(g, mask, new Route(graphPath, route.getTime()), source, target, engine.route(source, target, mask).getTime())){
+                mismatches++;
+            }
+        }
+        return mismatches;
+    }
+
+    /*
+     * returns a copy of g where the rides between two stations of region r take factor times
+     * longer
+     */
+    private static Graph<Integer,Integer> scaledRides(CompactGraph g, PartitionedNetwork network, int r, int factor){
+        Graph<Integer,Integer> copy = new Graph<>();
+        for(int u = 0; u < g.numVertices(); u++){
+            copy.insertVertex(g.station(u), g.name(u));
+        }
+        for(int u = 0; u < g.numVertices(); u++){
+            for(int e = g.firstEdge(u), end = g.endEdge(u); e < end; e++){
+                int v = g.target(e);
+                boolean isInside = network.regionOf(g.station(u)) == r && network.regionOf(g.station(v)) == r;
+                int weight = g.isTransfer(e) ? -1 : g.weight(e) * (isInside ? factor : 1);
+                copy.insertEdge(copy.getVertex(g.station(u)), copy.getVertex(g.station(v)), weight);
+            }
+        }
+        return copy;
+    }
+
+    /*
+     * Compares AlternativeRoutes with yen() on random pairs. A third of the queries have a line
+     * closed, and for those a first query is made before a station is closed in the same mask,
+     * since the reverse tree kept between queries must not be reused once the mask changed.
+     */
+    private static void checkAlternatives(CompactGraph g, int queries, Random random){
+        AlternativeRoutes alternatives = new AlternativeRoutes(g);
+        RouteEngine engine = new RouteEngine(g);
+        int n = g.numVertices();
+        int mismatches = 0;
+        for(int i = 0; i < queries; i++){
+            int source = random.nextInt(n);
+            int target = random.nextInt(n);
+            ClosureMask mask = randomMask(g, random);
+            if(mask != null){
+                alternatives.routes(source, target, ALTERNATIVES, mask);
+                mask.closeStation(random.nextInt(n));
+            }
+            Route[] routes = alternatives.routes(source, target, ALTERNATIVES, mask);
+            if(!alternativesMatch(g, mask, routes, yen(g, engine, source, target, ALTERNATIVES, mask), source, target)){
+                mismatches++;
+            }
+        }
+        report("alternative routes", queries, mismatches);
+    }
+
+    /*
+     * returns true if routes has as many routes as expected with the same times, and every one
+     * of them is a different loopless open path that takes the time reported
+     */
+    private static boolean alternativesMatch(CompactGraph g, ClosureMask mask, Route[] routes, List<Route> expected, int source, int target){
+        if(routes.length != expected.size()){
+            return false;
+        }
+        for(int i = 0; i < routes.length; i++){
+            int[] path = routes[i].getPath();
+            HashSet<Integer> stations = new HashSet<>();
+            for(int u : path){
+                stations.add(u);
+            }
+            if(routes[i].getTime() != expected.get(i).getTime() || stations.size() != path.length
+                    || openPathTime(g, mask, path, source, target) != routes[i].getTime()){
+                return false;
+            }
+            for(int j = 0; j < i; j++){
+                if(Arrays.equals(path, routes[j].getPath())){
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /*
+     * Yen's algorithm without any of the shortcuts of AlternativeRoutes: every spur is a new
+     * search of engine, with the root and the edges already taken from the spur closed in a
+     * copy of the mask
+     */
+    private static List<Route> yen(CompactGraph g, RouteEngine engine, int source, int target, int k, ClosureMask mask){
+        ArrayList<Route> found = new ArrayList<>();
+        Route first = engine.route(source, target, mask);
+        if(!first.isFound()){
+            return found;
+        }
+        found.add(first);
+        ArrayList<Route> candidates = new ArrayList<>();
+        while(found.size() < k){
+            int[] last = found.get(found.size() - 1).getPath();
+            for(int i = 0; i < last.length - 1; i++){
+                ClosureMask spurMask = mask == null ? new ClosureMask(g) : mask.copy();
+                for(int j = 0; j < i; j++){
+                    spurMask.closeStation(last[j]);
+                }
+                for(Route route : found){
+                    int[] path = route.getPath();
+                    if(path.length > i + 1 && Arrays.equals(path, 0, i + 1, last, 0, i + 1)){
+                        spurMask.closeEdge(last[i], path[i + 1]);
+                    }
+                }
+                Route spur = engine.route(last[i], target, spurMask);
+                if(!spur.isFound()){
+                    continue;
+                }
+                int[] path = Arrays.copyOf(last, i + spur.getPath().length);
+                System.arraycopy(spur.getPath(), 0, path, i, spur.getPath().length);
+                if(!contains(found, path) && !contains(candidates, path)){
+                    candidates.add(new Route(path, pathTime(g, null, path, source, target)));
+                }
+            }
+            if(candidates.isEmpty()){
+                break;
+            }
+            Route best = candidates.get(0);
+            for(Route candidate : candidates){
+                if(candidate.getTime() < best.getTime()){
+                    best = candidate;
+                }
+            }
+            candidates.remove(best);
+            found.add(best);
+        }
+        return found;
+    }
+
+    private static boolean contains(List<Route> routes, int[] path){
+        for(Route route : routes){
+            if(Arrays.equals(route.getPath(), path)){
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /*
+     * Commits batches that change the time of a random ride, and has THREADS threads search
+     * every version through its engine() before the next batch. Once they searched the last
+     * version, the snapshots of all the versions before it must have been reclaimed and be
+     * collectable: a version counts as a mismatch if its snapshot is still reachable.
+     */
+    private static void checkReclaim(String fileName, int commits, Random random) throws Exception{
+        Graph<Integer,Integer> g = load(fileName);
+        ArrayList<int[]> rides = new ArrayList<>();
+        for(Graph<Integer,Integer>.Edge<Integer> edge : g.edges()){
+            if(edge.getElement() > 0){
+                rides.add(new int[]{edge.getEndpoints()[0].getElement(), edge.getEndpoints()[1].getElement(), edge.getElement()});
+            }
+        }
+        GraphStore store = new GraphStore(g);
+        ArrayList<WeakReference<CompactGraph>> snapshots = new ArrayList<>();
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        int mismatches = 0;
+        try{
+            for(int i = 0; i < commits && !rides.isEmpty(); i++){
+                try(GraphStore.Version version = store.pin()){
+                    snapshots.add(new WeakReference<>(version.graph()));
+                }
+                searchOnEveryThread(store, pool);
+                int[] ride = rides.get(random.nextInt(rides.size()));
+                store.batch().setWeight(ride[0], ride[1], ride[2] + 1 + random.nextInt(60)).commit();
+            }
+            searchOnEveryThread(store, pool);
+            // the threads have to be alive, what they keep goes away with them
+            for(int i = 0; i < 3; i++){
+                System.gc();
+                Thread.sleep(50);
+            }
+            if(store.reclaimedCount() != snapshots.size()){
+                mismatches++;
+            }
+            for(WeakReference<CompactGraph> snapshot : snapshots){
+                if(snapshot.get() != null){
+                    mismatches++;
+                }
+            }
+        }
+        finally{
+            pool.shutdown();
+        }
+        report("version reclaim", snapshots.size(), mismatches);
+    }
+
+    /*
+     * pins the current version on every thread of the pool and searches it, the barrier keeps
+     * a thread from taking the task of another one
+     */
+    private static void searchOnEveryThread(GraphStore store, ExecutorService pool) throws Exception{
+        CyclicBarrier barrier = new CyclicBarrier(THREADS);
+        ArrayList<Future<?>> tasks = new ArrayList<>();
+        for(int i = 0; i < THREADS; i++){
+            tasks.add(pool.submit(() -> {
+                try(GraphStore.Version version = store.pin()){
+                    version.engine().route(0, version.graph().numVertices() - 1);
+                }
+                barrier.await();
+                return null;
+            }));
+        }
+        for(Future<?> task : tasks){
+            task.get();
+        }
+    }
+
+    private static boolean isHub(int[] hubs, int station){
+        for(int hub : hubs){
+            if(hub == station){
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public static void main(String[] args){
+        String fileName = args.length > 0 ? args[0] : "metro.txt";
+        try{
+            int queries = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+            long seed = args.length > 2 ? Long.parseLong(args[2]) : 42;
+            checkDynamicTrees(fileName, Math.max(1, queries / 20), new Random(seed));
+            CompactGraph g = CompactGraph.of(load(fileName));
+            checkBidirectional(g, queries, new Random(seed));
+            checkContractionHierarchy(g, queries, new Random(seed));
+            checkRaptor(g, queries, new Random(seed));
+            checkPartitioned(g, queries, new Random(seed));
+            checkAlternatives(g, Math.max(1, queries / 10), new Random(seed));
+            checkReclaim(fileName, Math.max(1, queries / 40), new Random(seed));
+        }
+        catch(Exception except){
+            System.err.print(except);
+            failed = true;
+        }
+        if(failed){
+            System.exit(1);
+        }
+    }
+}
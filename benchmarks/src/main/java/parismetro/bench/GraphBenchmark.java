@@ -0,0 +1,74 @@
+package parismetro.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ * Measures the lookup and update operations of Graph: getVertex by station number, and
+ * insertEdge followed by removeVertex (a station is added, connected both ways to an existing
+ * one, then removed again so the graph keeps its size between invocations).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GraphBenchmark{
+
+    @Param({"metro", "10000", "100000"})
+    public String network;
+
+    private Object graph;
+
+    /*
+     * station numbers of the network, looked up in turn
+     */
+    private Integer[] stations;
+
+    private Object[] vertices;
+
+    private Integer newStation;
+
+    private int next;
+
+    @Setup
+    public void setup() throws Throwable{
+        String fileName = Networks.file(network);
+        graph = Metro.load(fileName);
+        stations = Stations.numbers(fileName);
+        vertices = Stations.vertices(graph, fileName);
+        // a station number that isn't used by the network
+        int max = 0;
+        for(Integer station : stations){
+            max = Math.max(max, station);
+        }
+        newStation = max + 1;
+    }
+
+    @Benchmark
+    public Object getVertex() throws Throwable{
+        next = next + 1 == stations.length ? 0 : next + 1;
+        return (Object) Metro.GET_VERTEX.invokeExact(graph, (Object) stations[next]);
+    }
+
+    @Benchmark
+    public void insertEdgeRemoveVertex() throws Throwable{
+        next = next + 1 == vertices.length ? 0 : next + 1;
+        Object station = (Object) Metro.INSERT_VERTEX.invokeExact(graph, (Object) newStation, (Object) "Benchmark");
+        Object to = (Object) Metro.INSERT_EDGE.invokeExact(graph, station, vertices[next], (Object) Integer.valueOf(60));
+        Object from = (Object) Metro.INSERT_EDGE.invokeExact(graph, vertices[next], station, (Object) Integer.valueOf(60));
+        Metro.REMOVE_VERTEX.invokeExact(graph, station);
+    }
+}
@@ -0,0 +1,52 @@
+package parismetro.bench;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ * Measures ParisMetro.DFS, which finds the stations on the line of a station, starting from
+ * every station of the network in turn.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LineBenchmark{
+
+    @Param({"metro", "10000", "100000"})
+    public String network;
+
+    private Object graph;
+    private Object[] vertices;
+    private int next;
+
+    @Setup
+    public void setup() throws Throwable{
+        String fileName = Networks.file(network);
+        graph = Metro.load(fileName);
+        vertices = Stations.vertices(graph, fileName);
+    }
+
+    @Benchmark
+    public ArrayList<Object> dfs() throws Throwable{
+        next = next + 1 == vertices.length ? 0 : next + 1;
+        ArrayList<Object> stationsVisited = new ArrayList<>();
+        stationsVisited.add(vertices[next]);
+        Metro.DFS.invokeExact(graph, vertices[next], (Object) stationsVisited);
+        return stationsVisited;
+    }
+}
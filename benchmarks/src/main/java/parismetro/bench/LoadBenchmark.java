@@ -0,0 +1,43 @@
+package parismetro.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ * Measures ParisMetro.readMetro (through the ParisMetro constructor, like main does) on
+ * metro.txt and on larger synthetic networks.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LoadBenchmark{
+
+    @Param({"metro", "10000", "100000"})
+    public String network;
+
+    private String fileName;
+
+    @Setup
+    public void setup() throws Throwable{
+        fileName = Networks.file(network);
+    }
+
+    @Benchmark
+    public Object readMetro() throws Throwable{
+        return Metro.load(fileName);
+    }
+}
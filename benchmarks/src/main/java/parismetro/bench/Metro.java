@@ -0,0 +1,115 @@
+package parismetro.bench;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.ArrayList;
+
+/*
+ * The classes of the metro network are in the default package, which code in a named package
+ * (JMH requires one for benchmarks) can't import. This class looks them up by name once and
+ * exposes the methods the benchmarks measure as method handles. Object stands for the metro
+ * types (Graph, Graph.Vertex, CompactGraph, ...). The handles are static final, so the JIT
+ * compiles calls through them like direct calls.
+ */
+final class Metro{
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.publicLookup();
+
+    private static final Class<?> PARIS_METRO = type("ParisMetro");
+    private static final Class<?> GRAPH = type("Graph");
+    private static final Class<?> VERTEX = type("Graph$Vertex");
+    private static final Class<?> COMPACT_GRAPH = type("CompactGraph");
+    private static final Class<?> CLOSURE_MASK = type("ClosureMask");
+
+    // (String fileName) -> ParisMetro
+    static final MethodHandle NEW_PARIS_METRO = erase(constructor(PARIS_METRO, String.class));
+    // () -> Graph
+    static final MethodHandle GET_GRAPH = erase(method(PARIS_METRO, true, "getGraph", GRAPH));
+    // (Graph, Integer station) -> Vertex
+    static final MethodHandle GET_VERTEX = erase(method(GRAPH, false, "getVertex", VERTEX, Object.class));
+    // (Graph, Integer station, String name) -> Vertex
+    static final MethodHandle INSERT_VERTEX = erase(method(GRAPH, false, "insertVertex", VERTEX, Object.class, String.class));
+    // (Graph, Vertex, Vertex, Integer weight) -> Edge
+    static final MethodHandle INSERT_EDGE = erase(method(GRAPH, false, "insertEdge", type("Graph$Edge"), VERTEX, VERTEX, Object.class));
+    // (Graph, Vertex) -> void
+    static final MethodHandle REMOVE_VERTEX = erase(method(GRAPH, false, "removeVertex", void.class, VERTEX));
+    // (Graph, Vertex, ArrayList visited) -> void
+    static final MethodHandle DFS = erase(method(PARIS_METRO, true, "DFS", void.class, GRAPH, VERTEX, ArrayList.class));
+    // (Graph, Vertex, Vertex) -> void
+    static final MethodHandle SHORTEST_PATH = erase(method(PARIS_METRO, true, "shortestPath", void.class, GRAPH, VERTEX, VERTEX));
+    // (CompactGraph, int, int, ClosureMask) -> void
+    static final MethodHandle SHORTEST_PATH_MASKED = erase(method(PARIS_METRO, true, "shortestPath", void.class, COMPACT_GRAPH, int.class, int.class, CLOSURE_MASK));
+    // (CompactGraph, int, int) -> void
+    static final MethodHandle SHORTEST_PATH_COMPACT = erase(method(PARIS_METRO, true, "shortestPath", void.class, COMPACT_GRAPH, int.class, int.class));
+    // (Graph) -> CompactGraph
+    static final MethodHandle COMPACT_OF = erase(method(COMPACT_GRAPH, true, "of", COMPACT_GRAPH, GRAPH));
+    // (CompactGraph, int station) -> int dense id
+    static final MethodHandle COMPACT_ID = erase(method(COMPACT_GRAPH, false, "id", int.class, int.class));
+    // (CompactGraph) -> int
+    static final MethodHandle COMPACT_NUM_EDGES = erase(method(COMPACT_GRAPH, false, "numEdges", int.class));
+    // (CompactGraph, int dense id) -> int line
+    static final MethodHandle COMPACT_LINE = erase(method(COMPACT_GRAPH, false, "line", int.class, int.class));
+    // (CompactGraph) -> ClosureMask
+    static final MethodHandle NEW_CLOSURE_MASK = erase(constructor(CLOSURE_MASK, COMPACT_GRAPH));
+    // (ClosureMask, int line) -> ClosureMask
+    static final MethodHandle CLOSE_LINE = erase(method(CLOSURE_MASK, false, "closeLine", CLOSURE_MASK, int.class));
+    // (int stations, long seed, String fileName) -> void
+    static final MethodHandle GENERATE = erase(method(type("MetroGenerator"), true, "generate", void.class, int.class, long.class, String.class));
+
+    private Metro(){
+    }
+
+    /*
+     * loads a network file the way ParisMetro.main does and returns its graph
+     */
+    static Object load(String fileName) throws Throwable{
+        Object metro = (Object) NEW_PARIS_METRO.invokeExact((Object) fileName);
+        return (Object) GET_GRAPH.invokeExact();
+    }
+
+    private static Class<?> type(String name){
+        try{
+            return Class.forName(name);
+        }
+        catch(ClassNotFoundException except){
+            throw new IllegalStateException("The metro classes are not on the class path", except);
+        }
+    }
+
+    private static MethodHandle constructor(Class<?> owner, Class<?>... parameters){
+        try{
+            return LOOKUP.findConstructor(owner, MethodType.methodType(void.class, parameters));
+        }
+        catch(ReflectiveOperationException except){
+            throw new IllegalStateException(except);
+        }
+    }
+
+    private static MethodHandle method(Class<?> owner, boolean isStatic, String name, Class<?> result, Class<?>... parameters){
+        try{
+            MethodType type = MethodType.methodType(result, parameters);
+            return isStatic ? LOOKUP.findStatic(owner, name, type) : LOOKUP.findVirtual(owner, name, type);
+        }
+        catch(ReflectiveOperationException except){
+            throw new IllegalStateException(except);
+        }
+    }
+
+    /*
+     * replaces every reference type of the handle by Object, primitives are kept so they
+     * aren't boxed
+     */
+    private static MethodHandle erase(MethodHandle handle){
+        MethodType type = handle.type();
+        for(int i = 0; i < type.parameterCount(); i++){
+            if(!type.parameterType(i).isPrimitive()){
+                type = type.changeParameterType(i, Object.class);
+            }
+        }
+        if(!type.returnType().isPrimitive()){
+            type = type.changeReturnType(Object.class);
+        }
+        return handle.asType(type);
+    }
+}
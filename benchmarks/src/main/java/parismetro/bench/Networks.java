@@ -0,0 +1,61 @@
+package parismetro.bench;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+
+/*
+ * Network files used by the benchmarks. "metro" is metro.txt itself (looked up in the working
+ * directory and its parent, or given by -Dmetro.file). A number is a synthetic network with that
+ * many stations written by MetroGenerator to the temporary directory, and kept there so the
+ * following runs don't generate it again.
+ */
+final class Networks{
+
+    /*
+     * seed of the synthetic networks, so every run measures the same networks
+     */
+    private static final long SEED = 42;
+
+    private Networks(){
+    }
+
+    /*
+     * returns the path of the network file with the given name
+     */
+    static String file(String name) throws Throwable{
+        if(name.equals("metro")){
+            return metroFile().toString();
+        }
+        int stations;
+        try{
+            stations = Integer.parseInt(name);
+        }
+        catch(NumberFormatException except){
+            throw new IllegalArgumentException("Unknown network " + name);
+        }
+        Path generated = Paths.get(System.getProperty("java.io.tmpdir"), "metro-" + stations + "-" + SEED + ".txt");
+        if(!Files.exists(generated)){
+            // written next to the final file then moved, so an interrupted run never leaves half a network behind
+            Path temp = Files.createTempFile(generated.getParent(), "metro", ".tmp");
+            Metro.GENERATE.invokeExact(stations, SEED, (Object) temp.toString());
+            Files.move(temp, generated, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        return generated.toString();
+    }
+
+    private static Path metroFile(){
+        String configured = System.getProperty("metro.file");
+        if(configured != null){
+            return Paths.get(configured);
+        }
+        for(String candidate : new String[]{"metro.txt", "../metro.txt"}){
+            Path path = Paths.get(candidate);
+            if(Files.exists(path)){
+                return path;
+            }
+        }
+        throw new IllegalStateException("metro.txt not found, run from the repository or set -Dmetro.file");
+    }
+}
@@ -0,0 +1,121 @@
+package parismetro.bench;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ * Measures ParisMetro.shortestPath between random pairs of stations, on the graph (as the two
+ * argument mode of main does) and with the line of a third station closed (as the three
+ * argument mode does). shortestPath prints its result, so System.out is replaced by a stream
+ * that discards everything while the benchmark runs.
+ *
+ * shortestPath on the graph goes through the route cache of ParisMetro (1024 routes): the
+ * shortestPath benchmark cycles through more pairs than that, in the same order, so every call
+ * misses the cache and runs the search, and the cachedShortestPath benchmark cycles through
+ * fewer, so every call after the warmup is answered by the cache.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RouteBenchmark{
+
+    private static final int PAIRS = 8192;
+
+    /*
+     * pairs asked for by cachedShortestPath, all of them fit in the route cache
+     */
+    private static final int CACHED_PAIRS = 256;
+
+    /*
+     * pairs with a closure, the masks are kept for every one of them
+     */
+    private static final int CLOSED_PAIRS = 1024;
+
+    @Param({"metro", "10000", "100000"})
+    public String network;
+
+    private Object graph;
+    private Object compact;
+
+    private Object[] origins, destinations;
+    private int[] compactOrigins, compactDestinations;
+    private Object[] closures;
+
+    private int next, nextCached, nextClosed;
+
+    private PrintStream out;
+
+    @Setup
+    public void setup() throws Throwable{
+        String fileName = Networks.file(network);
+        graph = Metro.load(fileName);
+        compact = (Object) Metro.COMPACT_OF.invokeExact(graph);
+        Integer[] stations = Stations.numbers(fileName);
+
+        Random random = new Random(42);
+        origins = new Object[PAIRS];
+        destinations = new Object[PAIRS];
+        compactOrigins = new int[PAIRS];
+        compactDestinations = new int[PAIRS];
+        closures = new Object[CLOSED_PAIRS];
+        for(int i = 0; i < PAIRS; i++){
+            int u = stations[random.nextInt(stations.length)];
+            int v = stations[random.nextInt(stations.length)];
+            origins[i] = (Object) Metro.GET_VERTEX.invokeExact(graph, (Object) Integer.valueOf(u));
+            destinations[i] = (Object) Metro.GET_VERTEX.invokeExact(graph, (Object) Integer.valueOf(v));
+            compactOrigins[i] = (int) Metro.COMPACT_ID.invokeExact(compact, u);
+            compactDestinations[i] = (int) Metro.COMPACT_ID.invokeExact(compact, v);
+        }
+        for(int i = 0; i < CLOSED_PAIRS; i++){
+            int closed = stations[random.nextInt(stations.length)];
+            int line = (int) Metro.COMPACT_LINE.invokeExact(compact, (int) Metro.COMPACT_ID.invokeExact(compact, closed));
+            Object mask = (Object) Metro.NEW_CLOSURE_MASK.invokeExact(compact);
+            closures[i] = (Object) Metro.CLOSE_LINE.invokeExact(mask, line);
+        }
+
+        out = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+    }
+
+    @TearDown(Level.Trial)
+    public void restoreOutput(){
+        System.setOut(out);
+    }
+
+    @Benchmark
+    public void shortestPath() throws Throwable{
+        next = (next + 1) & (PAIRS - 1);
+        Metro.SHORTEST_PATH.invokeExact(graph, origins[next], destinations[next]);
+    }
+
+    @Benchmark
+    public void cachedShortestPath() throws Throwable{
+        nextCached = (nextCached + 1) & (CACHED_PAIRS - 1);
+        Metro.SHORTEST_PATH.invokeExact(graph, origins[nextCached], destinations[nextCached]);
+    }
+
+    @Benchmark
+    public void shortestPathWithClosure() throws Throwable{
+        nextClosed = (nextClosed + 1) & (CLOSED_PAIRS - 1);
+        Metro.SHORTEST_PATH_MASKED.invokeExact(compact, compactOrigins[nextClosed], compactDestinations[nextClosed], closures[nextClosed]);
+    }
+}
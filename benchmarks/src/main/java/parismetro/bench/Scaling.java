@@ -0,0 +1,134 @@
+package parismetro.bench;
+
+import java.io.File;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/*
+ * Scaling harness: for every network size given on the command line (synthetic networks from
+ * MetroGenerator, "metro" for metro.txt), it loads the network like ParisMetro.main does and
+ * prints one row with
+ * - the number of stations and edges
+ * - the time to load the file and the heap the loaded graph keeps
+ * - the time to compile the graph into a CompactGraph
+ * - the latency (median and 99th percentile) of shortestPath on the graph, which is what main
+ *   runs, and on the compiled snapshot
+ * Unlike the JMH benchmarks, each size is measured once, so the sizes can go up to millions of
+ * stations; give the JVM enough heap (-Xmx) for the largest one. Every size runs in a JVM of
+ * its own, started with the same options: ParisMetro keeps the last network in static fields
+ * (snapshot, route cache, engines, station index), so in a shared JVM the heap of a size would
+ * include what the size before it left behind.
+ *
+ * java -Xmx8g -cp benchmarks/target/benchmarks.jar parismetro.bench.Scaling 10000 100000 1000000
+ */
+public final class Scaling{
+
+    /*
+     * number of random queries measured per size, -Dscaling.queries overrides it
+     */
+    private static final int QUERIES = Integer.getInteger("scaling.queries", 100);
+
+    /*
+     * argument that makes the JVM measure one network and print its row only
+     */
+    private static final String ROW = "--row";
+
+    private Scaling(){
+    }
+
+    public static void main(String[] args) throws Throwable{
+        if(args.length == 2 && args[0].equals(ROW)){
+            measure(args[1]);
+            return;
+        }
+        String[] networks = args.length > 0 ? args : new String[]{"metro", "10000", "100000", "1000000"};
+        System.out.println("stations\tedges\tload_ms\theap_mb\tcompile_ms\tgraph_p50_us\tgraph_p99_us\tsnapshot_p50_us\tsnapshot_p99_us");
+        System.out.flush();
+        for(String network : networks){
+            List<String> command = new ArrayList<>();
+            command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+            command.addAll(ManagementFactory.getRuntimeMXBean().getInputArguments());
+            command.add("-cp");
+            command.add(System.getProperty("java.class.path"));
+            command.add(Scaling.class.getName());
+            command.add(ROW);
+            command.add(network);
+            int status = new ProcessBuilder(command).inheritIO().start().waitFor();
+            if(status != 0){
+                throw new IllegalStateException("Measuring network " + network + " failed with status " + status);
+            }
+        }
+    }
+
+    /*
+     * loads one network and prints its row
+     */
+    private static void measure(String network) throws Throwable{
+        PrintStream out = System.out;
+        long baseline = usedHeap();
+        String fileName = Networks.file(network);
+
+        long start = System.nanoTime();
+        Object graph = Metro.load(fileName);
+        long load = System.nanoTime() - start;
+        long heap = usedHeap() - baseline;
+
+        start = System.nanoTime();
+        Object compact = (Object) Metro.COMPACT_OF.invokeExact(graph);
+        long compile = System.nanoTime() - start;
+
+        Integer[] stations = Stations.numbers(fileName);
+        Random random = new Random(42);
+        long[] graphTimes = new long[QUERIES];
+        long[] snapshotTimes = new long[QUERIES];
+        // shortestPath prints the route, which isn't part of what is measured
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try{
+            for(int i = 0; i < QUERIES; i++){
+                int u = stations[random.nextInt(stations.length)];
+                int v = stations[random.nextInt(stations.length)];
+                Object from = (Object) Metro.GET_VERTEX.invokeExact(graph, (Object) Integer.valueOf(u));
+                Object to = (Object) Metro.GET_VERTEX.invokeExact(graph, (Object) Integer.valueOf(v));
+                start = System.nanoTime();
+                Metro.SHORTEST_PATH.invokeExact(graph, from, to);
+                graphTimes[i] = System.nanoTime() - start;
+
+                int compactFrom = (int) Metro.COMPACT_ID.invokeExact(compact, u);
+                int compactTo = (int) Metro.COMPACT_ID.invokeExact(compact, v);
+                start = System.nanoTime();
+                Metro.SHORTEST_PATH_COMPACT.invokeExact(compact, compactFrom, compactTo);
+                snapshotTimes[i] = System.nanoTime() - start;
+            }
+        }
+        finally{
+            System.setOut(out);
+        }
+
+        int edges = (int) Metro.COMPACT_NUM_EDGES.invokeExact(compact);
+        out.printf("%d\t%d\t%d\t%d\t%d\t%d\t%d\t%d\t%d%n", stations.length, edges, load / 1000000, heap >> 20, compile / 1000000,
+                percentile(graphTimes, 50) / 1000, percentile(graphTimes, 99) / 1000,
+                percentile(snapshotTimes, 50) / 1000, percentile(snapshotTimes, 99) / 1000);
+    }
+
+    /*
+     * heap in use after a full collection
+     */
+    private static long usedHeap(){
+        Runtime runtime = Runtime.getRuntime();
+        for(int i = 0; i < 3; i++){
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static long percentile(long[] times, int percent){
+        long[] sorted = times.clone();
+        Arrays.sort(sorted);
+        return sorted[Math.min(sorted.length - 1, sorted.length * percent / 100)];
+    }
+}
@@ -0,0 +1,42 @@
+package parismetro.bench;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.StringTokenizer;
+
+/*
+ * Station lookups shared by the benchmarks
+ */
+final class Stations{
+
+    private Stations(){
+    }
+
+    /*
+     * returns the station numbers listed in a network file, in file order
+     */
+    static Integer[] numbers(String fileName) throws IOException{
+        List<String> lines = Files.readAllLines(Paths.get(fileName), StandardCharsets.UTF_8);
+        List<Integer> numbers = new ArrayList<>();
+        for(String line : lines.subList(1, lines.indexOf("$"))){
+            numbers.add(Integer.parseInt(new StringTokenizer(line).nextToken()));
+        }
+        return numbers.toArray(new Integer[0]);
+    }
+
+    /*
+     * returns the vertices of the graph for the stations listed in a network file
+     */
+    static Object[] vertices(Object graph, String fileName) throws Throwable{
+        Integer[] numbers = numbers(fileName);
+        Object[] vertices = new Object[numbers.length];
+        for(int i = 0; i < numbers.length; i++){
+            vertices[i] = (Object) Metro.GET_VERTEX.invokeExact(graph, (Object) numbers[i]);
+        }
+        return vertices;
+    }
+}